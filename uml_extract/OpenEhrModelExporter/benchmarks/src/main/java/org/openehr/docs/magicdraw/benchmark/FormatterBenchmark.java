@@ -0,0 +1,101 @@
+package org.openehr.docs.magicdraw.benchmark;
+
+import org.openehr.docs.magicdraw.AsciidocFormatter;
+import org.openehr.docs.magicdraw.ClassFeatureInfo;
+import org.openehr.docs.magicdraw.ClassInfo;
+import org.openehr.docs.magicdraw.Formatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the AsciidocFormatter string operations over all documentation strings of a synthetic
+ * model of 1,000 types. Run with -prof gc for allocation rates.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FormatterBenchmark {
+    private final Formatter formatter = new AsciidocFormatter();
+    private List<String> docs;
+
+    @Setup
+    public void setUp() {
+        docs = new ArrayList<>();
+        for (ClassInfo classInfo : SyntheticModel.generate(1000, 42L)) {
+            docs.add(classInfo.getDocumentation());
+            for (ClassFeatureInfo feature : classInfo.getAttributes()) {
+                docs.add(feature.getDocumentation());
+            }
+            for (ClassFeatureInfo feature : classInfo.getOperations()) {
+                docs.add(feature.getDocumentation());
+            }
+        }
+    }
+
+    @Benchmark
+    public void normalizeLines(Blackhole blackhole) {
+        for (String doc : docs) {
+            blackhole.consume(formatter.normalizeLines(doc));
+        }
+    }
+
+    @Benchmark
+    public void escape(Blackhole blackhole) {
+        for (String doc : docs) {
+            blackhole.consume(formatter.escape(doc));
+        }
+    }
+
+    @Benchmark
+    public void escapeLiteral(Blackhole blackhole) {
+        for (String doc : docs) {
+            blackhole.consume(formatter.escapeLiteral(doc));
+        }
+    }
+
+    @Benchmark
+    public void escapeColumnSeparator(Blackhole blackhole) {
+        for (String doc : docs) {
+            blackhole.consume(formatter.escapeColumnSeparator(doc));
+        }
+    }
+
+    /**
+     * The chain applied to every documentation cell of a class table.
+     */
+    @Benchmark
+    public void documentationCell(Blackhole blackhole) {
+        for (String doc : docs) {
+            blackhole.consume(formatter.escapeColumnSeparator(formatter.normalizeLines(doc)));
+        }
+    }
+
+    /**
+     * The same as documentationCell, in a single pass into a reused builder, as done by the renderer.
+     */
+    @Benchmark
+    public void appendDocumentation(Blackhole blackhole) {
+        StringBuilder builder = new StringBuilder();
+        for (String doc : docs) {
+            builder.setLength(0);
+            formatter.appendDocumentation(builder, doc);
+            blackhole.consume(builder);
+        }
+    }
+}
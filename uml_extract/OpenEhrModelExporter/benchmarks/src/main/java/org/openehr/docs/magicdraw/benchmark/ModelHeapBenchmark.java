@@ -0,0 +1,56 @@
+package org.openehr.docs.magicdraw.benchmark;
+
+import org.openehr.docs.magicdraw.ClassInfo;
+import org.openehr.docs.magicdraw.SymbolTable;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap retained by the types of a synthetic model of 1,000 to 20,000 types, as built (lists of feature
+ * objects, every value a string of its own) and as compacted with a symbol table, as the exporter and
+ * snapshot reader keep them. The result is the retainedBytes counter, the size of the object graph of the
+ * model as walked by JOL, which counts each shared string once; the time includes the walk, and is only
+ * indicative.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djdk.attach.allowAttachSelf=true")
+@State(Scope.Benchmark)
+public class ModelHeapBenchmark {
+    @Param({"1000", "5000", "20000"})
+    public int classCount;
+
+    @Param({"false", "true"})
+    public boolean compact;
+
+    /**
+     * Bytes retained by the model; counters are summed over the iterations, hence a single one is measured.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Heap {
+        public long retainedBytes;
+    }
+
+    @Benchmark
+    public List<ClassInfo> retain(Heap heap) {
+        List<ClassInfo> types = SyntheticModel.generate(classCount, 42L, compact ? new SymbolTable() : null);
+        heap.retainedBytes = GraphLayout.parseInstance(types).totalSize();
+        return types;
+    }
+}
@@ -0,0 +1,65 @@
+package org.openehr.docs.magicdraw.benchmark;
+
+import org.openehr.docs.magicdraw.ClassInfo;
+import org.openehr.docs.magicdraw.ClassRenderer;
+import org.openehr.docs.magicdraw.IndexEntry;
+import org.openehr.docs.magicdraw.OutputFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Time to render all class files, and the class index, of synthetic models of 100 to 20,000 types, in each
+ * output format. The synthetic documentation is Asciidoctor text, which the HTML format converts as it
+ * would the documentation of a model built for it. Run with -prof gc for allocation rates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RendererBenchmark {
+    @Param({"100", "1000", "5000", "20000"})
+    public int classCount;
+
+    @Param({"asciidoc", "html"})
+    public String format;
+
+    private ClassRenderer renderer;
+    private List<ClassInfo> types;
+    private List<IndexEntry> indexEntries;
+
+    @Setup
+    public void setUp() {
+        OutputFormat outputFormat = OutputFormat.fromName(format);
+        renderer = outputFormat.createRenderer(outputFormat.createFormatter(), 3, "Release-1.0.3");
+        types = SyntheticModel.generate(classCount, 42L);
+        indexEntries = types.stream().map(IndexEntry::of).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public void renderClasses(Blackhole blackhole) {
+        for (ClassInfo classInfo : types) {
+            blackhole.consume(renderer.renderClass(classInfo));
+        }
+    }
+
+    @Benchmark
+    public String renderIndex() {
+        return renderer.renderIndex(indexEntries);
+    }
+}
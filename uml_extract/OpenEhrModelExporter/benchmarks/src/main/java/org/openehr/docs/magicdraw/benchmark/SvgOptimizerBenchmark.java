@@ -0,0 +1,94 @@
+package org.openehr.docs.magicdraw.benchmark;
+
+import org.openehr.docs.magicdraw.SvgOptimizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to optimise a synthetic SVG diagram of 1,000 to 10,000 shapes, laid out as the Batik generator behind
+ * ImageExporter writes them: each shape a group with a style of its own, and coordinates and transforms at
+ * full double precision.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SvgOptimizerBenchmark {
+    private static final String[] COLORS = {"white", "black", "rgb(255,255,204)", "rgb(0,0,128)", "rgb(128,128,128)"};
+
+    @Param({"1000", "10000"})
+    public int shapeCount;
+
+    private final SvgOptimizer optimizer = new SvgOptimizer();
+    private byte[] svg;
+
+    @Setup
+    public void setUp() {
+        svg = diagram(shapeCount, 42L);
+    }
+
+    @Benchmark
+    public int optimize() throws XMLStreamException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(svg.length / 2);
+        optimizer.optimize(new ByteArrayInputStream(svg), out);
+        return out.size();
+    }
+
+    /**
+     * Generate a diagram of class boxes with a name and a line to the next box.
+     */
+    static byte[] diagram(int shapeCount, long seed) {
+        Random random = new Random(seed);
+        StringBuilder builder = new StringBuilder(shapeCount * 700);
+        builder.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<!DOCTYPE svg PUBLIC '-//W3C//DTD SVG 1.0//EN' 'http://www.w3.org/TR/2001/REC-SVG-20010904/DTD/svg10.dtd'>\n")
+                .append("<svg xmlns:xlink=\"http://www.w3.org/1999/xlink\" style=\"fill-opacity:1; color-rendering:auto; ")
+                .append("color-interpolation:auto; text-rendering:auto; stroke:black; stroke-linecap:square; stroke-miterlimit:10; ")
+                .append("shape-rendering:auto; stroke-opacity:1; fill:black; stroke-dasharray:none; font-weight:normal; ")
+                .append("stroke-width:1; font-family:'Dialog'; font-style:normal; stroke-linejoin:miter; font-size:12px; ")
+                .append("stroke-dashoffset:0; image-rendering:auto;\" width=\"4000\" height=\"3000\" ")
+                .append("xmlns=\"http://www.w3.org/2000/svg\"\n")
+                .append("><!--Generated by the Batik Graphics2D SVG Generator--><defs id=\"genericDefs\"\n")
+                .append("  /><g\n");
+        for (int i = 0; i < shapeCount; i++) {
+            double x = random.nextDouble() * 4000;
+            double y = random.nextDouble() * 3000;
+            double width = 80 + random.nextDouble() * 200;
+            String fill = COLORS[random.nextInt(COLORS.length)];
+            builder.append(String.format(Locale.ROOT,
+                    "  ><g style=\"fill:%s; text-rendering:optimizeSpeed; stroke:%s;\" transform=\"matrix(1,0,0,1,%s,%s)\"\n"
+                            + "    ><rect x=\"0\" width=\"%s\" height=\"%s\" y=\"0\" style=\"stroke:none;\"\n"
+                            + "    /></g\n"
+                            + "    ><g style=\"font-size:11px; fill:black; text-rendering:geometricPrecision; font-family:'Arial'; stroke:black;\" transform=\"matrix(1,0,0,1,%s,%s)\"\n"
+                            + "    ><text x=\"%s\" xml:space=\"preserve\" y=\"%s\" style=\"stroke:none;\">CLASS_%d</text\n"
+                            + "    ></g\n"
+                            + "    ><g style=\"stroke-linecap:butt; fill:rgb(0,0,128); text-rendering:optimizeSpeed; stroke-linejoin:round; stroke:rgb(0,0,128); stroke-width:0.9999999;\"\n"
+                            + "    ><path d=\"M%s %s L%s %s\" style=\"fill:none;\"\n"
+                            + "    /></g\n",
+                    fill, fill, x, y, width, 40 + random.nextDouble() * 100, x, y,
+                    4 + random.nextDouble(), 14 + random.nextDouble(), i,
+                    x + width, y + 20 * random.nextDouble(), random.nextDouble() * 4000, random.nextDouble() * 3000));
+        }
+        builder.append("  ></g\n></svg\n>\n");
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
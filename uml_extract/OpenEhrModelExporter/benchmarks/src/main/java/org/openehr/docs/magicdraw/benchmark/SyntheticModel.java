@@ -0,0 +1,204 @@
+package org.openehr.docs.magicdraw.benchmark;
+
+import org.openehr.docs.magicdraw.ClassFeatureInfo;
+import org.openehr.docs.magicdraw.ClassInfo;
+import org.openehr.docs.magicdraw.ConstraintInfo;
+import org.openehr.docs.magicdraw.SymbolTable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic ClassInfo corpora shaped like the openEHR models: classes spread over components,
+ * packages and sub-packages, with multi-paragraph documentation containing literal blocks, table column
+ * separators and escapable sequences, generic signatures, constants, attributes, functions and invariants.
+ * <p>
+ * Generation is deterministic for a given seed, so runs are comparable. As in the info builders, the
+ * values that repeat across types - statuses and index names - are built anew for each type.
+ */
+public final class SyntheticModel {
+    private static final String[] COMPONENTS = {"BASE", "RM", "AM", "SM"};
+    private static final String[] PACKAGES = {"foundation_types", "base_types", "common", "data_types", "data_structures",
+                                              "composition", "ehr", "archetype", "aom2", "p_aom2"};
+    private static final String[] WORDS = {"archetype", "node", "path", "value", "identifier", "reference", "version",
+                                           "data", "structure", "item", "element", "constraint", "term", "code",
+                                           "terminology", "instance", "attribute", "object", "locatable", "meaning"};
+    private static final String[] TYPES = {"String", "Integer", "Boolean", "Real", "DV_TEXT", "DV_CODED_TEXT",
+                                           "CODE_PHRASE", "OBJECT_REF", "ARCHETYPE_ID", "UID_BASED_ID", "LOCATABLE"};
+
+    private SyntheticModel() {
+    }
+
+    /**
+     * @param classCount number of types to generate.
+     * @param seed random seed.
+     * @return generated types, not compacted; roughly 80% classes, 10% interfaces and 10% enumerations.
+     */
+    public static List<ClassInfo> generate(int classCount, long seed) {
+        return generate(classCount, seed, null);
+    }
+
+    /**
+     * @param classCount number of types to generate.
+     * @param seed random seed.
+     * @param symbols symbol table to compact the types with, as the info builders do; null to leave them as built.
+     * @return generated types; roughly 80% classes, 10% interfaces and 10% enumerations.
+     */
+    public static List<ClassInfo> generate(int classCount, long seed, SymbolTable symbols) {
+        Random random = new Random(seed);
+        List<ClassInfo> types = new ArrayList<>(classCount);
+        for (int i = 0; i < classCount; i++) {
+            ClassInfo classInfo = generateType(random, i);
+            types.add(symbols == null ? classInfo : classInfo.compact(symbols));
+        }
+        return types;
+    }
+
+    private static ClassInfo generateType(Random random, int index) {
+        int kind = random.nextInt(10);
+        String metaType = kind == 0 ? "Enumeration" : kind == 1 ? "Interface" : "Class";
+        String name = upperName(random, index);
+        String typeName = "Class".equals(metaType) && random.nextInt(8) == 0 ? name + "<T>" : name;
+
+        ClassInfo classInfo = new ClassInfo(metaType)
+                .setClassTypeName(typeName)
+                .setDocumentation(documentation(random, 1 + random.nextInt(4)))
+                .setAbstractClass(random.nextInt(5) == 0);
+        if ("Class".equals(metaType) && random.nextBoolean()) {
+            classInfo.setParentClassName('`' + TYPES[random.nextInt(TYPES.length)] + '`');
+        }
+        String component = COMPONENTS[random.nextInt(COMPONENTS.length)];
+        String pkg = PACKAGES[random.nextInt(PACKAGES.length)];
+        String[] path = (component + "::" + component.toLowerCase() + "::" + pkg).split("::");
+        classInfo.setIndexComponent(path[0]);
+        classInfo.setIndexPackage(path[1] + '.' + path[2]);
+        classInfo.setIndexSubPackage(path[2]);
+
+        if ("Enumeration".equals(metaType)) {
+            for (int i = random.nextInt(12); i >= 0; i--) {
+                classInfo.getAttributes().add(new ClassFeatureInfo()
+                                                      .setSignature(lowerName(random))
+                                                      .setDocumentation(sentence(random)));
+            }
+            return classInfo;
+        }
+
+        for (int i = random.nextInt(3); i > 0; i--) {
+            classInfo.getConstants().add(new ClassFeatureInfo()
+                                                 .setStatus(occurrences(1, 1))
+                                                 .setSignature('*' + lowerName(random) + "*: `String{nbsp}={nbsp}\"" + lowerName(random) + "\"`")
+                                                 .setDocumentation(sentence(random)));
+        }
+        for (int i = random.nextInt(12); i > 0; i--) {
+            classInfo.getAttributes().add(new ClassFeatureInfo()
+                                                  .setStatus(random.nextInt(4) == 0 ? occurrences(0, 1) + " +" + System.lineSeparator() + status("redefined") : occurrences(1, 1))
+                                                  .setSignature('*' + lowerName(random) + "*: `" + type(random) + '`')
+                                                  .setDocumentation(documentation(random, 1 + random.nextInt(2))));
+        }
+        for (int i = random.nextInt(20); i > 0; i--) {
+            classInfo.getOperations().add(new ClassFeatureInfo()
+                                                  .setStatus(random.nextInt(3) == 0 ? status("abstract") : "")
+                                                  .setSignature(operationSignature(random))
+                                                  .setDocumentation(documentation(random, 1 + random.nextInt(3))));
+        }
+        for (int i = random.nextInt(5); i > 0; i--) {
+            classInfo.getConstraints().add(new ConstraintInfo()
+                                                   .setDocumentation("*_" + upperName(random, i) + "_valid_*: `" + lowerName(random) +
+                                                                             " /= Void and then " + lowerName(random) + " <= 10`"));
+        }
+        return classInfo;
+    }
+
+    private static String occurrences(int lower, int upper) {
+        return lower + ".." + upper;
+    }
+
+    private static String status(String status) {
+        return '(' + status + ')';
+    }
+
+    private static String operationSignature(Random random) {
+        StringBuilder signature = new StringBuilder("*").append(lowerName(random)).append('*');
+        int parameters = random.nextInt(4);
+        if (parameters == 0) {
+            signature.append(" ()");
+        } else {
+            signature.append(" (").append(" +").append(System.lineSeparator());
+            for (int i = 0; i < parameters; i++) {
+                if (i > 0) {
+                    signature.append(", +").append(System.lineSeparator());
+                }
+                signature.append(lowerName(random)).append(": `").append(type(random)).append("[1]`");
+            }
+            signature.append(" +").append(System.lineSeparator()).append(')');
+        }
+        return signature.append(": `").append(type(random)).append('`').toString();
+    }
+
+    private static String type(Random random) {
+        String type = TYPES[random.nextInt(TYPES.length)];
+        switch (random.nextInt(4)) {
+            case 0:
+                return "List<" + type + '>';
+            case 1:
+                return "Hash<String," + type + '>';
+            default:
+                return type;
+        }
+    }
+
+    /**
+     * Documentation of a number of paragraphs, some with a literal block, as typically found in the models,
+     * with indentation, column separators and '<=' sequences.
+     */
+    private static String documentation(Random random, int paragraphs) {
+        StringBuilder doc = new StringBuilder();
+        for (int p = 0; p < paragraphs; p++) {
+            if (p > 0) {
+                doc.append('\n').append('\n');
+            }
+            for (int s = 1 + random.nextInt(4); s > 0; s--) {
+                doc.append("  ").append(sentence(random)).append('\n');
+            }
+            if (random.nextInt(4) == 0) {
+                doc.append("----\n");
+                for (int l = 2 + random.nextInt(6); l > 0; l--) {
+                    doc.append("    ").append(lowerName(random)).append(" := ").append(lowerName(random))
+                            .append(random.nextBoolean() ? " | " : " <= ").append(random.nextInt(100)).append('\n');
+                }
+                doc.append("----\n");
+            }
+        }
+        return doc.toString();
+    }
+
+    private static String sentence(Random random) {
+        StringBuilder sentence = new StringBuilder();
+        for (int w = 5 + random.nextInt(15); w > 0; w--) {
+            sentence.append(WORDS[random.nextInt(WORDS.length)]);
+            switch (random.nextInt(20)) {
+                case 0:
+                    sentence.append(" | ");
+                    break;
+                case 1:
+                    sentence.append(" <= ");
+                    break;
+                case 2:
+                    sentence.append(" `").append(TYPES[random.nextInt(TYPES.length)]).append("` ");
+                    break;
+                default:
+                    sentence.append(' ');
+            }
+        }
+        return sentence.append('.').toString();
+    }
+
+    private static String upperName(Random random, int index) {
+        return (WORDS[random.nextInt(WORDS.length)] + '_' + WORDS[random.nextInt(WORDS.length)] + '_' + index).toUpperCase();
+    }
+
+    private static String lowerName(Random random) {
+        return WORDS[random.nextInt(WORDS.length)] + '_' + WORDS[random.nextInt(WORDS.length)];
+    }
+}
@@ -0,0 +1,104 @@
+package org.openehr.docs.magicdraw;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * The single-pass escaping of AsciidocFormatter against the String.replace based escaping it replaced,
+ * which is kept here as the reference: the output must be byte-identical for any input.
+ */
+class AsciidocFormatterTest {
+    // fragments likely to trip up the escaping: the characters escaped, partial and complete delimiters,
+    // and every kind of line break and surrounding whitespace
+    private static final String[] FRAGMENTS = {"|", "*", "<", "=", "<=", "=<", "-", "----", "---", " ", "  ", "\t",
+            "\n", "\r\n", "\r", "a", "Text", "&#124;", "\\<=", "`code`", "x | y", " ----", "---- ", "é"};
+    private static final int RUNS = 20000;
+
+    private final AsciidocFormatter formatter = new AsciidocFormatter();
+
+    @Test
+    void escapingMatchesPreviousImplementation() {
+        Random random = new Random(20240611L);
+        for (int run = 0; run < RUNS; run++) {
+            String value = randomText(random);
+            assertEquals(LegacyEscaping.escape(value), formatter.escape(value), () -> describe(value));
+            assertEquals(LegacyEscaping.escapeLiteral(value), formatter.escapeLiteral(value), () -> describe(value));
+            assertEquals(LegacyEscaping.escapeColumnSeparator(value), formatter.escapeColumnSeparator(value), () -> describe(value));
+
+            StringBuilder escaped = new StringBuilder("prefix");
+            formatter.appendEscaped(escaped, value);
+            assertEquals("prefix" + LegacyEscaping.escape(value), escaped.toString(), () -> describe(value));
+            StringBuilder escapedLiteral = new StringBuilder("prefix");
+            formatter.appendEscapedLiteral(escapedLiteral, value);
+            assertEquals("prefix" + LegacyEscaping.escapeLiteral(value), escapedLiteral.toString(), () -> describe(value));
+        }
+    }
+
+    @Test
+    void documentationMatchesPreviousImplementation() {
+        Random random = new Random(20240612L);
+        for (int run = 0; run < RUNS; run++) {
+            String doc = randomText(random);
+            assertEquals(LegacyEscaping.normalizeLines(doc), formatter.normalizeLines(doc), () -> describe(doc));
+
+            StringBuilder documentation = new StringBuilder("prefix");
+            formatter.appendDocumentation(documentation, doc);
+            assertEquals("prefix" + LegacyEscaping.escapeColumnSeparator(LegacyEscaping.normalizeLines(doc)), documentation.toString(),
+                         () -> describe(doc));
+        }
+    }
+
+    @Test
+    void unescapedValueIsReturnedAsIs() {
+        String value = "nothing to escape here";
+        assertSame(value, formatter.escape(value));
+        assertSame(value, formatter.escapeLiteral(value));
+        assertSame(value, formatter.escapeColumnSeparator(value));
+    }
+
+    private static String randomText(Random random) {
+        StringBuilder text = new StringBuilder();
+        int length = random.nextInt(24);
+        for (int i = 0; i < length; i++) {
+            text.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+        }
+        return text.toString();
+    }
+
+    private static String describe(String value) {
+        return "input: \"" + value.replace("\r", "\\r").replace("\n", "\\n").replace("\t", "\\t") + '"';
+    }
+
+    /**
+     * Escaping of AsciidocFormatter before the single-pass implementation.
+     */
+    private static final class LegacyEscaping {
+        static String escapeLiteral(String value) {
+            return value.replace("|", "&#124;").replace("*", "&#42;").replace("<=", "\\<=");
+        }
+
+        static String escape(String value) {
+            return value.replace("<=", "\\<=");
+        }
+
+        static String escapeColumnSeparator(String value) {
+            return value.replace("|", "&#124;");
+        }
+
+        static String normalizeLines(String doc) {
+            StringBuilder classDoc = new StringBuilder();
+            boolean inLiteralBlock = false;
+            for (String line : doc.split("\n")) {
+                if (line.trim().startsWith("----")) {
+                    inLiteralBlock = !inLiteralBlock;
+                }
+                classDoc.append(inLiteralBlock ? line : line.trim()).append('\n');
+            }
+            return classDoc.toString().trim();
+        }
+    }
+}
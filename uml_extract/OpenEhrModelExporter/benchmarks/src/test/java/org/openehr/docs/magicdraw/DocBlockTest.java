@@ -0,0 +1,98 @@
+package org.openehr.docs.magicdraw;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * DocBlock against the split, escape and join code it replaced, which is kept here as the reference: the
+ * text and error sections must be identical for any comment bodies.
+ */
+class DocBlockTest {
+    private static final String LEGACY_ERROR_DELIMITER = ".Errors";
+    private static final String NL = System.lineSeparator();
+    private static final String[] FRAGMENTS = {"\n", "\n", "\n\n", ".Errors", ".errors", ".ERRORS", " .Errors", ".Errors ",
+            "a", "Text <= limit", "x | y", " ", "----", ""};
+    private static final int RUNS = 20000;
+
+    private final Formatter formatter = new AsciidocFormatter();
+
+    @Test
+    void sectionsMatchPreviousImplementation() {
+        Random random = new Random(20240613L);
+        for (int run = 0; run < RUNS; run++) {
+            List<String> bodies = new ArrayList<>();
+            int count = random.nextInt(4);
+            for (int i = 0; i < count; i++) {
+                StringBuilder body = new StringBuilder();
+                int length = random.nextInt(10);
+                for (int j = 0; j < length; j++) {
+                    body.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+                }
+                bodies.add(body.toString());
+            }
+            DocBlock docBlock = DocBlock.parse(bodies, formatter);
+            assertEquals(legacyDocumentation(bodies), docBlock.getText(), bodies::toString);
+            assertEquals(legacyErrorDocumentation(bodies), docBlock.getErrors(), bodies::toString);
+        }
+    }
+
+    @Test
+    void errorsAreSplitFromText() {
+        DocBlock docBlock = DocBlock.parse(Arrays.asList("First line.\nSecond <= line.", ".Errors\nFails if empty."), formatter);
+        assertEquals("First line." + NL + "Second \\<= line.", docBlock.getText());
+        assertEquals("Fails if empty.", docBlock.getErrors());
+    }
+
+    @Test
+    void missingSectionIsEmpty() {
+        DocBlock docBlock = DocBlock.parse(Arrays.asList("Only text."), formatter);
+        assertEquals("Only text.", docBlock.getText());
+        assertEquals("", docBlock.getErrors());
+    }
+
+    private List<String> legacyLines(List<String> bodies) {
+        return bodies.stream()
+                .flatMap(body -> Stream.of(body.split("\n")))
+                .map(formatter::escape)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * AbstractInfoBuilder.getDocumentation before DocBlock.
+     */
+    private String legacyDocumentation(List<String> bodies) {
+        List<String> resultLines = new ArrayList<>();
+        for (String s : legacyLines(bodies)) {
+            if (s.equalsIgnoreCase(LEGACY_ERROR_DELIMITER)) {
+                break;
+            }
+            resultLines.add(s);
+        }
+        return String.join(NL, resultLines);
+    }
+
+    /**
+     * AbstractInfoBuilder.getErrorDocumentation before DocBlock.
+     */
+    private String legacyErrorDocumentation(List<String> bodies) {
+        List<String> resultLines = new ArrayList<>();
+        boolean found = false;
+        for (String s : legacyLines(bodies)) {
+            if (found) {
+                resultLines.add(s);
+            }
+            if (s.equalsIgnoreCase(LEGACY_ERROR_DELIMITER)) {
+                found = true;
+            }
+        }
+        return resultLines.isEmpty() ? "" : String.join(NL, resultLines);
+    }
+}
@@ -0,0 +1,174 @@
+package org.openehr.docs.magicdraw;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openehr.docs.magicdraw.exception.OpenEhrExporterException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExportFileWriterTest {
+    @TempDir
+    Path folder;
+
+    @Test
+    void incrementalRunSkipsUnchangedFiles() throws IOException {
+        Path output = Files.createDirectory(folder.resolve("out"));
+        Path file = output.resolve("a.adoc");
+        run(output, false, writer -> writer.write(file, "content"));
+
+        ExportFileWriter writer = run(output, true, w -> {
+            w.write(file, "content");
+            w.write(output.resolve("b.adoc"), "new");
+        });
+        assertEquals(1, writer.getSkippedCount());
+        assertEquals(1, writer.getWrittenCount());
+        assertEquals("content", read(file));
+    }
+
+    @Test
+    void changedFilesAreWrittenAgain() throws IOException {
+        Path output = Files.createDirectory(folder.resolve("out"));
+        Path file = output.resolve("a.adoc");
+        run(output, true, writer -> writer.write(file, "first"));
+        ExportFileWriter writer = run(output, true, w -> w.write(file, "second"));
+        assertEquals(1, writer.getWrittenCount());
+        assertEquals("second", read(file));
+    }
+
+    @Test
+    void fileChangedOnDiskIsWrittenAgain() throws IOException {
+        Path output = Files.createDirectory(folder.resolve("out"));
+        Path file = output.resolve("a.adoc");
+        run(output, true, writer -> writer.write(file, "content"));
+        Files.write(file, " edited".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        ExportFileWriter writer = run(output, true, w -> w.write(file, "content"));
+        assertEquals(1, writer.getWrittenCount());
+        assertEquals("content", read(file));
+    }
+
+    @Test
+    void keepOnlyKeepsUnchangedFiles() throws IOException {
+        Path output = Files.createDirectory(folder.resolve("out"));
+        Path kept = output.resolve("kept.adoc");
+        Path removed = output.resolve("removed.adoc");
+        String[] hashes = new String[2];
+        run(output, true, writer -> {
+            writer.write(kept, "kept");
+            writer.write(removed, "removed");
+            hashes[0] = writer.getHash(kept);
+            hashes[1] = writer.getHash(removed);
+        });
+        Files.delete(removed);
+
+        run(output, true, writer -> {
+            assertTrue(writer.keep(kept, hashes[0]));
+            assertFalse(writer.keep(removed, hashes[1]));
+            assertFalse(writer.keep(output.resolve("unknown.adoc"), hashes[0]));
+            assertEquals(hashes[0], writer.getHash(kept));
+        });
+        assertTrue(Files.exists(kept));
+    }
+
+    @Test
+    void keepIsNotPossibleInFullExport() throws IOException {
+        Path output = Files.createDirectory(folder.resolve("out"));
+        Path file = output.resolve("a.adoc");
+        String[] hash = new String[1];
+        run(output, true, writer -> {
+            writer.write(file, "content");
+            hash[0] = writer.getHash(file);
+        });
+        run(output, false, writer -> assertFalse(writer.keep(file, hash[0])));
+    }
+
+    @Test
+    void finishRemovesFilesNoLongerProduced() throws IOException {
+        Path output = Files.createDirectory(folder.resolve("out"));
+        Path stale = output.resolve("classes").resolve("stale.adoc");
+        Files.createDirectory(stale.getParent());
+        run(output, true, writer -> {
+            writer.write(output.resolve("a.adoc"), "a");
+            writer.write(stale, "stale");
+        });
+
+        run(output, true, writer -> writer.write(output.resolve("a.adoc"), "a"));
+        assertFalse(Files.exists(stale));
+        assertTrue(Files.exists(output.resolve("a.adoc")));
+    }
+
+    @Test
+    void fullExportKeepsFilesNoLongerProduced() throws IOException {
+        Path output = Files.createDirectory(folder.resolve("out"));
+        Path other = output.resolve("other.adoc");
+        run(output, true, writer -> writer.write(other, "other"));
+        run(output, false, writer -> writer.write(output.resolve("a.adoc"), "a"));
+        assertTrue(Files.exists(other));
+    }
+
+    @Test
+    void finishNeverRemovesFilesOutsideOutputFolder() throws IOException {
+        Path output = Files.createDirectory(folder.resolve("out"));
+        Path outside = Files.write(folder.resolve("outside.txt"), "keep".getBytes(StandardCharsets.UTF_8));
+        run(output, true, writer -> writer.write(output.resolve("a.adoc"), "a"));
+        // a tampered manifest pointing outside of the output folder
+        Files.write(output.resolve(ExportFileWriter.MANIFEST_FILE_NAME),
+                    ("00 4 ../outside.txt\n00 4 " + outside.toAbsolutePath() + "\n00 0 .\n").getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.APPEND);
+
+        run(output, true, writer -> writer.write(output.resolve("a.adoc"), "a"));
+        assertTrue(Files.exists(outside));
+        assertTrue(Files.isDirectory(output));
+    }
+
+    @Test
+    void fileWrittenTwiceIsRejected() throws IOException {
+        Path output = Files.createDirectory(folder.resolve("out"));
+        Path file = output.resolve("a.adoc");
+        run(output, false, writer -> {
+            writer.write(file, "first");
+            assertThrows(OpenEhrExporterException.class, () -> writer.write(file, "second"));
+        });
+        assertEquals("first", read(file));
+    }
+
+    @Test
+    void noTemporaryFilesAreLeft() throws IOException {
+        Path output = Files.createDirectory(folder.resolve("out"));
+        run(output, false, writer -> {
+            for (int i = 0; i < 10; i++) {
+                writer.write(output.resolve(i + ".adoc"), "file " + i);
+            }
+        });
+        try (Stream<Path> files = Files.list(output)) {
+            assertFalse(files.anyMatch(f -> f.getFileName().toString().endsWith(".tmp")));
+        }
+        assertNotNull(read(output.resolve(ExportFileWriter.MANIFEST_FILE_NAME)));
+    }
+
+    private static ExportFileWriter run(Path output, boolean incremental, WriterRun run) {
+        ExportFileWriter writer = new ExportFileWriter(output, incremental);
+        run.run(writer);
+        writer.finish();
+        return writer;
+    }
+
+    private static String read(Path file) throws IOException {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+
+    private interface WriterRun {
+        void run(ExportFileWriter writer);
+    }
+}
@@ -0,0 +1,126 @@
+package org.openehr.docs.magicdraw;
+
+import org.junit.jupiter.api.Test;
+import org.openehr.docs.magicdraw.exception.OpenEhrExporterException;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PackageSelectorTest {
+
+    @Test
+    void unanchoredPatternMatchesAtAnyDepth() {
+        PackageSelector selector = selector("openehr::rm");
+        assertTrue(state(selector, "openehr", "rm").isSelected());
+        assertTrue(state(selector, "RM", "openehr", "rm").isSelected());
+        assertTrue(state(selector, "a", "b", "openehr", "rm").isSelected());
+        assertFalse(state(selector, "openehr").isSelected());
+        assertFalse(state(selector, "openehr", "am").isSelected());
+    }
+
+    @Test
+    void selectionIncludesPackagesBelow() {
+        PackageSelector selector = selector("openehr::rm");
+        assertTrue(state(selector, "RM", "openehr", "rm", "common", "archetyped").isSelected());
+    }
+
+    @Test
+    void anchoredPatternOnlyMatchesFromModel() {
+        PackageSelector selector = selector("::openehr");
+        assertTrue(state(selector, "openehr").isSelected());
+        assertTrue(state(selector, "openehr", "rm").isSelected());
+        assertFalse(state(selector, "RM", "openehr").isSelected());
+        // nothing below another top level package can be selected
+        assertFalse(state(selector, "RM").canSelectBelow());
+    }
+
+    @Test
+    void segmentsAreMatchedWhole() {
+        PackageSelector selector = selector("openehr");
+        assertFalse(state(selector, "foo_openehr").isSelected());
+        assertFalse(state(selector, "openehr_foo").isSelected());
+        assertTrue(state(selector, "foo", "openehr").isSelected());
+    }
+
+    @Test
+    void wildcardsMatchWithinSegment() {
+        PackageSelector selector = selector("::openehr::r?::data_*");
+        assertTrue(state(selector, "openehr", "rm", "data_types").isSelected());
+        assertTrue(state(selector, "openehr", "rm", "data_").isSelected());
+        assertFalse(state(selector, "openehr", "rmx", "data_types").isSelected());
+        assertFalse(state(selector, "openehr", "rm", "common").isSelected());
+    }
+
+    @Test
+    void anySegmentsMatchesNoneOrMany() {
+        PackageSelector selector = selector("::openehr::**::archetyped");
+        assertTrue(state(selector, "openehr", "archetyped").isSelected());
+        assertTrue(state(selector, "openehr", "rm", "common", "archetyped").isSelected());
+        assertFalse(state(selector, "openehr", "rm", "common").isSelected());
+        assertFalse(state(selector, "other", "archetyped").isSelected());
+    }
+
+    @Test
+    void excludeWinsOverInclude() {
+        PackageSelector selector = selector("openehr::rm", "-openehr::rm");
+        assertFalse(state(selector, "openehr", "rm").isSelected());
+    }
+
+    @Test
+    void excludeRemovesSubtree() {
+        PackageSelector selector = selector("openehr::rm", "-openehr::rm::demographic");
+        assertTrue(state(selector, "openehr", "rm", "common").isSelected());
+        assertFalse(state(selector, "openehr", "rm", "demographic").isSelected());
+        assertFalse(state(selector, "openehr", "rm", "demographic", "party").isSelected());
+    }
+
+    @Test
+    void excludedSubtreeIsNotVisitedEvenIfIncludedBelow() {
+        // 'openehr' matches at any depth, but not below an excluded package
+        PackageSelector selector = selector("openehr", "-legacy");
+        PackageSelector.State legacy = state(selector, "legacy");
+        assertFalse(legacy.isSelected());
+        assertFalse(legacy.canSelectBelow());
+        assertFalse(legacy.child("openehr").isSelected());
+    }
+
+    @Test
+    void subtreeIsSkippedWhenOnlyExcludesCanMatch() {
+        PackageSelector selector = selector("::openehr", "-internal");
+        assertFalse(state(selector, "other").canSelectBelow());
+        assertTrue(state(selector, "openehr").canSelectBelow());
+        assertFalse(state(selector, "openehr", "internal").isSelected());
+        assertTrue(state(selector, "openehr", "public").isSelected());
+    }
+
+    @Test
+    void unanchoredIncludeKeepsUnselectedPackagesVisited() {
+        PackageSelector selector = selector("openehr");
+        PackageSelector.State other = state(selector, "other");
+        assertFalse(other.isSelected());
+        assertTrue(other.canSelectBelow());
+    }
+
+    @Test
+    void emptyPatternsAreRejected() {
+        assertThrows(OpenEhrExporterException.class, () -> selector(""));
+        assertThrows(OpenEhrExporterException.class, () -> selector("-"));
+        assertThrows(OpenEhrExporterException.class, () -> selector("::"));
+        assertThrows(OpenEhrExporterException.class, () -> selector("openehr::::rm"));
+    }
+
+    private static PackageSelector selector(String... patterns) {
+        return PackageSelector.compile(Arrays.asList(patterns));
+    }
+
+    private static PackageSelector.State state(PackageSelector selector, String... path) {
+        PackageSelector.State state = selector.getRootState();
+        for (String name : path) {
+            state = state.child(name);
+        }
+        return state;
+    }
+}
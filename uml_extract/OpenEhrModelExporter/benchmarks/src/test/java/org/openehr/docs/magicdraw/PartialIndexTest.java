@@ -0,0 +1,106 @@
+package org.openehr.docs.magicdraw;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openehr.docs.magicdraw.exception.OpenEhrExporterException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PartialIndexTest {
+    private static final List<IndexEntry> ENTRIES = Arrays.asList(
+            new IndexEntry("RM", "rm.common", "archetyped", "LOCATABLE", "LOCATABLE", "Class"),
+            new IndexEntry("RM", "rm.common", "archetyped", "CONTAINER<T>", "CONTAINER", "Class"),
+            new IndexEntry("BASE", "base.types", "", "I_VISITABLE", "I_VISITABLE", "Interface"),
+            // separators and escapes within fields
+            new IndexEntry("A\tB", "line\nbreak", "back\\slash", "cr\rlf", "\\t", "Enumeration"));
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void roundTripKeepsEntriesAndRelease() throws IOException {
+        PartialIndex index = new PartialIndex(new ExportShard(2, 3), "Release-1.0.3", ENTRIES);
+        PartialIndex read = PartialIndex.read(write("part", index.render()));
+
+        assertEquals("2/3", read.getShard().toString());
+        assertEquals("Release-1.0.3", read.getIndexRelease());
+        assertEquals(fields(ENTRIES), fields(read.getEntries()));
+        assertEquals(index.render(), read.render());
+    }
+
+    @Test
+    void roundTripWithoutRelease() throws IOException {
+        PartialIndex read = PartialIndex.read(write("part", new PartialIndex(new ExportShard(1, 1), null, ENTRIES).render()));
+        assertNull(read.getIndexRelease());
+        assertEquals(fields(ENTRIES), fields(read.getEntries()));
+    }
+
+    @Test
+    void mergeCombinesAllShards() {
+        List<PartialIndex> parts = Arrays.asList(
+                new PartialIndex(new ExportShard(2, 2), null, ENTRIES.subList(2, 4)),
+                new PartialIndex(new ExportShard(1, 2), null, ENTRIES.subList(0, 2)));
+        List<IndexEntry> merged = PartialIndex.merge(parts);
+
+        // the index renders its entries sorted, so the order of the shards doesn't matter
+        ClassRenderer renderer = OutputFormat.ASCIIDOC.createRenderer(OutputFormat.ASCIIDOC.createFormatter(), 3, "Release-1.0");
+        assertEquals(renderer.renderIndex(ENTRIES), renderer.renderIndex(merged));
+        assertEquals(ENTRIES.size(), merged.size());
+    }
+
+    @Test
+    void mergeRejectsMissingShard() {
+        assertThrows(OpenEhrExporterException.class, () -> PartialIndex.merge(Arrays.asList(
+                new PartialIndex(new ExportShard(1, 3), null, ENTRIES),
+                new PartialIndex(new ExportShard(3, 3), null, ENTRIES))));
+    }
+
+    @Test
+    void mergeRejectsDuplicateShard() {
+        assertThrows(OpenEhrExporterException.class, () -> PartialIndex.merge(Arrays.asList(
+                new PartialIndex(new ExportShard(1, 2), null, ENTRIES),
+                new PartialIndex(new ExportShard(1, 2), null, ENTRIES))));
+    }
+
+    @Test
+    void mergeRejectsShardsOfDifferentExports() {
+        assertThrows(OpenEhrExporterException.class, () -> PartialIndex.merge(Arrays.asList(
+                new PartialIndex(new ExportShard(1, 2), null, ENTRIES),
+                new PartialIndex(new ExportShard(2, 3), null, ENTRIES))));
+        assertThrows(OpenEhrExporterException.class, () -> PartialIndex.merge(Collections.emptyList()));
+    }
+
+    @Test
+    void readRejectsOtherFiles() throws IOException {
+        Path other = write("other", "= Class index\n");
+        assertThrows(OpenEhrExporterException.class, () -> PartialIndex.read(other));
+        Path future = write("future", "openehr-partial-class-index\t99\t1/1\n");
+        assertThrows(OpenEhrExporterException.class, () -> PartialIndex.read(future));
+        Path truncated = write("truncated", "openehr-partial-class-index\t1\t1/1\nRM\trm\n");
+        assertThrows(OpenEhrExporterException.class, () -> PartialIndex.read(truncated));
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.write(folder.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<List<String>> fields(List<IndexEntry> entries) {
+        List<List<String>> fields = new ArrayList<>();
+        for (IndexEntry entry : entries) {
+            fields.add(Arrays.asList(entry.getComponent(), entry.getPackageName(), entry.getSubPackage(),
+                                     entry.getClassTypeName(), entry.getClassName(), entry.getMetaType()));
+        }
+        return fields;
+    }
+}
@@ -0,0 +1,89 @@
+package org.openehr.docs.magicdraw;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SvgOptimizerTest {
+    private final SvgOptimizer optimizer = new SvgOptimizer();
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void optimisingTwiceChangesNothing() throws Exception {
+        byte[] once = optimize(diagram());
+        assertArrayEquals(once, optimize(once));
+    }
+
+    @Test
+    void optimisedDiagramIsSmallerAndKeepsText() throws Exception {
+        byte[] original = diagram();
+        String optimized = new String(optimize(original), StandardCharsets.UTF_8);
+
+        assertTrue(optimized.length() < original.length);
+        assertFalse(optimized.contains("<metadata"));
+        assertFalse(optimized.contains("sodipodi"));
+        assertFalse(optimized.contains("<!--"));
+        // whitespace within text is content
+        assertTrue(optimized.contains(">LOCATABLE  &lt;abstract&gt;</text>"));
+        // coordinates are rounded, transforms to more decimals
+        assertTrue(optimized.contains("width=\"180.12\""));
+        assertTrue(optimized.contains("matrix(1,0,0,1,12.3457,20)"));
+        // equal styles share a class
+        assertTrue(optimized.contains("<style>"));
+        assertFalse(optimized.contains("style=\""));
+    }
+
+    @Test
+    void fileIsOnlyReplacedWhenSmaller() throws Exception {
+        Path svgFile = Files.write(folder.resolve("diagram.svg"), diagram());
+        long saved = optimizer.optimize(svgFile);
+        assertTrue(saved > 0);
+        byte[] optimized = Files.readAllBytes(svgFile);
+        assertEquals(diagram().length - saved, optimized.length);
+
+        assertEquals(0, optimizer.optimize(svgFile));
+        assertArrayEquals(optimized, Files.readAllBytes(svgFile));
+        assertFalse(Files.exists(folder.resolve("diagram.svg.tmp")));
+    }
+
+    @Test
+    void numbersAreRounded() {
+        assertEquals("M192.47 65.49 L220.5 65.49", SvgOptimizer.round("M192.4689 65.4938 L220.5000001 65.4938", 2));
+        // numbers within the precision are kept as they are
+        assertEquals("1.0,-2.50,3", SvgOptimizer.round("1.0,-2.50,3.004", 2));
+        assertEquals("0", SvgOptimizer.round("-0.001", 2));
+        assertEquals("none", SvgOptimizer.round("none", 2));
+    }
+
+    private byte[] optimize(byte[] svg) throws XMLStreamException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        optimizer.optimize(new ByteArrayInputStream(svg), out);
+        return out.toByteArray();
+    }
+
+    private static byte[] diagram() throws IOException {
+        try (InputStream in = SvgOptimizerTest.class.getResourceAsStream("diagram.svg")) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int read; (read = in.read(buffer)) > 0; ) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}
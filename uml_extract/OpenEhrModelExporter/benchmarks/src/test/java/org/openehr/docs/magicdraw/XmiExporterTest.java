@@ -0,0 +1,128 @@
+package org.openehr.docs.magicdraw;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openehr.docs.magicdraw.exception.OpenEhrExporterException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class XmiExporterTest {
+    @TempDir
+    Path folder;
+
+    @Test
+    void exportWritesClassFilesAndIndex() throws IOException {
+        Path output = export("model.xmi");
+        assertEquals(Arrays.asList("container.adoc", "i_visitable.adoc", "inner.adoc", "locatable.adoc", "version_status.adoc"),
+                     classFiles(output));
+        assertTrue(read(output.resolve(ClassRenderer.CLASSES_FOLDER).resolve("container.adoc")).contains("CONTAINER<T>"));
+        String index = read(output.resolve(ClassRenderer.CLASS_INDEX_FILE_NAME));
+        assertTrue(index.contains("LOCATABLE"));
+        assertTrue(index.contains("Release-1.0"));
+        assertTrue(Files.exists(output.resolve(ExportReport.REPORT_FILE_NAME)));
+        // fingerprints are only kept for incremental exports
+        assertFalse(Files.exists(output.resolve(ModelFingerprints.FILE_NAME)));
+    }
+
+    @Test
+    void boundTypeIsExportedWithItsActualParameters() throws IOException {
+        Path classes = export("bound.xmi").resolve(ClassRenderer.CLASSES_FOLDER);
+        assertTrue(read(classes.resolve("i_visitable.adoc")).contains("CONTAINER<String>"));
+        assertTrue(read(classes.resolve("container.adoc")).contains("CONTAINER<T>"));
+    }
+
+    @Test
+    void shadowedTypeIsReported() throws IOException {
+        Path output = Files.createDirectory(folder.resolve("out"));
+        ExportReport report = exporter("dup.xmi", output).export();
+        assertTrue(read(output.resolve(ClassRenderer.CLASSES_FOLDER).resolve("locatable.adoc")).contains("=== Locatable Class"));
+        assertTrue(report.toJson().contains("LOCATABLE"));
+        assertTrue(report.toJson().contains("\"typesShadowed\""));
+    }
+
+    @Test
+    void incrementalExportSkipsUnchangedTypes() throws IOException {
+        Path output = Files.createDirectory(folder.resolve("out"));
+        exporter("model.xmi", output, "--incremental").export();
+        List<String> files = classFiles(output);
+        assertTrue(Files.exists(output.resolve(ModelFingerprints.FILE_NAME)));
+
+        ExportReport report = exporter("model.xmi", output, "--incremental").export();
+        assertTrue(report.toJson().contains("\"typesUnchanged\": " + files.size()));
+        assertEquals(files, classFiles(output));
+    }
+
+    @Test
+    void mergedShardsEqualUnshardedIndex() throws IOException {
+        Path unsharded = export("model.xmi");
+        Path sharded = Files.createDirectory(folder.resolve("sharded"));
+        List<PartialIndex> parts = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            ExportShard shard = new ExportShard(i, 3);
+            exporter("model.xmi", sharded, "--shard", shard.toString()).export();
+            parts.add(PartialIndex.read(sharded.resolve(PartialIndex.fileName(shard))));
+        }
+
+        assertEquals(classFiles(unsharded), classFiles(sharded));
+        ClassRenderer renderer = OutputFormat.ASCIIDOC.createRenderer(OutputFormat.ASCIIDOC.createFormatter(), 3, "Release-1.0");
+        assertEquals(read(unsharded.resolve(ClassRenderer.CLASS_INDEX_FILE_NAME)), renderer.renderIndex(PartialIndex.merge(parts)));
+    }
+
+    @Test
+    void invalidArgumentsAreRejected() throws IOException {
+        Path xmiFile = resource("model.xmi");
+        assertThrows(OpenEhrExporterException.class, () -> new XmiExporter().parseArgs(new String[]{"-j", "0", xmiFile.toString()}));
+        assertThrows(OpenEhrExporterException.class, () -> new XmiExporter().parseArgs(new String[]{"-j", "x", xmiFile.toString()}));
+        assertThrows(OpenEhrExporterException.class, () -> new XmiExporter().parseArgs(new String[]{"-o", folder.resolve("missing").toString()}));
+        assertThrows(OpenEhrExporterException.class, () -> new XmiExporter().parseArgs(new String[]{"-i", "Release-1.0"}));
+    }
+
+    private Path export(String xmi) throws IOException {
+        Path output = Files.createDirectory(folder.resolve("out"));
+        exporter(xmi, output).export();
+        return output;
+    }
+
+    private XmiExporter exporter(String xmi, Path output, String... options) throws IOException {
+        List<String> args = new ArrayList<>(Arrays.asList("-o", output.toString(), "-i", "Release-1.0", "-j", "2"));
+        args.addAll(Arrays.asList(options));
+        args.add(resource(xmi).toString());
+        XmiExporter exporter = new XmiExporter();
+        exporter.parseArgs(args.toArray(new String[0]));
+        return exporter;
+    }
+
+    private Path resource(String name) throws IOException {
+        Path file = folder.resolve(name);
+        if (!Files.exists(file)) {
+            try (InputStream in = XmiExporterTest.class.getResourceAsStream(name)) {
+                Files.copy(in, file);
+            }
+        }
+        return file;
+    }
+
+    private static List<String> classFiles(Path output) throws IOException {
+        try (Stream<Path> files = Files.list(output.resolve(ClassRenderer.CLASSES_FOLDER))) {
+            return files.map(f -> f.getFileName().toString()).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static String read(Path file) throws IOException {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,73 @@
+package org.openehr.docs.magicdraw;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class XmiModelSourceTest {
+
+    @Test
+    void typesOfSelectedPackagesAreRead() throws IOException {
+        XmiModelSource source = read("model.xmi", "openehr");
+        assertEquals(Arrays.asList("LOCATABLE", "CONTAINER"), names(source.getClasses()));
+        assertEquals(Collections.singletonList("I_VISITABLE"), names(source.getInterfaces()));
+        assertTrue(names(source.getEnumerations()).containsAll(Arrays.asList("VERSION_STATUS", "INNER")));
+
+        UmlClassifier locatable = source.getClasses().get(0);
+        assertEquals("openehr::rm::common::archetyped::LOCATABLE", locatable.getQualifiedName());
+        assertTrue(locatable.isAbstract());
+        assertEquals(Collections.singletonList("Root of archetyped structures."), locatable.getComments());
+        assertEquals(Collections.singletonList("Any"), names(locatable.getSuperClasses()));
+        assertEquals(Arrays.asList("id", "archetype_node_id", "Kind", "items"), names(locatable.getAttributes()));
+        assertEquals(Collections.singletonList("is_equal"), names(locatable.getOperations()));
+    }
+
+    @Test
+    void templateParametersAreNamed() throws IOException {
+        UmlClassifier container = read("model.xmi", "openehr").getClasses().get(1);
+        assertEquals(Collections.singletonList("T"), container.getTemplateParameters());
+    }
+
+    @Test
+    void enumerationLiteralsAreRead() throws IOException {
+        UmlClassifier status = read("model.xmi", "openehr").getEnumerations().stream()
+                .filter(e -> e.getName().equals("VERSION_STATUS"))
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+        assertEquals(Arrays.asList("draft", "final"), names(status.getLiterals()));
+        assertEquals(Collections.singletonList("Draft."), status.getLiterals().get(0).getComments());
+    }
+
+    @Test
+    void excludedPackagesAreNotRead() throws IOException {
+        XmiModelSource source = read("model.xmi", "openehr", "-archetyped");
+        assertTrue(source.getClasses().isEmpty());
+        assertTrue(source.getInterfaces().isEmpty());
+        assertTrue(source.getEnumerations().isEmpty());
+    }
+
+    @Test
+    void otherPackagesAreRead() throws IOException {
+        XmiModelSource source = read("model.xmi", "::base");
+        assertEquals(Collections.singletonList("Any"), names(source.getClasses()));
+        assertEquals("base::Any", source.getClasses().get(0).getQualifiedName());
+    }
+
+    private static XmiModelSource read(String resource, String... patterns) throws IOException {
+        try (InputStream in = XmiModelSourceTest.class.getResourceAsStream(resource)) {
+            return XmiModelSource.read(in, PackageSelector.compile(Arrays.asList(patterns)));
+        }
+    }
+
+    private static List<String> names(List<? extends UmlElement> elements) {
+        return elements.stream().map(UmlElement::getName).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,8 @@
+#!/bin/bash
+
+# Merge the partial class indexes written by the shards of an export, run with 'uml_generate.sh --shard i/n',
+# into the class index. Only needs a Java runtime; MagicDraw is not used.
+
+SCRIPT_DIR=$(cd "$(dirname "$0")" && pwd)
+
+java -cp "$SCRIPT_DIR/OpenEhrModelExporter.jar" org.openehr.docs.magicdraw.IndexMerger "$@"
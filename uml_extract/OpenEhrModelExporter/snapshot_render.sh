@@ -0,0 +1,8 @@
+#!/bin/bash
+
+# Render the classes folder and class index from a model snapshot written by 'uml_generate.sh --snapshot <file>'.
+# Only needs a Java runtime; MagicDraw is not used.
+
+SCRIPT_DIR=$(cd "$(dirname "$0")" && pwd)
+
+java -cp "$SCRIPT_DIR/OpenEhrModelExporter.jar" org.openehr.docs.magicdraw.SnapshotRenderer "$@"
@@ -1,71 +1,36 @@
 package org.openehr.docs.magicdraw;
 
-import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.*;
-
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * @author Bostjan Lah
  */
 public abstract class AbstractInfoBuilder<T> {
-    static String DOC_ERROR_DELIM = ".Errors";
-
     protected final Formatter formatter;
+    protected final SymbolTable symbols;
 
     protected AbstractInfoBuilder(Formatter formatter) {
-        this.formatter = formatter;
+        this(formatter, new SymbolTable());
     }
 
     /**
-     * Extract comment text, but remove any section starting with the line
-     * ".Error"; this is split out by getErrorDocumentation()
+     * @param formatter formatter.
+     * @param symbols symbol table the built types are compacted with; share one between the builders of an export.
      */
-    @SuppressWarnings("HardcodedLineSeparator")
-    protected String getDocumentation(Element element, Formatter formatter) {
-        List<String> allLines = element.getOwnedComment().stream()
-                .map(Comment::getBody)
-                .flatMap(body -> Stream.of(body.split("\n")))
-                .map(formatter::escape)
-                .collect(Collectors.toList());
-        List<String> resultLines = new ArrayList<>();
-        for (String s: allLines) {
-            if (s.equalsIgnoreCase(DOC_ERROR_DELIM))
-                break;
-            resultLines.add(s);
-        }
-        return String.join(System.lineSeparator(), resultLines);
+    protected AbstractInfoBuilder(Formatter formatter, SymbolTable symbols) {
+        this.formatter = formatter;
+        this.symbols = symbols;
     }
 
     /**
-     * Extract error comment text, which is delimited by a line containing
-     * ".Error", if it exists.
-     * The delimiter line is not included in the result. If there is no
-     * error text, the result is an empty string.
+     * Parse the documentation of an element from its comments. A type documents its own features only, not
+     * the inherited ones, so each element is parsed once per export; the documentation isn't cached, as a
+     * cache would never hit and would keep all of it alive until the end of the export.
      */
-    @SuppressWarnings("HardcodedLineSeparator")
-    protected String getErrorDocumentation(Element element, Formatter formatter) {
-        List<String> allLines = element.getOwnedComment().stream()
-                .map(Comment::getBody)
-                .flatMap(body -> Stream.of(body.split("\n")))
-                .map(formatter::escape)
-                .collect(Collectors.toList());
-        List<String> resultLines = new ArrayList<>();
-        boolean found = false;
-        for (String s: allLines) {
-            if (found)
-                resultLines.add(s);
-            if (s.equalsIgnoreCase(DOC_ERROR_DELIM))
-                found = true;
-        }
-        if (!resultLines.isEmpty())
-            return String.join(System.lineSeparator(), resultLines);
-        else
-            return "";
+    protected DocBlock getDocBlock(UmlElement element) {
+        return DocBlock.parse(element.getComments(), formatter);
     }
 
     public abstract ClassInfo build(T element);
@@ -74,31 +39,26 @@ public abstract class AbstractInfoBuilder<T> {
         return formatter;
     }
 
-    protected void addConstraints(List<ConstraintInfo> constraints, Collection<Constraint> constraintOfConstrainedElement) {
-        for (Constraint constraint : constraintOfConstrainedElement) {
+    protected void addConstraints(List<ConstraintInfo> constraints, List<UmlConstraint> constraintOfConstrainedElement) {
+        for (UmlConstraint constraint : constraintOfConstrainedElement) {
             constraints.add(new ConstraintInfo().setDocumentation(formatConstraint(constraint)));
         }
     }
 
-    private String formatConstraint(Constraint constraint) {
+    private String formatConstraint(UmlConstraint constraint) {
         StringBuilder builder = new StringBuilder(formatter.italicBold(constraint.getName())).append(": ");
-        if (constraint.getSpecification() instanceof OpaqueExpression) {
-            OpaqueExpression opaqueExpression = (OpaqueExpression)constraint.getSpecification();
-            if (opaqueExpression.hasBody()) {
-                boolean add = false;
-                for (String line : opaqueExpression.getBody()) {
-                    if (add) {
-                        builder.append(formatter.hardLineBreak());
-                    }
-                    builder.append(formatter.monospace(formatter.escape(line)));
-                    add = true;
-                }
+        boolean add = false;
+        for (String line : constraint.getBody()) {
+            if (add) {
+                builder.append(formatter.hardLineBreak());
             }
+            builder.append(formatter.monospace(formatter.escape(line)));
+            add = true;
         }
         return builder.toString();
     }
 
-    protected void addAttributes(List<ClassFeatureInfo> attributes, List<Property> properties, Map<String, Property> superClassAttributes) {
+    protected void addAttributes(List<ClassFeatureInfo> attributes, List<UmlProperty> properties, Map<String, UmlProperty> superClassAttributes) {
         properties.stream()
                 .filter(p -> !superClassAttributes.containsKey(p.getName()))
                 .filter(p -> !p.isReadOnly())
@@ -109,14 +69,14 @@ public abstract class AbstractInfoBuilder<T> {
                 .forEach(p -> addAttribute(attributes, p, OperationStatus.REDEFINED));
     }
 
-    protected void addConstants(List<ClassFeatureInfo> attributes, List<Property> properties, Map<String, Property> superClassAttributes) {
+    protected void addConstants(List<ClassFeatureInfo> attributes, List<UmlProperty> properties, Map<String, UmlProperty> superClassAttributes) {
         properties.stream()
                 .filter(p -> !superClassAttributes.containsKey(p.getName()))
-                .filter(StructuralFeature::isReadOnly)
+                .filter(UmlProperty::isReadOnly)
                 .forEach(p -> addAttribute(attributes, p, OperationStatus.DEFINED));
         properties.stream()
                 .filter(p -> superClassAttributes.containsKey(p.getName()))
-                .filter(StructuralFeature::isReadOnly)
+                .filter(UmlProperty::isReadOnly)
                 .forEach(p -> addAttribute(attributes, p, OperationStatus.REDEFINED));
     }
 
@@ -126,47 +86,32 @@ public abstract class AbstractInfoBuilder<T> {
      * @param property the property to add.
      * @param attrStatus Status of attribute in this class: defined, redefined etc.
      */
-    private void addAttribute(List<ClassFeatureInfo> attributes, Property property, OperationStatus attrStatus) {
+    private void addAttribute(List<ClassFeatureInfo> attributes, UmlProperty property, OperationStatus attrStatus) {
         // create a ClassFeatureInfo with attribute documentation, occurrences and redefined marker
         ClassFeatureInfo classFeatureInfo = new ClassFeatureInfo()
-                .setDocumentation(getDocumentation(property, formatter))
+                .setDocumentation(getDocBlock(property).getText())
                 .setStatus(formatSpecialOccurences(property.getLower(), property.getUpper()) +
-                        (attrStatus.toString().isEmpty()? "" : " +" + System.lineSeparator() + "(" + attrStatus + ")"));
+                        (attrStatus.toString().isEmpty()? "" : formatter.hardLineBreak() + "(" + attrStatus + ")"));
 
         // attribute signature
         StringBuilder sigBuilder = new StringBuilder(formatter.bold(property.getName()));
         sigBuilder.append(": ");
 
         // determine the type
-        String type = property.getType() == null ? "" : property.getType().getName();
-
-        // if there are template parameters, add them to the type name. Because UML doesn't
-        // support a proper notion of types, we have to get the qualified type name, then
-        // search for that, and then check if it is a template type, and if so obtain the
-        // list of parameters and construct a string of the form "<T,U,V>" to add to the root
-        // type name.
-
-        // THE FOLLOWING CODE IS AN INITIAL ATTEMPT BUT IS WRONG
-        //String type = property.getMetaType() == null ? "" : property.getMetaType().getQualifiedName();
-        //TemplateParameter tplParam = property.getClassType().getTypeName();
-        //getMetaType(). getOwningTemplateParameter();
-//        if (tplParam != null) {
-//            List<TemplateParameter> tplParams = tplParam.getSignature().getOwnedParameter();
-//            String tplParamList = tplParams.stream()
-//                    .map(t -> t.getHumanName())
-//                    .collect(Collectors.joining(","));
-//            type = type + '<' + tplParamList + '>';
-//        }
+        String type = property.getTypeName() == null ? "" : property.getTypeName();
+
+        // the type name of a type bound to a template already carries its actual template parameters,
+        // as resolved by the type table of the model source, e.g. "Hash<String,ARCHETYPE_ONTOLOGY>"
 
         // if there is a qualifier on the property, get it, since this will modify the type
-        Property qualifier = property.getAssociation() != null && property.hasQualifier() ? property.getQualifier().get(0) : null;
+        UmlTypedElement qualifier = property.getQualifier();
         StringBuilder typeInfo = new StringBuilder(formatType(type, qualifier, property.getLower(), property.getUpper()));
 
         // add '=' + default value, if defined
-        ValueSpecification defaultValue = property.getDefaultValue();
-        if (defaultValue instanceof LiteralString) {
-            LiteralString value = (LiteralString)defaultValue;
-            typeInfo.append("{nbsp}={nbsp}").append(formatter.escapeLiteral(value.getValue()));
+        String defaultValue = property.getDefaultValue();
+        if (defaultValue != null) {
+            typeInfo.append(formatter.nonBreakingSpace()).append('=').append(formatter.nonBreakingSpace())
+                    .append(formatter.escapeLiteral(defaultValue));
         }
 
         // If there is any type information, append it
@@ -179,7 +124,7 @@ public abstract class AbstractInfoBuilder<T> {
         attributes.add(classFeatureInfo);
     }
 
-    private String formatType(String type, Property qualifier, int lower, int upper) {
+    private String formatType(String type, UmlTypedElement qualifier, int lower, int upper) {
         String formattedType;
 
         // if there is no qualifier, output either the UML relation target type or List<target type>
@@ -187,7 +132,7 @@ public abstract class AbstractInfoBuilder<T> {
             formattedType = upper == -1 || upper > 1 ? "List<" + type + '>' : type;
         }
         else {
-            String qualifierType = qualifier.getType().getName();
+            String qualifierType = qualifier.getTypeName();
             String qualifierName = qualifier.getName();
 
             // if there is a qualifier, but with no name, the output type is either the UML
@@ -225,8 +170,8 @@ public abstract class AbstractInfoBuilder<T> {
         return upper == -1 ? lower + "..1" : lower + ".." + upper;
     }
 
-    protected void addOperations(List<ClassFeatureInfo> features, List<Operation> operations, Map<String, Operation> superClassOperations) {
-        for (Operation op : operations) {
+    protected void addOperations(List<ClassFeatureInfo> features, List<UmlOperation> operations, Map<String, UmlOperation> superClassOperations) {
+        for (UmlOperation op : operations) {
             if (superClassOperations.containsKey(op.getName())) {
                 if (superClassOperations.get(op.getName()).isAbstract())
                     addOperation(features, op, OperationStatus.EFFECTED);
@@ -244,9 +189,10 @@ public abstract class AbstractInfoBuilder<T> {
      * @param operation UML operation definition.
      * @param opStatus Status of operation in this class: abstract, effected, defined etc.
      */
-    private void addOperation(List<ClassFeatureInfo> features, Operation operation, OperationStatus opStatus) {
+    private void addOperation(List<ClassFeatureInfo> features, UmlOperation operation, OperationStatus opStatus) {
         // Create the main documentation.
-        StringBuilder opDocBuilder = new StringBuilder(getDocumentation(operation, formatter));
+        DocBlock docBlock = getDocBlock(operation);
+        StringBuilder opDocBuilder = new StringBuilder(docBlock.getText());
         opDocBuilder.append(System.lineSeparator());
 
         // Start building the operation signature
@@ -255,14 +201,15 @@ public abstract class AbstractInfoBuilder<T> {
 
         // If there are parameters, output them within parentheses; also
         // add the parameter documentation to the documentary text
-        if (operation.hasOwnedParameter()) {
-            addSignatureParameters(opSigBuilder, operation.getOwnedParameter());
+        List<UmlTypedElement> parameters = operation.getParameters();
+        if (!parameters.isEmpty()) {
+            addSignatureParameters(opSigBuilder, parameters);
             opDocBuilder.append(System.lineSeparator());
-            addDocumentParameters(opDocBuilder, operation.getOwnedParameter());
+            addDocumentParameters(opDocBuilder, parameters);
         }
 
         // If there is a return type, append to the signature it in monospace.
-        String type = operation.getType() == null ? "" : operation.getType().getName();
+        String type = operation.getTypeName() == null ? "" : operation.getTypeName();
         StringBuilder fullSigBuilder = type.isEmpty()
                 ? new StringBuilder(opSigBuilder)
                 : new StringBuilder(opSigBuilder + ": " + formatter.monospace(formatType(type, null, operation.getLower(), operation.getUpper())));
@@ -271,11 +218,11 @@ public abstract class AbstractInfoBuilder<T> {
         addOperationConstraint(operation, fullSigBuilder);
 
         // Create and set the error documentation, if there is any.
-        String errStr = getErrorDocumentation(operation, formatter);
+        String errStr = docBlock.getErrors();
         if (!errStr.isEmpty()) {
             opDocBuilder.append(System.lineSeparator());
             opDocBuilder.append(formatter.errorDelimiterLine());
-            opDocBuilder.append (getErrorDocumentation(operation, formatter));
+            opDocBuilder.append(errStr);
             opDocBuilder.append(System.lineSeparator());
         }
 
@@ -293,17 +240,17 @@ public abstract class AbstractInfoBuilder<T> {
      * @param parameters UML parameter definitions.
      * @param sigBuilder string builder containing method definition as a string.
      */
-    protected void addSignatureParameters(StringBuilder sigBuilder, List<Parameter> parameters) {
+    protected void addSignatureParameters(StringBuilder sigBuilder, List<UmlTypedElement> parameters) {
         List<String> formattedParameters = new ArrayList<>();
-        for (Parameter parameter : parameters) {
+        for (UmlTypedElement parameter : parameters) {
             String paramSignature = parameter.getName();
             if (!"return".equals(paramSignature) && !paramSignature.isEmpty()) {
-                if (parameter.getType() == null)
+                if (parameter.getTypeName() == null)
                     formattedParameters.add(paramSignature);
                 else {
                     formattedParameters.add(
                             paramSignature + ": " + formatter.monospace(
-                                    formatType(parameter.getType().getName(), null, parameter.getLower(), parameter.getUpper()) +
+                                    formatType(parameter.getTypeName(), null, parameter.getLower(), parameter.getUpper()) +
                                             '[' + formatInlineOccurences(parameter.getLower(), parameter.getUpper()) + ']'
                             )
                     );
@@ -326,12 +273,12 @@ public abstract class AbstractInfoBuilder<T> {
      * @param parameters UML parameter definitions.
      * @param docBuilder string builder containing parameter documentation.
      */
-    protected void addDocumentParameters(StringBuilder docBuilder, List<Parameter> parameters) {
+    protected void addDocumentParameters(StringBuilder docBuilder, List<UmlTypedElement> parameters) {
         List<String> formattedParameters = new ArrayList<>();
-        for (Parameter parameter : parameters) {
+        for (UmlTypedElement parameter : parameters) {
             String paramName = parameter.getName();
             if (!"return".equals(paramName) && !paramName.isEmpty()) {
-                String paramComment = getDocumentation(parameter, formatter);
+                String paramComment = getDocBlock(parameter).getText();
                 if (!paramComment.isEmpty()) {
                     formattedParameters.add(System.lineSeparator() + formatter.italicMonospace(paramName)  + ":: " + paramComment);
                 }
@@ -351,9 +298,9 @@ public abstract class AbstractInfoBuilder<T> {
      * @param operation UML method definition.
      * @param builder string builder containing method definition as a string.
      */
-    private void addOperationConstraint(Operation operation, StringBuilder builder) {
-        for (Constraint constraint : operation.get_constraintOfConstrainedElement()) {
-            builder.append(" +").append(System.lineSeparator()).append(formatConstraint(constraint));
+    private void addOperationConstraint(UmlOperation operation, StringBuilder builder) {
+        for (UmlConstraint constraint : operation.getConstraints()) {
+            builder.append(formatter.hardLineBreak()).append(formatConstraint(constraint));
         }
     }
 
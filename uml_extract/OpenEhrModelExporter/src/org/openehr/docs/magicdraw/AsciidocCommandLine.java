@@ -15,6 +15,9 @@ import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -27,27 +30,158 @@ public class AsciidocCommandLine extends CommandLine {
     private int headingLevel;
     private final Set<String> rootPackageName = new HashSet<>();
     private String indexRelease;
+    private OutputFormat outputFormat = OutputFormat.ASCIIDOC;
+    private int threadCount;
+    private boolean incremental;
+    private boolean diagramCache = true;
+    private boolean optimizeSvg;
+    private ExportShard shard;
+    private File snapshotFile;
+    private boolean watch;
+    private File batchFile;
+    private File jfrFile;
+    private DiagramCache sharedDiagramCache;
     private File projectFile;
     private File outFolder;
     private boolean helpOnly;
 
     @Override
     protected byte execute() {
-        ProjectDescriptor projectDescriptor = ProjectDescriptorsFactory.createProjectDescriptor(projectFile.toURI());
-        if (projectDescriptor == null) {
-            throw new OpenEhrExporterException("Project descriptor not created for " + projectFile.getAbsolutePath() + '!');
+        if (jfrFile == null) {
+            return executeExport();
+        }
+        AutoCloseable recording = ExportEvents.startRecording(jfrFile);
+        try {
+            return executeExport();
+        } finally {
+            try {
+                recording.close();
+                System.out.println("Flight recording written to " + jfrFile);
+            } catch (Exception e) {
+                throw new OpenEhrExporterException("Unable to write flight recording to " + jfrFile + '!', e);
+            }
         }
+    }
+
+    private byte executeExport() {
         ProjectsManager projectsManager = Application.getInstance().getProjectsManager();
-        projectsManager.loadProject(projectDescriptor, true);
+        if (batchFile != null) {
+            executeBatch(projectsManager);
+            return (byte)0;
+        }
+
+        ProjectDescriptor projectDescriptor = createProjectDescriptor(projectFile);
+        ExportReport report = new ExportReport();
+        report.timePhase("projectLoad", () -> projectsManager.loadProject(projectDescriptor, true));
         Project project = projectsManager.getActiveProject();
 
-        OpenEHRProjectExporter exporter = new OpenEHRProjectExporter(headingLevel, rootPackageName, indexRelease);
+        OpenEHRProjectExporter exporter = createExporter(rootPackageName, indexRelease)
+                .setSnapshotFile(snapshotFile);
         try {
-            exporter.exportProject(outFolder, project);
-            return (byte)0;
+            exporter.exportProject(outFolder, project, report);
         } catch (Exception e) {
             throw new OpenEhrExporterException("Export failed: " + e.getMessage(), e);
         }
+        System.out.println(report.summary());
+
+        if (watch) {
+            // later runs only rewrite what changed
+            exporter.setIncremental(true);
+            watch(projectsManager, projectDescriptor, exporter);
+        }
+        return (byte)0;
+    }
+
+    /**
+     * Run the jobs of a batch file. Each distinct project is loaded once, and the jobs on it are exported one
+     * after another, each spreading its rendering and writing over its own workers; the model is only read,
+     * and the diagrams only exported, from one thread at a time. The project is closed before the next one is
+     * loaded. Failing jobs don't stop the others, all failures are reported at the end.
+     */
+    private void executeBatch(ProjectsManager projectsManager) {
+        Map<File, List<BatchJob>> jobsByProject = BatchJob.read(batchFile).stream()
+                .collect(Collectors.groupingBy(BatchJob::getProjectFile, LinkedHashMap::new, Collectors.toList()));
+
+        OpenEhrExporterException failure = null;
+        for (Map.Entry<File, List<BatchJob>> projectJobs : jobsByProject.entrySet()) {
+            File batchProjectFile = projectJobs.getKey();
+            List<BatchJob> jobs = projectJobs.getValue();
+            System.out.println("Exporting " + jobs.size() + " job(s) from " + batchProjectFile);
+
+            long loadStart = System.nanoTime();
+            projectsManager.loadProject(createProjectDescriptor(batchProjectFile), true);
+            long loadTime = System.nanoTime() - loadStart;
+            Project project = projectsManager.getActiveProject();
+            try {
+                for (BatchJob job : jobs) {
+                    OpenEHRProjectExporter exporter = createExporter(job.getRootPackageNames(), job.getIndexRelease());
+                    // the project load is shared by the jobs, but reported with each of them
+                    ExportReport report = new ExportReport();
+                    report.addPhase("projectLoad", loadTime);
+                    try {
+                        exporter.exportProject(job.getOutFolder(), project, report);
+                        System.out.println(job.getOutFolder() + ": " + report.summary());
+                    } catch (Exception e) {
+                        failure = ExportExecutor.addFailure(failure, new OpenEhrExporterException(
+                                "Export of " + job.getRootPackageNames() + " from " + batchProjectFile + " failed: " + e.getMessage(), e));
+                    }
+                }
+            } finally {
+                projectsManager.closeProjectNoSave();
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private OpenEHRProjectExporter createExporter(Set<String> rootPackageNames, String release) {
+        if (sharedDiagramCache == null && diagramCache) {
+            sharedDiagramCache = new DiagramCache(DiagramCache.defaultCacheFolder(), DiagramCache.DEFAULT_MAX_SIZE);
+        }
+        return new OpenEHRProjectExporter(headingLevel, rootPackageNames, release)
+                .setOutputFormat(outputFormat)
+                .setThreadCount(threadCount)
+                .setIncremental(incremental)
+                .setDiagramCache(sharedDiagramCache)
+                .setSvgOptimizer(optimizeSvg ? new SvgOptimizer() : null)
+                .setShard(shard);
+    }
+
+    private static ProjectDescriptor createProjectDescriptor(File file) {
+        ProjectDescriptor projectDescriptor = ProjectDescriptorsFactory.createProjectDescriptor(file.toURI());
+        if (projectDescriptor == null) {
+            throw new OpenEhrExporterException("Project descriptor not created for " + file.getAbsolutePath() + '!');
+        }
+        return projectDescriptor;
+    }
+
+    /**
+     * Keep the JVM and MagicDraw resident, and reload and re-export the project each time its file changes,
+     * until the process is stopped.
+     */
+    private void watch(ProjectsManager projectsManager, ProjectDescriptor projectDescriptor, OpenEHRProjectExporter exporter) {
+        try (ProjectFileWatcher watcher = new ProjectFileWatcher(projectFile)) {
+            while (true) {
+                System.out.println("Watching " + projectFile + " for changes...");
+                watcher.awaitChange();
+
+                ExportReport report = new ExportReport();
+                try {
+                    report.timePhase("projectLoad", () -> {
+                        projectsManager.closeProjectNoSave();
+                        projectsManager.loadProject(projectDescriptor, true);
+                    });
+                    exporter.exportProject(outFolder, projectsManager.getActiveProject(), report);
+                    System.out.println(report.summary());
+                } catch (Exception e) {
+                    // keep watching, the next save may fix it
+                    System.out.println("Export failed: " + e.getMessage());
+                }
+            }
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     @Override
@@ -64,6 +198,17 @@ public class AsciidocCommandLine extends CommandLine {
                         throw new OpenEhrExporterException("Invalid argument for -l: " + level + " (expected numeric)!");
                     }
                     break;
+                case "-j":
+                    String threads = getParameterValue(iterator, "-j");
+                    try {
+                        threadCount = Integer.valueOf(threads);
+                    } catch (NumberFormatException ignored) {
+                        throw new OpenEhrExporterException("Invalid argument for -j: " + threads + " (expected numeric)!");
+                    }
+                    if (threadCount <= 0) {
+                        throw new OpenEhrExporterException("Invalid argument for -j: " + threads + " (expected at least 1)!");
+                    }
+                    break;
                 case "-o":
                     String outputFolder = getParameterValue(iterator, "-o");
                     Path outputPath = Paths.get(outputFolder);
@@ -78,13 +223,74 @@ public class AsciidocCommandLine extends CommandLine {
                 case "-i":
                     indexRelease = getParameterValue(iterator, "-i");
                     break;
+                case "-f":
+                    outputFormat = OutputFormat.fromName(getParameterValue(iterator, "-f"));
+                    break;
+                case "--incremental":
+                    incremental = true;
+                    break;
+                case "--no-diagram-cache":
+                    diagramCache = false;
+                    break;
+                case "--optimize-svg":
+                    optimizeSvg = true;
+                    break;
+                case "--shard":
+                    shard = ExportShard.parse(getParameterValue(iterator, "--shard"));
+                    break;
+                case "--snapshot":
+                    snapshotFile = new File(getParameterValue(iterator, "--snapshot"));
+                    break;
+                case "--watch":
+                    watch = true;
+                    break;
+                case "--jfr":
+                    jfrFile = new File(getParameterValue(iterator, "--jfr"));
+                    break;
+                case "--batch":
+                    String batch = getParameterValue(iterator, "--batch");
+                    if (!Files.isReadable(Paths.get(batch))) {
+                        throw new OpenEhrExporterException("Batch file " + batch + " doesn't exist!");
+                    }
+                    batchFile = new File(batch);
+                    break;
                 case "-?":
                 case "-h":
-                    System.out.println("Usage: uml_generate [-o output_folder] [-l heading_level] [-r root_package_name] [-i index_release] <project file>");
+                    System.out.println("Usage: uml_generate [-o output_folder] [-l heading_level] [-r root_package_name] [-i index_release] [-f format] [-j threads] [--incremental] [--no-diagram-cache] [--optimize-svg] [--shard i/n] [--snapshot snapshot_file] [--watch] [--jfr recording_file] <project file>");
+                    System.out.println("       uml_generate [-l heading_level] [-f format] [-j threads] [--incremental] [--no-diagram-cache] [--optimize-svg] [--shard i/n] [--jfr recording_file] --batch batch_file");
                     System.out.println("       -o: output folder (default = current folder)");
                     System.out.println("       -l: class headings level (default = 3)");
-                    System.out.println("       -r: root package name to export (default = openehr)");
+                    System.out.println("       -r: comma separated patterns of the packages to export (default = openehr):");
+                    System.out.println("           openehr::rm selects the packages of that path at any depth and all below them, '*' and '?'");
+                    System.out.println("           match within a name, '**' matches any number of packages, a leading '::' only matches from");
+                    System.out.println("           the model, and a leading '-' excludes the packages matched and all below them, for example");
+                    System.out.println("           -r openehr::rm,-openehr::rm::demographic or -r ::BASE::openehr");
+                    System.out.println("           Diagrams are exported when the package owning them is selected.");
                     System.out.println("       -i: generate an index against a specific release, for example Release-1.0.3");
+                    System.out.println("       -f: format of the class tables: asciidoc (default), or html for HTML tables Asciidoctor passes");
+                    System.out.println("           through unparsed, which speeds up HTML builds but isn't rendered by other backends");
+                    System.out.println("       -j: number of threads rendering and writing files (default = number of processors)");
+                    System.out.println("       --incremental: only write files that changed since the last export to the output folder,");
+                    System.out.println("                      remove files of types no longer in the model, and don't build types");
+                    System.out.println("                      unchanged since then");
+                    System.out.println("       --no-diagram-cache: always export diagrams, rather than reusing images of unchanged diagrams");
+                    System.out.println("                           cached in " + DiagramCache.defaultCacheFolder());
+                    System.out.println("       --optimize-svg: make the SVG diagrams smaller, by replacing styles with classes, rounding");
+                    System.out.println("                       coordinates to " + SvgOptimizer.DEFAULT_PRECISION + " decimals and removing editor metadata");
+                    System.out.println("       --shard: export the i-th of n shards of the types and diagrams, for example --shard 2/4;");
+                    System.out.println("                each shard writes a partial class index, which index_merge merges into the");
+                    System.out.println("                class index once all shards have run");
+                    System.out.println("       --snapshot: also write a model snapshot, from which snapshot_render can render the class");
+                    System.out.println("                   files and index again without MagicDraw");
+                    System.out.println("       --watch: after exporting, keep running and export again, incrementally, each time the");
+                    System.out.println("                project file changes");
+                    System.out.println("       --batch: run the exports listed in a batch file, one per line as");
+                    System.out.println("                'project file | root packages | output folder [| index release]',");
+                    System.out.println("                loading each project once");
+                    System.out.println("       --jfr: record the export with Java Flight Recorder, including events for each class built");
+                    System.out.println("              and rendered, file written and diagram exported, and write the recording to a file");
+                    System.out.println("       Each export writes the timings and counters of its phases to " + ExportReport.REPORT_FILE_NAME);
+                    System.out.println("       in the output folder.");
                     helpOnly = true;
                     break;
                 default:
@@ -96,12 +302,21 @@ public class AsciidocCommandLine extends CommandLine {
             }
         }
         if (!helpOnly) {
-            if (projectFile == null) {
+            if (batchFile != null) {
+                if (projectFile != null || snapshotFile != null || watch) {
+                    throw new OpenEhrExporterException("A project file, --snapshot and --watch can't be combined with --batch!");
+                }
+            } else if (jfrFile != null && watch) {
+                throw new OpenEhrExporterException("--jfr can't be combined with --watch; use -XX:StartFlightRecording instead!");
+            } else if (projectFile == null) {
                 throw new OpenEhrExporterException("No project file specified!");
             }
             if (headingLevel <= 0) {
                 headingLevel = 3;
             }
+            if (threadCount <= 0) {
+                threadCount = Runtime.getRuntime().availableProcessors();
+            }
             if (outFolder == null) {
                 outFolder = new File(".");
             }
@@ -4,6 +4,9 @@ package org.openehr.docs.magicdraw;
  * @author Bostjan Lah
  */
 public class AsciidocFormatter implements Formatter {
+    private static final String PIPE_ENTITY = "&#124;";
+    private static final String LITERAL_BLOCK_DELIMITER = "----";
+
     @Override
     public String bold(String text) {
         if (text == null || text.trim().isEmpty()) {
@@ -46,13 +49,23 @@ public class AsciidocFormatter implements Formatter {
         return " +" + System.lineSeparator();
     }
 
+    @Override
+    public String nonBreakingSpace() {
+        return "{nbsp}";
+    }
+
     /**
      * Do any escaping needed for AsciiDoc processing within literal strings occurring in type signatures.
      * @param value documentation string.
      */
     @Override
     public String escapeLiteral(String value) {
-        return value.replace("|", "&#124;").replace("*", "&#42;").replace("<=", "\\<=");
+        if (!needsEscape(value, true)) {
+            return value;
+        }
+        StringBuilder builder = new StringBuilder(value.length() + 16);
+        appendEscapedLiteral(builder, value);
+        return builder.toString();
     }
 
     /**
@@ -61,7 +74,12 @@ public class AsciidocFormatter implements Formatter {
      */
     @Override
     public String escape(String value) {
-        return value.replace("<=", "\\<=");
+        if (!needsEscape(value, false)) {
+            return value;
+        }
+        StringBuilder builder = new StringBuilder(value.length() + 16);
+        appendEscaped(builder, value);
+        return builder.toString();
     }
 
     /**
@@ -71,7 +89,12 @@ public class AsciidocFormatter implements Formatter {
      */
     @Override
     public String escapeColumnSeparator(String value) {
-        return value.replace("|", "&#124;");
+        if (value.indexOf('|') < 0) {
+            return value;
+        }
+        StringBuilder builder = new StringBuilder(value.length() + 16);
+        appendColumnSeparatorEscaped(builder, value, 0, value.length());
+        return builder.toString();
     }
 
     /**
@@ -80,15 +103,139 @@ public class AsciidocFormatter implements Formatter {
      */
     @Override
     public String normalizeLines(String doc) {
-        StringBuilder classDoc = new StringBuilder();
+        StringBuilder builder = new StringBuilder(doc.length());
+        appendNormalizedLines(builder, doc, false);
+        return builder.toString();
+    }
+
+    @Override
+    public void appendEscaped(StringBuilder target, String value) {
+        int from = 0;
+        int next = value.indexOf("<=");
+        while (next >= 0) {
+            target.append(value, from, next).append('\\');
+            from = next;
+            next = value.indexOf("<=", next + 2);
+        }
+        target.append(value, from, value.length());
+    }
+
+    @Override
+    public void appendEscapedLiteral(StringBuilder target, String value) {
+        // next occurrence of each escaped sequence, found with indexOf rather than testing every char
+        int nextPipe = value.indexOf('|');
+        int nextStar = value.indexOf('*');
+        int nextLessOrEqual = value.indexOf("<=");
+        int from = 0;
+        while (true) {
+            int next = firstOf(firstOf(nextPipe, nextStar), nextLessOrEqual);
+            if (next < 0) {
+                break;
+            }
+            target.append(value, from, next);
+            if (next == nextPipe) {
+                target.append(PIPE_ENTITY);
+                from = next + 1;
+                nextPipe = value.indexOf('|', from);
+            } else if (next == nextStar) {
+                target.append("&#42;");
+                from = next + 1;
+                nextStar = value.indexOf('*', from);
+            } else {
+                target.append('\\');
+                from = next;
+                nextLessOrEqual = value.indexOf("<=", next + 2);
+            }
+        }
+        target.append(value, from, value.length());
+    }
+
+    private static int firstOf(int index1, int index2) {
+        return index1 < 0 ? index2 : index2 < 0 ? index1 : Math.min(index1, index2);
+    }
+
+    /**
+     * Same as escapeColumnSeparator(normalizeLines(doc)), in a single pass over the documentation.
+     * @param target builder to append to.
+     * @param doc documentation string.
+     */
+    @Override
+    public void appendDocumentation(StringBuilder target, String doc) {
+        appendNormalizedLines(target, doc, true);
+    }
+
+    /**
+     * Scans the documentation line by line, toggling the literal block state on lines starting with "----"
+     * (the opening line itself is kept as is, the closing line is trimmed). The trim of the whole result is
+     * done on the fly: leading whitespace is skipped until the first other character is appended, and the
+     * target is cut back to the last such character at the end. Also used by the HtmlFormatter.
+     */
+    static void appendNormalizedLines(StringBuilder target, String doc, boolean escapeColumnSeparator) {
+        int length = doc.length();
+        int start = target.length();
+        int contentEnd = start;
         boolean inLiteralBlock = false;
-        for (String line : doc.split("\n")) {
-            if (line.trim().startsWith("----")) {
+        int lineStart = 0;
+        while (lineStart <= length) {
+            int lineEnd = doc.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = length;
+            }
+            int trimmedStart = lineStart;
+            int trimmedEnd = lineEnd;
+            while (trimmedStart < trimmedEnd && doc.charAt(trimmedStart) <= ' ') {
+                trimmedStart++;
+            }
+            while (trimmedEnd > trimmedStart && doc.charAt(trimmedEnd - 1) <= ' ') {
+                trimmedEnd--;
+            }
+            if (trimmedEnd - trimmedStart >= LITERAL_BLOCK_DELIMITER.length()
+                    && doc.startsWith(LITERAL_BLOCK_DELIMITER, trimmedStart)) {
                 inLiteralBlock = !inLiteralBlock;
             }
-            classDoc.append(inLiteralBlock ? line : line.trim()).append('\n');
+            int from = inLiteralBlock ? lineStart : trimmedStart;
+            int to = inLiteralBlock ? lineEnd : trimmedEnd;
+            if (target.length() == start) {
+                // still within the leading whitespace of the result
+                while (from < to && doc.charAt(from) <= ' ') {
+                    from++;
+                }
+            }
+            if (from < to) {
+                if (escapeColumnSeparator) {
+                    appendColumnSeparatorEscaped(target, doc, from, to);
+                } else {
+                    target.append(doc, from, to);
+                }
+                // trailing whitespace of a literal line is only kept if followed by further content
+                int end = to;
+                while (end > from && doc.charAt(end - 1) <= ' ') {
+                    end--;
+                }
+                if (end > from) {
+                    contentEnd = target.length() - (to - end);
+                }
+            }
+            if (target.length() > start) {
+                target.append('\n');
+            }
+            lineStart = lineEnd + 1;
         }
-        return classDoc.toString().trim();
+        target.setLength(contentEnd);
+    }
+
+    private static void appendColumnSeparatorEscaped(StringBuilder target, String value, int from, int to) {
+        int next = value.indexOf('|', from);
+        while (next >= 0 && next < to) {
+            target.append(value, from, next).append(PIPE_ENTITY);
+            from = next + 1;
+            next = value.indexOf('|', from);
+        }
+        target.append(value, from, to);
+    }
+
+    private static boolean needsEscape(String value, boolean literal) {
+        return value.contains("<=") || literal && (value.indexOf('|') >= 0 || value.indexOf('*') >= 0);
     }
 
     /**
@@ -0,0 +1,97 @@
+package org.openehr.docs.magicdraw;
+
+/**
+ * Renders ClassInfo objects as Asciidoctor (.adoc) class files, with an Asciidoctor class table, and the
+ * class index.
+ *
+ * @author Bostjan Lah
+ */
+public class AsciidocRenderer extends ClassRenderer {
+    /**
+     * @param formatter formatter.
+     * @param headingLevel level of class headings.
+     * @param indexRelease release the class index links to.
+     */
+    public AsciidocRenderer(Formatter formatter, int headingLevel, String indexRelease) {
+        super(formatter, headingLevel, indexRelease);
+    }
+
+    @Override
+    protected void startTable(StringBuilder content) {
+        appendLine(content, "[cols=\"^1,3,5\"]");
+        appendLine(content, "|===");
+    }
+
+    @Override
+    protected void exportTitle(StringBuilder content, String metaType, String typeTitle) {
+        appendLine(content, "h|" + formatter.bold(metaType));
+        appendLine(content, "2+^h|" + typeTitle);
+        appendLine(content, "");
+    }
+
+    @Override
+    protected void exportDescription(StringBuilder content, String documentation) {
+        appendLine(content, "h|" + formatter.bold("Description"));
+
+        appendDocumentationLine(content, "2+a|", documentation);
+        appendLine(content, "");
+    }
+
+    @Override
+    protected void exportParent(StringBuilder content, String parentClassName) {
+        appendLine(content, "h|" + formatter.bold("Inherit"));
+        appendLine(content, "2+|" + parentClassName);
+        appendLine(content, "");
+    }
+
+    @Override
+    protected void exportFeatureHeading(StringBuilder content, String title) {
+        appendLine(content, "h|" + formatter.bold(title));
+        appendLine(content, "^h|" + formatter.bold("Signature"));
+        appendLine(content, "^h|" + formatter.bold("Meaning"));
+    }
+
+    /**
+     * Export a single attribute in a class as text in an Asciidoctor (.adoc) file.
+     * @param content class file content.
+     * @param classFeatureInfo info object for the attribute.
+     */
+    @Override
+    protected void exportAttribute(StringBuilder content, ClassFeatureInfo classFeatureInfo) {
+        appendLine(content, "");
+        appendLine(content, "h|" + formatter.bold(classFeatureInfo.getStatus()));
+        appendLine(content, '|' + classFeatureInfo.getSignature());
+        appendDocumentationLine(content, "a|", classFeatureInfo.getDocumentation());
+    }
+
+    @Override
+    protected void exportFunction(StringBuilder content, ClassFeatureInfo classFeatureInfo) {
+        appendLine(content, "");
+        appendLine(content, "h|" + classFeatureInfo.getStatus());
+
+        appendLine(content, '|' + classFeatureInfo.getSignature());
+        appendDocumentationLine(content, "a|", classFeatureInfo.getDocumentation());
+    }
+
+    @Override
+    protected void exportConstraint(StringBuilder content, String title, ConstraintInfo constraintInfo) {
+        appendLine(content, "");
+        appendLine(content, "h|" + formatter.escapeColumnSeparator(title));
+
+        appendDocumentationLine(content, "2+a|", constraintInfo.getDocumentation());
+    }
+
+    @Override
+    protected void endTable(StringBuilder content) {
+        appendLine(content, "|===");
+    }
+
+    /**
+     * Append a table cell with documentation, without intermediate copies of the documentation string.
+     */
+    private void appendDocumentationLine(StringBuilder content, String cellPrefix, String doc) {
+        content.append(cellPrefix);
+        formatter.appendDocumentation(content, doc);
+        content.append(LINE_SEPARATOR);
+    }
+}
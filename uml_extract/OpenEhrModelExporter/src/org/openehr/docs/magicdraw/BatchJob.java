@@ -0,0 +1,120 @@
+package org.openehr.docs.magicdraw;
+
+import org.openehr.docs.magicdraw.exception.OpenEhrExporterException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * One export in a batch: a project file, the root packages to export from it, the output folder and the
+ * optional index release.
+ * <p>
+ * A batch file has one job per line, with the fields separated by '|':
+ * <pre>
+ * # project file | root packages | output folder | index release
+ * models/openEHR_RM.mdzip | openehr::rm    | ../specifications-RM/docs/UML   | Release-1.0.4
+ * models/openEHR_RM.mdzip | openehr::base  | ../specifications-BASE/docs/UML
+ * </pre>
+ * Root packages are comma separated, as for -r. Blank lines and lines starting with '#' are ignored.
+ * Relative paths are relative to the folder of the batch file.
+ */
+public class BatchJob {
+    private static final Pattern FIELD_SEPARATOR = Pattern.compile("\\|");
+    private static final Pattern ROOT_PACKAGE_SEPARATOR = Pattern.compile(",");
+
+    private final File projectFile;
+    private final Set<String> rootPackageNames;
+    private final File outFolder;
+    private final String indexRelease;
+
+    public BatchJob(File projectFile, Set<String> rootPackageNames, File outFolder, String indexRelease) {
+        this.projectFile = projectFile;
+        this.rootPackageNames = rootPackageNames;
+        this.outFolder = outFolder;
+        this.indexRelease = indexRelease;
+    }
+
+    public File getProjectFile() {
+        return projectFile;
+    }
+
+    public Set<String> getRootPackageNames() {
+        return rootPackageNames;
+    }
+
+    public File getOutFolder() {
+        return outFolder;
+    }
+
+    public String getIndexRelease() {
+        return indexRelease;
+    }
+
+    /**
+     * Read the jobs of a batch file.
+     * @param batchFile batch file.
+     * @return jobs, in file order.
+     * @exception OpenEhrExporterException if the file can't be read or contains an invalid job.
+     */
+    public static List<BatchJob> read(File batchFile) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(batchFile.toPath(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new OpenEhrExporterException("Unable to read " + batchFile + '!', e);
+        }
+
+        File baseFolder = batchFile.getAbsoluteFile().getParentFile();
+        List<BatchJob> jobs = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                jobs.add(parse(line, baseFolder, batchFile.getName() + ':' + (i + 1)));
+            }
+        }
+        if (jobs.isEmpty()) {
+            throw new OpenEhrExporterException("No jobs in batch file " + batchFile + '!');
+        }
+        return jobs;
+    }
+
+    private static BatchJob parse(String line, File baseFolder, String location) {
+        String[] fields = FIELD_SEPARATOR.split(line, -1);
+        if (fields.length < 3 || fields.length > 4) {
+            throw new OpenEhrExporterException(location + ": expected 'project file | root packages | output folder [| index release]'!");
+        }
+
+        File projectFile = resolve(baseFolder, fields[0].trim());
+        if (!projectFile.canRead()) {
+            throw new OpenEhrExporterException(location + ": project file " + projectFile + " doesn't exist!");
+        }
+        Set<String> rootPackageNames = ROOT_PACKAGE_SEPARATOR.splitAsStream(fields[1])
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        if (rootPackageNames.isEmpty()) {
+            throw new OpenEhrExporterException(location + ": no root package specified!");
+        }
+        File outFolder = resolve(baseFolder, fields[2].trim());
+        if (!outFolder.isDirectory()) {
+            throw new OpenEhrExporterException(location + ": output folder " + outFolder + " doesn't exist!");
+        }
+        String indexRelease = fields.length > 3 && !fields[3].trim().isEmpty() ? fields[3].trim() : null;
+
+        return new BatchJob(projectFile, rootPackageNames, outFolder, indexRelease);
+    }
+
+    // normalised, so that jobs on the same project file are recognised as such
+    private static File resolve(File baseFolder, String path) {
+        File file = new File(path);
+        return (file.isAbsolute() ? file : new File(baseFolder, path)).toPath().normalize().toFile();
+    }
+}
@@ -0,0 +1,266 @@
+package org.openehr.docs.magicdraw;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Hands each ClassInfo over to the workers for export as it is built, after which it is released; only
+ * its index entry is kept, unless types are retained for a snapshot. Records the wall time from the first
+ * build to the last file written as the "classes" phase.
+ * <p>
+ * Class files are named after the lower case type name, so two types may map to the same file. As when
+ * the files were written one after the other, the last of these types in export order is exported and the
+ * others are dropped, with a note in the report; this is decided over all types of the model, before the
+ * filter and before any file is handed to the workers, so that the outcome depends neither on the types
+ * selected, such as those of a shard, nor on the order in which the workers write.
+ * <p>
+ * If fingerprints are set, types unchanged since the earlier export aren't built at all; their class files
+ * are kept, and their index entries taken from the stored fingerprints. When exporting the changes reported
+ * by the model, the types not affected by them are taken as unchanged without being fingerprinted.
+ */
+class ClassExport {
+    private final ClassRenderer renderer;
+    private final File targetFolder;
+    private final ExportFileWriter fileWriter;
+    private final ExportExecutor workers;
+    private final ExportReport report;
+    private final List<IndexEntry> indexEntries = new ArrayList<>();
+    private final List<ClassInfo> retainedTypes;
+    private final long start = System.nanoTime();
+    private final AtomicLong end = new AtomicLong(start);
+
+    private ModelFingerprints previousFingerprints;
+    private String fingerprintSettings;
+    // qualified names of the types to build when exporting changes, otherwise null
+    private Set<String> changedTypes;
+    private final Map<String, String> typeFingerprints = new HashMap<>();
+    private Map<String, String> packageFingerprints = new HashMap<>();
+    // types built by this export, whose class file hash is only known once written
+    private final Map<String, IndexEntry> builtTypes = new HashMap<>();
+    private final Map<String, ModelFingerprints.TypeEntry> typeEntries = new HashMap<>();
+    private int typesUnchanged;
+
+    ClassExport(ClassRenderer renderer, File targetFolder, ExportFileWriter fileWriter, ExportExecutor workers, ExportReport report,
+                boolean retainTypes) {
+        this.renderer = renderer;
+        this.targetFolder = targetFolder;
+        this.fileWriter = fileWriter;
+        this.workers = workers;
+        this.report = report;
+        retainedTypes = retainTypes ? new ArrayList<>() : null;
+    }
+
+    /**
+     * Fingerprint the exported types, see {@link ModelFingerprints}, and skip those unchanged since an earlier
+     * export whose class files are still in place, without building them. Set before exporting a model source.
+     * @param previous fingerprints of the earlier export, or null to fingerprint without skipping any type.
+     * @param settings export settings the class files depend on.
+     */
+    ClassExport setFingerprints(ModelFingerprints previous, String settings) {
+        previousFingerprints = previous;
+        fingerprintSettings = settings;
+        return this;
+    }
+
+    /**
+     * Export the changes since an earlier export: only the changed types, and those without a stored entry
+     * or whose class file was changed or removed since, are fingerprinted and built. Set instead of
+     * {@link #setFingerprints(ModelFingerprints, String)}.
+     * @param previous fingerprints of the earlier export.
+     * @param settings export settings the class files depend on.
+     * @param changed qualified names of the types changed since the earlier export.
+     */
+    ClassExport setChanges(ModelFingerprints previous, String settings, Set<String> changed) {
+        previousFingerprints = previous;
+        fingerprintSettings = settings;
+        changedTypes = changed;
+        return this;
+    }
+
+    /**
+     * Build and export the classes, interfaces and enumerations of a model, in that order.
+     * @param source types of the model.
+     * @param formatter formatter of the output format.
+     * @param filter selects the types to export, such as those of a shard, once shadowed types are dropped.
+     */
+    void export(ModelSource source, Formatter formatter, Predicate<UmlClassifier> filter) {
+        // classes with names simulating template type names are ignored
+        List<UmlClassifier> classes = source.getClasses().stream()
+                .filter(c -> ! c.getName().contains("<"))
+                .collect(Collectors.toList());
+        List<UmlClassifier> interfaces = source.getInterfaces().stream()
+                .filter(c -> ! c.getName().contains("<"))
+                .collect(Collectors.toList());
+        List<UmlClassifier> enumerations = new ArrayList<>(source.getEnumerations());
+        // shadowing is resolved over all types of the model, so that the type exported under a class file
+        // name doesn't depend on which of them the filter lets through
+        List<List<UmlClassifier>> typeLists = Arrays.asList(classes, interfaces, enumerations);
+        dropShadowedTypes(typeLists);
+        for (List<UmlClassifier> types : typeLists) {
+            types.removeIf(filter.negate());
+        }
+        if (fingerprintSettings != null) {
+            report.timePhase("fingerprints", () -> fingerprint(classes, interfaces, enumerations));
+        }
+
+        // values repeating across the types are shared through a symbol table of this export
+        SymbolTable symbols = new SymbolTable();
+        export(classes, new ClassInfoBuilder(formatter, new InheritedFeatureCache(), symbols));
+        export(interfaces, new InterfaceInfoBuilder(formatter, symbols));
+        export(enumerations, new EnumerationInfoBuilder(formatter, symbols));
+    }
+
+    /**
+     * Drop the types whose class file is also that of a later type of the export.
+     * @param typeLists lists of the types to export, in export order.
+     */
+    private void dropShadowedTypes(List<List<UmlClassifier>> typeLists) {
+        Map<String, UmlClassifier> lastTypes = new HashMap<>();
+        for (List<UmlClassifier> types : typeLists) {
+            for (UmlClassifier type : types) {
+                lastTypes.put(classFileName(type), type);
+            }
+        }
+        for (List<UmlClassifier> types : typeLists) {
+            types.removeIf(type -> {
+                String fileName = classFileName(type);
+                UmlClassifier lastType = lastTypes.get(fileName);
+                if (lastType == type) {
+                    return false;
+                }
+                report.addShadowedType(type.getQualifiedName() + " (" + fileName + " of " + lastType.getQualifiedName() + ')');
+                return true;
+            });
+        }
+    }
+
+    private static String classFileName(UmlClassifier type) {
+        // as the class name of its info object, without template parameters
+        String name = type.getName();
+        return ClassRenderer.classFileName(name.contains("<") ? name.substring(0, name.indexOf('<')) : name);
+    }
+
+    private void fingerprint(List<UmlClassifier> classes, List<UmlClassifier> interfaces, List<UmlClassifier> enumerations) {
+        TypeFingerprints fingerprints = new TypeFingerprints();
+        fingerprint(fingerprints, "Class", classes);
+        fingerprint(fingerprints, "Interface", interfaces);
+        fingerprint(fingerprints, "Enumeration", enumerations);
+        packageFingerprints = ModelFingerprints.packageFingerprints(typeFingerprints);
+    }
+
+    private void fingerprint(TypeFingerprints fingerprints, String metaType, List<UmlClassifier> types) {
+        for (UmlClassifier type : types) {
+            ModelFingerprints.TypeEntry stored = changedTypes != null && !changedTypes.contains(type.getQualifiedName())
+                    ? previousFingerprints.getEntry(type.getQualifiedName())
+                    : null;
+            typeFingerprints.put(type.getQualifiedName(), stored != null ? stored.getFingerprint() : fingerprints.of(metaType, type));
+        }
+    }
+
+    private void export(List<UmlClassifier> types, AbstractInfoBuilder<UmlClassifier> builder) {
+        for (UmlClassifier type : types) {
+            ModelFingerprints.TypeEntry unchanged = getUnchanged(type.getQualifiedName());
+            if (unchanged != null) {
+                indexEntries.add(unchanged.getIndexEntry());
+                typeEntries.put(type.getQualifiedName(), unchanged);
+                typesUnchanged++;
+            } else {
+                ClassInfo classInfo = build(builder, type);
+                if (fingerprintSettings != null) {
+                    builtTypes.put(type.getQualifiedName(), IndexEntry.of(classInfo));
+                }
+                export(classInfo);
+            }
+        }
+        end.accumulateAndGet(System.nanoTime(), Math::max);
+    }
+
+    /**
+     * @return the stored entry of the type if it is unchanged and its class file has been kept, otherwise null.
+     */
+    private ModelFingerprints.TypeEntry getUnchanged(String qualifiedName) {
+        if (previousFingerprints == null) {
+            return null;
+        }
+        ModelFingerprints.TypeEntry entry;
+        if (changedTypes != null) {
+            entry = changedTypes.contains(qualifiedName) ? null : previousFingerprints.getEntry(qualifiedName);
+        } else {
+            entry = previousFingerprints.getUnchanged(qualifiedName, typeFingerprints.get(qualifiedName), packageFingerprints);
+        }
+        return entry != null && fileWriter.keep(classFile(entry.getIndexEntry().getClassName()), entry.getFileHash()) ? entry : null;
+    }
+
+    private void export(ClassInfo classInfo) {
+        indexEntries.add(IndexEntry.of(classInfo));
+        if (retainedTypes != null) {
+            retainedTypes.add(classInfo);
+        }
+        workers.submit(() -> {
+            report.timeElement(ExportReport.ElementKind.EXPORT, classInfo.getClassName(),
+                               () -> renderer.exportClass(classInfo, targetFolder, fileWriter));
+            end.accumulateAndGet(System.nanoTime(), Math::max);
+        });
+    }
+
+    /**
+     * Record the fingerprints of the exported types, for the next export to skip the unchanged ones; call once
+     * all exports have completed. Does nothing unless fingerprints are set.
+     * @param file fingerprints file, below the output folder.
+     */
+    void writeFingerprints(Path file) {
+        if (fingerprintSettings == null) {
+            return;
+        }
+        builtTypes.forEach((qualifiedName, indexEntry) -> {
+            String fileHash = fileWriter.getHash(classFile(indexEntry.getClassName()));
+            if (fileHash != null) {
+                typeEntries.put(qualifiedName, new ModelFingerprints.TypeEntry(typeFingerprints.get(qualifiedName), fileHash, indexEntry));
+            }
+        });
+        fileWriter.write(file, new ModelFingerprints(fingerprintSettings, packageFingerprints, typeEntries).render());
+    }
+
+    private Path classFile(String className) {
+        return targetFolder.toPath().resolve(ClassRenderer.classFileName(className));
+    }
+
+    /**
+     * Record the phase; call once all exports have completed.
+     */
+    void reportPhase() {
+        report.addPhase("classes", end.get() - start);
+        report.addTypesUnchanged(typesUnchanged);
+    }
+
+    /**
+     * @return index entries of the exported types, in export order.
+     */
+    List<IndexEntry> getIndexEntries() {
+        return indexEntries;
+    }
+
+    /**
+     * @return the exported types, in export order, if retained.
+     */
+    List<ClassInfo> getRetainedTypes() {
+        return retainedTypes;
+    }
+
+    /**
+     * Build the info object of an element, timed in the report and as a flight recorder event.
+     */
+    private ClassInfo build(AbstractInfoBuilder<UmlClassifier> builder, UmlClassifier element) {
+        return report.timeElement(ExportReport.ElementKind.BUILD, element.getName(),
+                                  () -> ExportEvents.classBuilt(element.getQualifiedName(), () -> builder.build(element)));
+    }
+}
@@ -1,14 +1,24 @@
 package org.openehr.docs.magicdraw;
 
 import javax.annotation.Nonnull;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
+ * Once built, a ClassInfo is compacted: its features are packed into a single array, and the values that
+ * repeat across types are interned, see {@link #compact(SymbolTable)}. The feature lists of a compacted
+ * type materialise a feature object on each access, which suits a single walk; a renderer walking them
+ * more than once works on an {@link #unpack() unpacked} copy.
+ *
  * @author Bostjan Lah
  */
 public class ClassInfo implements Comparable<ClassInfo> {
-    private final String metaType;         // "Class", "Interface", "Enumeration" etc
+    private static final String[] NO_FEATURES = {};
+    // slots per packed feature: status, signature, documentation
+    private static final int FEATURE_SLOTS = 3;
+
+    private String metaType;               // "Class", "Interface", "Enumeration" etc
     private String classTypeName = "";     // including any generics
     private String className = "";         // root class name
     private String documentation = "";
@@ -18,10 +28,18 @@ public class ClassInfo implements Comparable<ClassInfo> {
     private String indexSubPackage = "";
     private boolean abstractClass;
 
-    private final List<ClassFeatureInfo> attributes = new ArrayList<>();
-    private final List<ClassFeatureInfo> constants = new ArrayList<>();
-    private final List<ClassFeatureInfo> operations = new ArrayList<>();
-    private final List<ConstraintInfo> constraints = new ArrayList<>();
+    // features while the type is built; null once compacted
+    private List<ClassFeatureInfo> attributes = new ArrayList<>();
+    private List<ClassFeatureInfo> constants = new ArrayList<>();
+    private List<ClassFeatureInfo> operations = new ArrayList<>();
+    private List<ConstraintInfo> constraints = new ArrayList<>();
+
+    // features once compacted: the slots of the attributes, constants and operations, then the constraint
+    // documentation, one slot each
+    private String[] packedFeatures;
+    private int constantsStart;
+    private int operationsStart;
+    private int constraintsStart;
 
     public ClassInfo(String type) {
         this.metaType = type;
@@ -63,20 +81,105 @@ public class ClassInfo implements Comparable<ClassInfo> {
         return this;
     }
 
+    /**
+     * @return attributes; unmodifiable once compacted.
+     */
     public List<ClassFeatureInfo> getAttributes() {
-        return attributes;
+        return packedFeatures == null ? attributes : new PackedFeatures(0, constantsStart);
     }
 
+    /**
+     * @return constants; unmodifiable once compacted.
+     */
     public List<ClassFeatureInfo> getConstants() {
-        return constants;
+        return packedFeatures == null ? constants : new PackedFeatures(constantsStart, operationsStart);
     }
 
+    /**
+     * @return operations; unmodifiable once compacted.
+     */
     public List<ClassFeatureInfo> getOperations() {
-        return operations;
+        return packedFeatures == null ? operations : new PackedFeatures(operationsStart, constraintsStart);
     }
 
+    /**
+     * @return constraints; unmodifiable once compacted.
+     */
     public List<ConstraintInfo> getConstraints() {
-        return constraints;
+        return packedFeatures == null ? constraints : new PackedConstraints();
+    }
+
+    /**
+     * Compact a built type: pack the features into a single array in place of the lists of feature objects,
+     * and intern the values that repeat across types - the meta type, parent class name, index names and
+     * feature statuses. The features are unmodifiable afterwards. Does nothing if already compacted.
+     * @param symbols symbol table of the export.
+     * @return this.
+     */
+    public ClassInfo compact(SymbolTable symbols) {
+        if (packedFeatures != null) {
+            return this;
+        }
+        metaType = symbols.intern(metaType);
+        parentClassName = symbols.intern(parentClassName);
+        indexComponent = symbols.intern(indexComponent);
+        indexPackage = symbols.intern(indexPackage);
+        indexSubPackage = symbols.intern(indexSubPackage);
+
+        int featureCount = attributes.size() + constants.size() + operations.size();
+        String[] packed = featureCount + constraints.size() == 0
+                ? NO_FEATURES
+                : new String[featureCount * FEATURE_SLOTS + constraints.size()];
+        int slot = pack(packed, 0, attributes, symbols);
+        constantsStart = slot;
+        slot = pack(packed, slot, constants, symbols);
+        operationsStart = slot;
+        slot = pack(packed, slot, operations, symbols);
+        constraintsStart = slot;
+        for (ConstraintInfo constraint : constraints) {
+            packed[slot++] = constraint.getDocumentation();
+        }
+
+        packedFeatures = packed;
+        attributes = null;
+        constants = null;
+        operations = null;
+        constraints = null;
+        return this;
+    }
+
+    /**
+     * Unpack the features of a compacted type into feature objects, once, for a render walking them several
+     * times; the copy is meant to be dropped once rendered, so that only the packed type is retained.
+     * @return an uncompacted copy of this type, or this type if not compacted.
+     */
+    public ClassInfo unpack() {
+        if (packedFeatures == null) {
+            return this;
+        }
+        ClassInfo copy = new ClassInfo(metaType)
+                .setDocumentation(documentation)
+                .setParentClassName(parentClassName)
+                .setAbstractClass(abstractClass);
+        copy.classTypeName = classTypeName;
+        copy.className = className;
+        copy.indexComponent = indexComponent;
+        copy.indexPackage = indexPackage;
+        copy.indexSubPackage = indexSubPackage;
+        copy.attributes = new ArrayList<>(getAttributes());
+        copy.constants = new ArrayList<>(getConstants());
+        copy.operations = new ArrayList<>(getOperations());
+        copy.constraints = new ArrayList<>(getConstraints());
+        return copy;
+    }
+
+    private static int pack(String[] packed, int slot, List<ClassFeatureInfo> features, SymbolTable symbols) {
+        for (ClassFeatureInfo feature : features) {
+            packed[slot++] = symbols.intern(feature.getStatus());
+            packed[slot++] = feature.getSignature();
+            packed[slot++] = feature.getDocumentation();
+        }
+        return slot;
     }
 
     public boolean isAbstractClass() {
@@ -131,4 +234,52 @@ public class ClassInfo implements Comparable<ClassInfo> {
 
         return classTypeName.compareTo(o.classTypeName);
     }
+
+    /**
+     * View of a range of packed features; each element is materialised on access.
+     */
+    private class PackedFeatures extends AbstractList<ClassFeatureInfo> {
+        private final int start;
+        private final int end;
+
+        PackedFeatures(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public ClassFeatureInfo get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+            }
+            int slot = start + index * FEATURE_SLOTS;
+            return new ClassFeatureInfo()
+                    .setStatus(packedFeatures[slot])
+                    .setSignature(packedFeatures[slot + 1])
+                    .setDocumentation(packedFeatures[slot + 2]);
+        }
+
+        @Override
+        public int size() {
+            return (end - start) / FEATURE_SLOTS;
+        }
+    }
+
+    /**
+     * View of the packed constraints; each element is materialised on access.
+     */
+    private class PackedConstraints extends AbstractList<ConstraintInfo> {
+        @Override
+        public ConstraintInfo get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+            }
+            return new ConstraintInfo().setDocumentation(packedFeatures[constraintsStart + index]);
+        }
+
+        @Override
+        public int size() {
+            return packedFeatures.length - constraintsStart;
+        }
+    }
 }
@@ -0,0 +1,344 @@
+package org.openehr.docs.magicdraw;
+
+import org.openehr.docs.magicdraw.exception.OpenEhrExporterException;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.List;
+
+/**
+ * Renders ClassInfo objects as class files and the class index. A class file is an Asciidoctor (.adoc)
+ * heading, by which the master documents include and link to it, followed by the class table, whose rows
+ * are rendered by the subclass of an output format. The class index is Asciidoctor text in all formats.
+ * Doesn't depend on the MagicDraw API, so it can also be used to render a {@link ModelSnapshot} outside of
+ * MagicDraw.
+ * <p>
+ * Instances are stateless after construction and may be used from several threads at once.
+ */
+public abstract class ClassRenderer {
+    static final String CLASSES_FOLDER = "classes";
+    static final String ADOC_FILE_EXTENSION = ".adoc";
+    static final String CLASS_INDEX_FILE_NAME = "class_index" + ADOC_FILE_EXTENSION;
+
+    protected static final String LINE_SEPARATOR = System.lineSeparator();
+
+    // component, release, html file, subref classname + type, description
+    private static final String INDEX_LINK_FORMAT = "[.xcode]\n* link:/releases/%s/%s/%s.html#_%s_%s[%s^]\n";
+
+    protected final Formatter formatter;
+    private final String headingPrefix;
+    private final String indexRelease;
+
+    /**
+     * @param formatter formatter the info objects were built with.
+     * @param headingLevel level of class headings.
+     * @param indexRelease release the class index links to.
+     */
+    protected ClassRenderer(Formatter formatter, int headingLevel, String indexRelease) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < headingLevel; i++) {
+            builder.append('=');
+        }
+        headingPrefix = builder.toString();
+        this.formatter = formatter;
+        this.indexRelease = indexRelease;
+    }
+
+    /**
+     * Export a class as an Asciidoctor (.adoc) file to the output folder on the file system.
+     * @param classInfo info object for the class.
+     * @param targetFolder Directory in which to write the file.
+     * @param fileWriter output file writer.
+     * @exception OpenEhrExporterException on fail to write to file.
+     */
+    public void exportClass(ClassInfo classInfo, File targetFolder, ExportFileWriter fileWriter) {
+        String content = ExportEvents.classRendered(classInfo, () -> renderClass(classInfo));
+        fileWriter.write(targetFolder.toPath().resolve(fileName(classInfo)), content);
+    }
+
+    /**
+     * Render a class as the content of its class file.
+     * @param classInfo info object for the class.
+     * @return content of the class file.
+     */
+    public String renderClass(ClassInfo classInfo) {
+        // the features are walked more than once, so they are unpacked once for the render
+        return render(classInfo.unpack());
+    }
+
+    private String render(ClassInfo classInfo) {
+        StringBuilder content = new StringBuilder(estimateSize(classInfo));
+        appendLine(content, headingPrefix + ' ' + classInfo.getClassTypeName() + ' ' + classInfo.getMetaType());
+        appendLine(content, "");
+
+        startTable(content);
+        exportTitle(content, classInfo.getMetaType(),
+                    classInfo.isAbstractClass()
+                            ? formatter.italicBold(classInfo.getClassTypeName() + " (abstract)")
+                            : formatter.bold(classInfo.getClassTypeName()));
+        exportDescription(content, classInfo.getDocumentation());
+
+        if (classInfo.getParentClassName() != null) {
+            exportParent(content, classInfo.getParentClassName());
+        }
+
+        if (!classInfo.getConstants().isEmpty()) {
+            exportFeatureHeading(content, "Constants");
+            exportConstants(classInfo, content);
+        }
+
+        if (!classInfo.getAttributes().isEmpty()) {
+            exportFeatureHeading(content, "Attributes");
+            exportAttributes(classInfo, content);
+        }
+
+        if (!classInfo.getOperations().isEmpty()) {
+            exportFeatureHeading(content, "Functions");
+            exportFunctions(classInfo, content);
+        }
+
+        if (!classInfo.getConstraints().isEmpty()) {
+            exportConstraints(classInfo, content);
+        }
+
+        endTable(content);
+        return content.toString();
+    }
+
+    /**
+     * Start the class table.
+     * @param content class file content.
+     */
+    protected abstract void startTable(StringBuilder content);
+
+    /**
+     * Export the title row of the class table.
+     * @param content class file content.
+     * @param metaType meta type of the class, such as "Class".
+     * @param typeTitle formatted name of the class.
+     */
+    protected abstract void exportTitle(StringBuilder content, String metaType, String typeTitle);
+
+    /**
+     * Export the description row of the class table.
+     * @param content class file content.
+     * @param documentation class documentation.
+     */
+    protected abstract void exportDescription(StringBuilder content, String documentation);
+
+    /**
+     * Export the row of the class table listing the parent classes.
+     * @param content class file content.
+     * @param parentClassName formatted names of the parent classes.
+     */
+    protected abstract void exportParent(StringBuilder content, String parentClassName);
+
+    /**
+     * Export the heading row of a section of features: constants, attributes or functions.
+     * @param content class file content.
+     * @param title section title.
+     */
+    protected abstract void exportFeatureHeading(StringBuilder content, String title);
+
+    /**
+     * Export a single attribute or constant of the class.
+     * @param content class file content.
+     * @param classFeatureInfo info object for the attribute.
+     */
+    protected abstract void exportAttribute(StringBuilder content, ClassFeatureInfo classFeatureInfo);
+
+    /**
+     * Export a single function of the class.
+     * @param content class file content.
+     * @param classFeatureInfo info object for the function.
+     */
+    protected abstract void exportFunction(StringBuilder content, ClassFeatureInfo classFeatureInfo);
+
+    /**
+     * Export a single constraint (invariant) of the class.
+     * @param content class file content.
+     * @param title formatted row title, only set for the first constraint.
+     * @param constraintInfo info object for the constraint.
+     */
+    protected abstract void exportConstraint(StringBuilder content, String title, ConstraintInfo constraintInfo);
+
+    /**
+     * End the class table.
+     * @param content class file content.
+     */
+    protected abstract void endTable(StringBuilder content);
+
+    /**
+     * Export all constraints in a class (invariants).
+     * @param classInfo info object for the class.
+     * @param content class file content.
+     */
+    private void exportConstraints(ClassInfo classInfo, StringBuilder content) {
+        String title = formatter.bold("Invariants");
+        for (ConstraintInfo constraintInfo : classInfo.getConstraints()) {
+            exportConstraint(content, title, constraintInfo);
+            title = "";
+        }
+    }
+
+    /**
+     * Export all methods in a class.
+     * @param classInfo info object for the class.
+     * @param content class file content.
+     */
+    private void exportFunctions(ClassInfo classInfo, StringBuilder content) {
+        for (ClassFeatureInfo classFeatureInfo : classInfo.getOperations()) {
+            exportFunction(content, classFeatureInfo);
+        }
+    }
+
+    /**
+     * Export all attributes in a class.
+     * @param classInfo info object for the class.
+     * @param content class file content.
+     */
+    private void exportAttributes(ClassInfo classInfo, StringBuilder content) {
+        for (ClassFeatureInfo classFeatureInfo : classInfo.getAttributes()) {
+            exportAttribute(content, classFeatureInfo);
+        }
+    }
+
+    /**
+     * Export all constants in a class.
+     * @param classInfo info object for the class.
+     * @param content class file content.
+     */
+    private void exportConstants(ClassInfo classInfo, StringBuilder content) {
+        for (ClassFeatureInfo classFeatureInfo : classInfo.getConstants()) {
+            exportAttribute(content, classFeatureInfo);
+        }
+    }
+
+    /**
+     * Generate an HTML file containing a clickable index of Class names that contain links to the location of
+     * the class within the relevant specification.
+     * @param targetFolder Directory in which to write the file.
+     * @param entries index entries of the classes, interfaces and enumerations to include, in any order.
+     * @param fileWriter output file writer.
+     * @exception OpenEhrExporterException on fail to write to file.
+     */
+    public void generateIndex(File targetFolder, Collection<IndexEntry> entries, ExportFileWriter fileWriter) {
+        fileWriter.write(targetFolder.toPath().resolve(CLASS_INDEX_FILE_NAME), renderIndex(entries));
+    }
+
+    /**
+     * Render the class index as Asciidoctor (.adoc) text.
+     * @param entries index entries of the classes, interfaces and enumerations to include, in any order.
+     * @return content of the index file.
+     */
+    public String renderIndex(Collection<IndexEntry> entries) {
+        List<IndexEntry> allTypes = new ArrayList<>(entries);
+        Collections.sort(allTypes);
+
+        StringWriter content = new StringWriter();
+        try (PrintWriter printWriter = new PrintWriter(content)) {
+            String indexComponent = "";
+            String indexPackage = "";
+            String indexSubPackage = "";
+
+            for (IndexEntry entry : allTypes) {
+                // The test for className > 2 is to avoid generic parameters like 'T', and
+                // occasionally 'TT' or similar.
+                if (entry.getClassName().length() > 2) {
+
+                    // if Component of class has changed since last iteration, output a new header line
+                    if (!indexComponent.equals(entry.getComponent())) {
+                        printWriter.println();
+                        printWriter.println("== Component " + entry.getComponent());
+                        indexComponent = entry.getComponent();
+                    }
+
+                    // if Package of class has changed since last iteration, output a new header line
+                    if (!indexPackage.equals(entry.getPackageName())) {
+                        printWriter.println();
+                        printWriter.println("=== Model " + entry.getPackageName());
+                        indexPackage = entry.getPackageName();
+                    }
+
+                    // if Sub-package of class has changed since last iteration, output a new header line
+                    if (!indexSubPackage.equals(entry.getSubPackage())) {
+                        printWriter.println();
+                        printWriter.println("==== Package " + entry.getSubPackage());
+                        printWriter.println();
+                        indexSubPackage = entry.getSubPackage();
+                    }
+
+                    // Output the class as a linked text line
+                    printWriter.printf(INDEX_LINK_FORMAT, indexComponent, indexRelease,
+                            classSpecMap.containsKey(indexSubPackage) ? classSpecMap.get(indexSubPackage) : indexSubPackage, // base link
+                            entry.getClassName().toLowerCase(), entry.getMetaType().toLowerCase(), // #href
+                            entry.getClassName()); // [descr]
+                }
+            }
+        }
+        return content.toString();
+    }
+
+    /*
+     * Handle exceptions to regular relationship between package name and
+     * specification document name.
+     */
+    private static final Hashtable<String, String> classSpecMap = new Hashtable<String, String>();
+
+    static {
+        classSpecMap.put("composition", "ehr");
+        classSpecMap.put("aom2", "AOM2");
+        classSpecMap.put("aom2_profile", "AOM2");
+        classSpecMap.put("p_aom2", "AOM2");
+    }
+
+    protected static void appendLine(StringBuilder content, String line) {
+        content.append(line).append(LINE_SEPARATOR);
+    }
+
+    // rough upper bound of the rendered size, so the builder rarely needs to grow
+    private static int estimateSize(ClassInfo classInfo) {
+        int size = 512 + length(classInfo.getDocumentation());
+        for (List<ClassFeatureInfo> features : Arrays.asList(classInfo.getConstants(), classInfo.getAttributes(), classInfo.getOperations())) {
+            for (ClassFeatureInfo feature : features) {
+                size += 64 + length(feature.getStatus()) + length(feature.getSignature()) + length(feature.getDocumentation());
+            }
+        }
+        for (ConstraintInfo constraintInfo : classInfo.getConstraints()) {
+            size += 64 + length(constraintInfo.getDocumentation());
+        }
+        return size + size / 8;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    /**
+     * Convert a class name to a legal file name.
+     * @param className name of class.
+     * @return filename..
+     */
+    private static String fileName(String className) {
+        String name = className.replaceAll("[^a-z0-9]", "_");
+        return name.replaceAll("^_+", "");
+    }
+
+    private static String fileName(ClassInfo classInfo) {
+        return classFileName(classInfo.getClassName());
+    }
+
+    /**
+     * @param className name of a class, as in its info object or index entry.
+     * @return name of its class file.
+     */
+    static String classFileName(String className) {
+        return fileName(className.toLowerCase()) + ADOC_FILE_EXTENSION;
+    }
+}
@@ -0,0 +1,168 @@
+package org.openehr.docs.magicdraw;
+
+import org.openehr.docs.magicdraw.exception.OpenEhrExporterException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Persistent cache of exported diagram images, keyed by {@link DiagramFingerprint}. Each entry is a set
+ * of image files named after the fingerprint, one per image format.
+ * <p>
+ * The cache is limited in total size; when it grows beyond the limit, the least recently used entries
+ * are evicted. Use is tracked through the modification time of the cached files, which is updated on
+ * every hit, so no separate index needs to be maintained.
+ * <p>
+ * The cache folder may be shared by several processes, such as a command line and a GUI export: entries
+ * are written to a temporary file and moved into place, so an entry is never seen half-written.
+ */
+public class DiagramCache {
+    public static final long DEFAULT_MAX_SIZE = 512L * 1024 * 1024;
+
+    private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+
+    private final Path cacheFolder;
+    private final long maxSize;
+
+    /**
+     * @param cacheFolder folder holding the cached images; created if it doesn't exist.
+     * @param maxSize maximum total size of the cached images in bytes.
+     * @exception OpenEhrExporterException if the cache folder can't be created.
+     */
+    public DiagramCache(File cacheFolder, long maxSize) {
+        this.cacheFolder = cacheFolder.toPath();
+        this.maxSize = maxSize;
+        try {
+            Files.createDirectories(this.cacheFolder);
+        } catch (IOException e) {
+            throw new OpenEhrExporterException("Unable to create folder: " + cacheFolder, e);
+        }
+    }
+
+    /**
+     * Default cache location, shared by all exports run by the current user.
+     */
+    public static File defaultCacheFolder() {
+        return new File(System.getProperty("user.home"), ".openehr-export" + File.separator + "diagram-cache");
+    }
+
+    /**
+     * Restore cached images of a diagram. Targets already holding the cached content are left untouched.
+     * @param fingerprint diagram fingerprint.
+     * @param targets image files to restore, one per format; the file extension selects the format.
+     * @return true if all images were found in the cache and restored, false if the diagram must be exported.
+     */
+    public synchronized boolean restore(String fingerprint, File... targets) {
+        try {
+            List<Path> entries = new ArrayList<>();
+            for (File target : targets) {
+                Path entry = entryPath(fingerprint, target);
+                if (!Files.isRegularFile(entry)) {
+                    return false;
+                }
+                entries.add(entry);
+            }
+            FileTime now = FileTime.fromMillis(System.currentTimeMillis());
+            for (int i = 0; i < targets.length; i++) {
+                Path entry = entries.get(i);
+                Path target = targets[i].toPath();
+                if (!sameContent(entry, target)) {
+                    Files.copy(entry, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+                Files.setLastModifiedTime(entry, now);
+            }
+            return true;
+        } catch (IOException ignored) {
+            // a damaged cache entry just means the diagram is exported again
+            return false;
+        }
+    }
+
+    /**
+     * Store freshly exported images of a diagram in the cache, then evict old entries if over the size limit.
+     * @param fingerprint diagram fingerprint.
+     * @param sources exported image files, one per format.
+     * @exception OpenEhrExporterException on fail to write to the cache.
+     */
+    public synchronized void store(String fingerprint, File... sources) {
+        try {
+            for (File source : sources) {
+                storeEntry(source.toPath(), entryPath(fingerprint, source));
+            }
+            evict();
+        } catch (IOException e) {
+            throw new OpenEhrExporterException("Unable to write to diagram cache " + cacheFolder + '!', e);
+        }
+    }
+
+    private void storeEntry(Path source, Path entry) throws IOException {
+        Path temporary = Files.createTempFile(cacheFolder, entry.getFileName().toString(), TEMPORARY_FILE_SUFFIX);
+        try {
+            Files.copy(source, temporary, StandardCopyOption.REPLACE_EXISTING);
+            try {
+                Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ignored) {
+                Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private Path entryPath(String fingerprint, File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return cacheFolder.resolve(fingerprint + (dot < 0 ? "" : name.substring(dot)));
+    }
+
+    private void evict() throws IOException {
+        List<Path> entries = new ArrayList<>();
+        long totalSize = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheFolder)) {
+            for (Path entry : stream) {
+                if (entry.getFileName().toString().endsWith(TEMPORARY_FILE_SUFFIX)) {
+                    // being written by another process
+                    continue;
+                }
+                entries.add(entry);
+                totalSize += Files.size(entry);
+            }
+        }
+        if (totalSize <= maxSize) {
+            return;
+        }
+
+        entries.sort(Comparator.comparing(DiagramCache::lastModified));
+        for (Path entry : entries) {
+            if (totalSize <= maxSize) {
+                break;
+            }
+            long size = Files.size(entry);
+            Files.deleteIfExists(entry);
+            totalSize -= size;
+        }
+    }
+
+    private static FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException ignored) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static boolean sameContent(Path a, Path b) throws IOException {
+        return Files.isRegularFile(b) && Files.size(a) == Files.size(b)
+                && Arrays.equals(Files.readAllBytes(a), Files.readAllBytes(b));
+    }
+}
@@ -0,0 +1,172 @@
+package org.openehr.docs.magicdraw;
+
+import com.nomagic.magicdraw.core.Application;
+import com.nomagic.magicdraw.properties.Property;
+import com.nomagic.magicdraw.properties.PropertyManager;
+import com.nomagic.magicdraw.uml.symbols.DiagramPresentationElement;
+import com.nomagic.magicdraw.uml.symbols.PresentationElement;
+import com.nomagic.magicdraw.uml.symbols.paths.PathElement;
+import com.nomagic.uml2.ext.jmi.helpers.StereotypesHelper;
+import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Comment;
+import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Element;
+import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.MultiplicityElement;
+import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.NamedElement;
+import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.TypedElement;
+import com.nomagic.uml2.ext.magicdraw.mdprofiles.Stereotype;
+import org.openehr.docs.magicdraw.exception.OpenEhrExporterException;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Computes a fingerprint of everything that determines how a diagram renders: the tree of presentation
+ * elements with their types, bounds, path points and symbol properties (colours, fonts, compartments and
+ * features shown or hidden), and the model elements they show, with their applied stereotypes and tagged
+ * values and the names, types and multiplicities of their owned features; and the MagicDraw build that
+ * renders it. Two diagrams with the same fingerprint produce the same images.
+ */
+public final class DiagramFingerprint {
+    // bump when the set of fingerprinted properties changes, to invalidate existing cache entries
+    private static final String VERSION = "2/" + magicDrawBuild();
+
+    // features of model elements shown are followed down to parameters of operations
+    private static final int MAX_ELEMENT_DEPTH = 3;
+
+    private final MessageDigest digest;
+
+    private DiagramFingerprint() {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new OpenEhrExporterException(e);
+        }
+    }
+
+    /**
+     * Compute the fingerprint of a diagram. Must be called on a thread allowed to read the model.
+     * @param diagram UML diagram representation.
+     * @return fingerprint as a hex string.
+     */
+    public static String of(DiagramPresentationElement diagram) {
+        DiagramFingerprint fingerprint = new DiagramFingerprint();
+        fingerprint.add(VERSION);
+        fingerprint.add(diagram.getName());
+        fingerprint.addPresentationElement(diagram);
+        return fingerprint.toHex();
+    }
+
+    private void addPresentationElement(PresentationElement presentationElement) {
+        add(presentationElement.getClass().getName());
+        Rectangle bounds = presentationElement.getBounds();
+        if (bounds != null) {
+            add(bounds.x + "," + bounds.y + ',' + bounds.width + ',' + bounds.height);
+        }
+        if (presentationElement instanceof PathElement) {
+            List<Point> breakPoints = ((PathElement)presentationElement).getAllBreakPoints();
+            add("(");
+            if (breakPoints != null) {
+                for (Point point : breakPoints) {
+                    add(point.x + "," + point.y);
+                }
+            }
+            add(")");
+        }
+        PropertyManager properties = presentationElement.getPropertyManager();
+        if (properties != null) {
+            add("(");
+            for (Property property : properties.getProperties()) {
+                add(property.getID());
+                addValue(property.getValue());
+            }
+            add(")");
+        }
+        Element element = presentationElement.getElement();
+        if (element != null) {
+            addElement(element, MAX_ELEMENT_DEPTH);
+        }
+        add("[");
+        for (PresentationElement child : presentationElement.getPresentationElements()) {
+            addPresentationElement(child);
+        }
+        add("]");
+    }
+
+    private void addElement(Element element, int depth) {
+        add(element.getClass().getName());
+        add(element.getID());
+        if (element instanceof NamedElement) {
+            add(((NamedElement)element).getName());
+        }
+        if (element instanceof Comment) {
+            add(((Comment)element).getBody());
+        }
+        if (element instanceof TypedElement && ((TypedElement)element).getType() != null) {
+            add(((TypedElement)element).getType().getName());
+        }
+        if (element instanceof MultiplicityElement) {
+            MultiplicityElement multiplicityElement = (MultiplicityElement)element;
+            add(multiplicityElement.getLower() + ".." + multiplicityElement.getUpper());
+        }
+        add("<");
+        for (Stereotype stereotype : StereotypesHelper.getStereotypes(element)) {
+            add(stereotype.getQualifiedName());
+            for (com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Property tag : stereotype.getOwnedAttribute()) {
+                List<String> values = StereotypesHelper.getStereotypePropertyValueAsString(element, stereotype, tag.getName());
+                if (values != null && !values.isEmpty()) {
+                    add(tag.getName());
+                    values.forEach(this::add);
+                }
+            }
+        }
+        add(">");
+        if (depth > 1) {
+            add("{");
+            for (Element owned : element.getOwnedElement()) {
+                addElement(owned, depth - 1);
+            }
+            add("}");
+        }
+    }
+
+    /**
+     * Add the value of a symbol property: elements by their id, as their string form isn't stable across
+     * sessions, collections item by item, and anything else, such as colours, fonts and flags, as text.
+     */
+    private void addValue(Object value) {
+        if (value instanceof Element) {
+            add(((Element)value).getID());
+        } else if (value instanceof Collection) {
+            add("{");
+            for (Object item : (Collection<?>)value) {
+                addValue(item);
+            }
+            add("}");
+        } else {
+            add(value == null ? null : value.toString());
+        }
+    }
+
+    /**
+     * @return identification of the MagicDraw build: the version, location, size and time of the archive
+     * holding its classes, so that an upgrade, which may render diagrams differently, invalidates the cache.
+     */
+    private static String magicDrawBuild() {
+        return ModelFingerprints.archiveBuild(Application.class);
+    }
+
+    private void add(String value) {
+        if (value != null) {
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+        }
+        digest.update((byte)0);
+    }
+
+    private String toHex() {
+        return ExportFileWriter.toHex(digest.digest());
+    }
+}
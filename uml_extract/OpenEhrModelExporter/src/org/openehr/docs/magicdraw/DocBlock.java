@@ -0,0 +1,115 @@
+package org.openehr.docs.magicdraw;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Documentation of a model element, parsed once from its comment bodies into sections: the main text,
+ * and the sections introduced by a delimiter line such as ".Errors". Each line is escaped with the
+ * formatter, and the lines of a section are joined with the platform line separator.
+ * <p>
+ * A delimiter line (matched ignoring case) starts its section and is not part of the text; once a
+ * section has started, a repeated delimiter of the same section is kept as text. To support a further
+ * section, add it to {@link Section}.
+ */
+public class DocBlock {
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    public enum Section {
+        TEXT(null),
+        ERRORS(".Errors");
+
+        private final String delimiter;
+
+        Section(String delimiter) {
+            this.delimiter = delimiter;
+        }
+
+        public String getDelimiter() {
+            return delimiter;
+        }
+
+        private static Section ofDelimiter(String line) {
+            for (Section section : values()) {
+                if (section.delimiter != null && section.delimiter.equalsIgnoreCase(line)) {
+                    return section;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final Map<Section, String> sections;
+
+    private DocBlock(Map<Section, String> sections) {
+        this.sections = sections;
+    }
+
+    /**
+     * Parse documentation in a single pass over the comment bodies.
+     * @param bodies comment bodies, in order.
+     * @param formatter formatter used to escape each line.
+     * @return parsed documentation.
+     */
+    public static DocBlock parse(Collection<String> bodies, Formatter formatter) {
+        Map<Section, StringBuilder> builders = new EnumMap<>(Section.class);
+        Section section = Section.TEXT;
+        for (String body : bodies) {
+            // same lines as body.split("\n"), which drops trailing empty lines
+            int end = body.length();
+            if (body.indexOf('\n') >= 0) {
+                while (end > 0 && body.charAt(end - 1) == '\n') {
+                    end--;
+                }
+                if (end == 0) {
+                    continue;
+                }
+            }
+            int lineStart = 0;
+            while (lineStart <= end) {
+                int lineEnd = body.indexOf('\n', lineStart);
+                if (lineEnd < 0 || lineEnd > end) {
+                    lineEnd = end;
+                }
+                String line = body.substring(lineStart, lineEnd);
+                Section delimited = Section.ofDelimiter(line);
+                if (delimited != null && delimited != section) {
+                    section = delimited;
+                    builders.computeIfAbsent(section, s -> new StringBuilder());
+                } else {
+                    // each line is preceded by a separator, the first one is dropped below
+                    StringBuilder builder = builders.computeIfAbsent(section, s -> new StringBuilder());
+                    builder.append(LINE_SEPARATOR);
+                    formatter.appendEscaped(builder, line);
+                }
+                lineStart = lineEnd + 1;
+            }
+        }
+        Map<Section, String> sections = new EnumMap<>(Section.class);
+        builders.forEach((s, builder) -> sections.put(s, builder.length() == 0 ? "" : builder.substring(LINE_SEPARATOR.length())));
+        return new DocBlock(sections);
+    }
+
+    /**
+     * @param section section of the documentation.
+     * @return text of the section, or an empty string if there is none.
+     */
+    public String get(Section section) {
+        return sections.getOrDefault(section, "");
+    }
+
+    /**
+     * @return main text, up to the first section delimiter.
+     */
+    public String getText() {
+        return get(Section.TEXT);
+    }
+
+    /**
+     * @return text of the .Errors section, or an empty string if there is none.
+     */
+    public String getErrors() {
+        return get(Section.ERRORS);
+    }
+}
@@ -1,38 +1,37 @@
 package org.openehr.docs.magicdraw;
 
-import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Enumeration;
-import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.EnumerationLiteral;
-
 import java.util.List;
 
 /**
  * @author Bostjan Lah
  */
-public class EnumerationInfoBuilder extends AbstractInfoBuilder<Enumeration> {
+public class EnumerationInfoBuilder extends AbstractInfoBuilder<UmlClassifier> {
     public EnumerationInfoBuilder(Formatter formatter) {
         super(formatter);
     }
 
+    public EnumerationInfoBuilder(Formatter formatter, SymbolTable symbols) {
+        super(formatter, symbols);
+    }
+
     @Override
-    public ClassInfo build(Enumeration element) {
+    public ClassInfo build(UmlClassifier element) {
         String className = element.getName();
         ClassInfo classInfo = new ClassInfo("Enumeration")
                 .setClassTypeName(className)
-                .setDocumentation(getDocumentation(element, getFormatter()));
+                .setDocumentation(getDocBlock(element).getText());
         setHierarchy(element.getQualifiedName(), classInfo);
 
-        if (element.hasOwnedLiteral()) {
-            addLiterals(classInfo.getAttributes(), element.getOwnedLiteral(), getFormatter());
-        }
+        addLiterals(classInfo.getAttributes(), element.getLiterals());
 
-        return classInfo;
+        return classInfo.compact(symbols);
     }
 
-    private void addLiterals(List<ClassFeatureInfo> attributes, List<EnumerationLiteral> ownedLiteral, Formatter formatter) {
-        for (EnumerationLiteral literal : ownedLiteral) {
+    private void addLiterals(List<ClassFeatureInfo> attributes, List<UmlElement> ownedLiteral) {
+        for (UmlElement literal : ownedLiteral) {
             attributes.add(new ClassFeatureInfo()
                                    .setSignature(literal.getName())
-                                   .setDocumentation(getDocumentation(literal, formatter)));
+                                   .setDocumentation(getDocBlock(literal).getText()));
         }
     }
 }
@@ -0,0 +1,94 @@
+package org.openehr.docs.magicdraw;
+
+import org.openehr.docs.magicdraw.exception.OpenEhrExporterException;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Emits JDK Flight Recorder events for the work done on each class, file and diagram of an export, so a
+ * recording of a slow export shows which of them stalled.
+ * <p>
+ * The events themselves are in {@link JfrExportEvents}, which is only loaded on a JVM with JFR support
+ * (Java 11, or OpenJDK 8u262 and later); on other JVMs the work is just run. While no recording is
+ * running, the events are disabled and cost close to nothing, so they are always emitted.
+ */
+public final class ExportEvents {
+    private static final boolean JFR_AVAILABLE = isJfrAvailable();
+
+    private ExportEvents() {
+    }
+
+    /**
+     * Build a ClassInfo, as a ClassBuilt event.
+     * @param qualifiedName qualified name of the UML element.
+     * @param build builds the info object.
+     * @return the info object.
+     */
+    public static ClassInfo classBuilt(String qualifiedName, Supplier<ClassInfo> build) {
+        return JFR_AVAILABLE ? JfrExportEvents.classBuilt(qualifiedName, build) : build.get();
+    }
+
+    /**
+     * Render a class file, as a ClassRendered event.
+     * @param classInfo info object for the class.
+     * @param render renders the content of the class file.
+     * @return content of the class file.
+     */
+    public static String classRendered(ClassInfo classInfo, Supplier<String> render) {
+        return JFR_AVAILABLE ? JfrExportEvents.classRendered(classInfo, render) : render.get();
+    }
+
+    /**
+     * Write a file, or skip an unchanged file, as a FileWritten event.
+     * @param target file written.
+     * @param bytes size of the file.
+     * @param skipped true if the file is unchanged and not written.
+     * @param write writes the file.
+     */
+    public static void fileWritten(Path target, int bytes, boolean skipped, Runnable write) {
+        if (JFR_AVAILABLE) {
+            JfrExportEvents.fileWritten(target, bytes, skipped, write);
+        } else {
+            write.run();
+        }
+    }
+
+    /**
+     * Export the images of a diagram, as a DiagramExported event.
+     * @param name diagram name.
+     * @param images image files of the diagram.
+     * @param export exports the images, returning true if they were restored from the diagram cache.
+     */
+    public static void diagramExported(String name, File[] images, BooleanSupplier export) {
+        if (JFR_AVAILABLE) {
+            JfrExportEvents.diagramExported(name, images, export);
+        } else {
+            export.getAsBoolean();
+        }
+    }
+
+    /**
+     * Start a flight recording of the export events, along with the JVM's default event settings.
+     * @param destination file the recording is written to when closed.
+     * @return the running recording; close it to stop it and write the file.
+     * @exception OpenEhrExporterException if the JVM doesn't support JFR, or the recording can't be started.
+     */
+    public static AutoCloseable startRecording(File destination) {
+        if (!JFR_AVAILABLE) {
+            throw new OpenEhrExporterException("Java Flight Recorder is not available in this JVM!");
+        }
+        return JfrExportEvents.startRecording(destination.toPath());
+    }
+
+    private static boolean isJfrAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, ExportEvents.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError ignored) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package org.openehr.docs.magicdraw;
+
+import org.openehr.docs.magicdraw.exception.OpenEhrExporterException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded worker pool for the render and write stage of an export. Model access stays on the thread
+ * that submits the tasks; the tasks themselves must only work on already built, immutable data.
+ * <p>
+ * The work queue is bounded: when it is full, the submitting thread runs the task itself, which keeps
+ * it from building ClassInfo objects faster than they can be written out.
+ */
+public class ExportExecutor implements AutoCloseable {
+    private static final int QUEUE_SIZE_PER_THREAD = 4;
+
+    private final ThreadPoolExecutor executor;
+    private final List<Future<?>> tasks = new ArrayList<>();
+
+    /**
+     * @param threadCount number of worker threads.
+     */
+    public ExportExecutor(int threadCount) {
+        this("openehr-export", threadCount);
+    }
+
+    /**
+     * @param name name prefix of the worker threads.
+     * @param threadCount number of worker threads.
+     */
+    public ExportExecutor(String name, int threadCount) {
+        if (threadCount <= 0) {
+            throw new IllegalArgumentException("Invalid thread count: " + threadCount);
+        }
+        executor = new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS,
+                                          new ArrayBlockingQueue<>(threadCount * QUEUE_SIZE_PER_THREAD),
+                                          new WorkerThreadFactory(name),
+                                          new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Queue a task for execution.
+     * @param task task to run.
+     */
+    public void submit(Runnable task) {
+        tasks.add(executor.submit(task));
+    }
+
+    /**
+     * Wait for all submitted tasks to complete.
+     * @exception OpenEhrExporterException carrying the first failure, with any further failures suppressed.
+     */
+    public void awaitCompletion() {
+        awaitCompletion(this);
+    }
+
+    /**
+     * Wait for all tasks submitted to a number of executors to complete, so that the failures of all of them
+     * can be reported together.
+     * @param executors executors to wait for, in the order in which their failures are reported.
+     * @exception OpenEhrExporterException carrying the first failure, with any further failures suppressed.
+     */
+    public static void awaitCompletion(ExportExecutor... executors) {
+        OpenEhrExporterException failure = null;
+        for (ExportExecutor executor : executors) {
+            failure = executor.collectFailures(failure);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private OpenEhrExporterException collectFailures(OpenEhrExporterException failure) {
+        for (Future<?> task : tasks) {
+            try {
+                task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new OpenEhrExporterException("Interrupted while waiting for export tasks!", e);
+            } catch (ExecutionException e) {
+                failure = addFailure(failure, e.getCause());
+            }
+        }
+        tasks.clear();
+        return failure;
+    }
+
+    /**
+     * Combine failures into a single exception.
+     * @param failure failure so far, or null if none.
+     * @param cause new failure.
+     * @return the combined failure.
+     */
+    static OpenEhrExporterException addFailure(OpenEhrExporterException failure, Throwable cause) {
+        if (failure == null) {
+            return cause instanceof OpenEhrExporterException
+                    ? (OpenEhrExporterException)cause
+                    : new OpenEhrExporterException(cause);
+        }
+        failure.addSuppressed(cause);
+        return failure;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger();
+
+        WorkerThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, name + '-' + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
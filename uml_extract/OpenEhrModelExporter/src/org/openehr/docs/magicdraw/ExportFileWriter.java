@@ -0,0 +1,286 @@
+package org.openehr.docs.magicdraw;
+
+import org.openehr.docs.magicdraw.exception.OpenEhrExporterException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes rendered output files below an output folder, and keeps a manifest of the content hash and size
+ * of every file written, in the output folder.
+ * <p>
+ * In incremental mode, a file whose content hash and size match the manifest of the previous run is not
+ * written again, so its modification time is kept and downstream builds do not see it as changed; and
+ * files recorded in the previous manifest but not produced by this run are removed. The manifest is
+ * always written, so a full export can be followed by an incremental one.
+ * <p>
+ * Files may be written concurrently from several threads, each file at most once per run.
+ */
+public class ExportFileWriter {
+    static final String MANIFEST_FILE_NAME = ".export-manifest";
+
+    private static final Charset UTF_8 = StandardCharsets.UTF_8;
+    private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+
+    private final Path outputFolder;
+    private final String manifestFileName;
+    private final boolean incremental;
+    private final Map<String, ManifestEntry> previousManifest;
+    private final Map<String, ManifestEntry> manifest = new ConcurrentHashMap<>();
+
+    private final AtomicInteger writtenCount = new AtomicInteger();
+    private final AtomicInteger skippedCount = new AtomicInteger();
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    /**
+     * @param outputFolder root folder of the export; all files written must be below it.
+     * @param incremental true to skip unchanged files and remove stale ones.
+     */
+    public ExportFileWriter(Path outputFolder, boolean incremental) {
+        this(outputFolder, MANIFEST_FILE_NAME, incremental);
+    }
+
+    /**
+     * @param outputFolder root folder of the export; all files written must be below it.
+     * @param manifestFileName name of the manifest file in the output folder, of which each writer sharing
+     * the folder needs its own.
+     * @param incremental true to skip unchanged files and remove stale ones.
+     */
+    public ExportFileWriter(Path outputFolder, String manifestFileName, boolean incremental) {
+        this.outputFolder = outputFolder;
+        this.manifestFileName = manifestFileName;
+        this.incremental = incremental;
+        previousManifest = incremental ? readManifest() : new TreeMap<>();
+    }
+
+    /**
+     * Write a file, unless in incremental mode and its content is unchanged since the previous run.
+     * @param target file to write, below the output folder.
+     * @param content text content of the file.
+     * @exception OpenEhrExporterException on fail to write to file, or if the file was already written or
+     * kept by this run.
+     */
+    public void write(Path target, String content) {
+        byte[] bytes = content.getBytes(UTF_8);
+        String key = manifestKey(target);
+        ManifestEntry entry = new ManifestEntry(hash(bytes), bytes.length);
+        record(key, entry);
+
+        if (incremental && entry.equals(previousManifest.get(key)) && isUnchangedOnDisk(target, entry)) {
+            skippedCount.incrementAndGet();
+            ExportEvents.fileWritten(target, bytes.length, true, () -> {});
+            return;
+        }
+        ExportEvents.fileWritten(target, bytes.length, false, () -> write(target, bytes));
+    }
+
+    /**
+     * Keep a file of the previous run without producing its content again, if it is still the one recorded
+     * in the previous manifest. Only possible in incremental mode.
+     * @param target file to keep, below the output folder.
+     * @param hash expected content hash of the file, as recorded when it was last written.
+     * @return true if the file was kept; if false, it must be written.
+     * @exception OpenEhrExporterException if the file was already written or kept by this run.
+     */
+    public boolean keep(Path target, String hash) {
+        String key = manifestKey(target);
+        ManifestEntry entry = previousManifest.get(key);
+        if (incremental && entry != null && entry.hash.equals(hash) && isUnchangedOnDisk(target, entry)) {
+            record(key, entry);
+            skippedCount.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param target file written or kept by this run.
+     * @return its content hash, or null if it wasn't written or kept.
+     */
+    public String getHash(Path target) {
+        ManifestEntry entry = manifest.get(manifestKey(target));
+        return entry == null ? null : entry.hash;
+    }
+
+    /**
+     * Record a file in the manifest of this run. Two writers of the same file would race for its content,
+     * so the second one fails.
+     */
+    private void record(String key, ManifestEntry entry) {
+        if (manifest.putIfAbsent(key, entry) != null) {
+            throw new OpenEhrExporterException("File " + outputFolder.resolve(key) + " written twice in the same export!");
+        }
+    }
+
+    /**
+     * Write the content to a temporary file next to the target, then move it over the target, so that an
+     * export interrupted or cancelled while writing never leaves a half-written file behind. The temporary
+     * file has a unique name, so no other writer can share it, but unlike Files.createTempFile, it gets the
+     * default permissions of a file, which the target takes over.
+     */
+    private void write(Path target, byte[] bytes) {
+        Path temporary = target.resolveSibling(target.getFileName() + "." + UUID.randomUUID() + TEMPORARY_FILE_SUFFIX);
+        try {
+            Files.write(temporary, bytes, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            try {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ignored) {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            writtenCount.incrementAndGet();
+            bytesWritten.addAndGet(bytes.length);
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException ignored) {
+                // the write failure is the one to report
+            }
+            throw new OpenEhrExporterException("Unable to write to " + target + '!', e);
+        }
+    }
+
+    /**
+     * Complete the run: in incremental mode, remove files written by the previous run but not by this one;
+     * then save the manifest. Entries of the previous manifest resolving outside the output folder are never
+     * removed, so an edited or corrupt manifest can't delete files elsewhere.
+     * @exception OpenEhrExporterException on fail to remove a file or write the manifest.
+     */
+    public void finish() {
+        if (incremental) {
+            Path root = outputFolder.toAbsolutePath().normalize();
+            for (String key : previousManifest.keySet()) {
+                if (!manifest.containsKey(key)) {
+                    Path stale = root.resolve(key).normalize();
+                    if (stale.equals(root) || !stale.startsWith(root)) {
+                        continue;
+                    }
+                    try {
+                        Files.deleteIfExists(stale);
+                    } catch (IOException e) {
+                        throw new OpenEhrExporterException("Unable to remove " + stale + '!', e);
+                    }
+                }
+            }
+        }
+        writeManifest();
+    }
+
+    public int getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    public int getSkippedCount() {
+        return skippedCount.get();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    private static boolean isUnchangedOnDisk(Path target, ManifestEntry entry) {
+        try {
+            return Files.isRegularFile(target) && Files.size(target) == entry.size;
+        } catch (IOException ignored) {
+            return false;
+        }
+    }
+
+    private String manifestKey(Path target) {
+        return outputFolder.relativize(target).toString().replace('\\', '/');
+    }
+
+    private Map<String, ManifestEntry> readManifest() {
+        Map<String, ManifestEntry> entries = new TreeMap<>();
+        Path manifestPath = outputFolder.resolve(manifestFileName);
+        if (Files.isRegularFile(manifestPath)) {
+            try {
+                List<String> lines = Files.readAllLines(manifestPath, UTF_8);
+                for (String line : lines) {
+                    // <hash> <size> <path>; the path may contain spaces
+                    String[] parts = line.split(" ", 3);
+                    if (parts.length == 3) {
+                        entries.put(parts[2], new ManifestEntry(parts[0], Long.parseLong(parts[1])));
+                    }
+                }
+            } catch (IOException | NumberFormatException e) {
+                // an unreadable manifest just means a full export
+                entries.clear();
+            }
+        }
+        return entries;
+    }
+
+    private void writeManifest() {
+        Path manifestPath = outputFolder.resolve(manifestFileName);
+        try (BufferedWriter writer = Files.newBufferedWriter(manifestPath, UTF_8)) {
+            for (Map.Entry<String, ManifestEntry> entry : new TreeMap<>(manifest).entrySet()) {
+                writer.write(entry.getValue().hash + ' ' + entry.getValue().size + ' ' + entry.getKey());
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            throw new OpenEhrExporterException("Unable to write to " + manifestPath + '!', e);
+        }
+    }
+
+    static String hash(byte[] bytes) {
+        try {
+            return toHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new OpenEhrExporterException(e);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Content hash and size of a file, as recorded in the manifest.
+     */
+    private static class ManifestEntry {
+        private final String hash;
+        private final long size;
+
+        ManifestEntry(String hash, long size) {
+            this.hash = hash;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ManifestEntry)) {
+                return false;
+            }
+            ManifestEntry that = (ManifestEntry)o;
+            return size == that.size && hash.equals(that.hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash.hashCode();
+        }
+    }
+}
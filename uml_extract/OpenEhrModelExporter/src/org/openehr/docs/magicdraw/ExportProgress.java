@@ -0,0 +1,29 @@
+package org.openehr.docs.magicdraw;
+
+/**
+ * Receives the progress of an export, through the {@link ExportReport} recording it, and may cancel it.
+ * Called from the export thread and the worker threads.
+ */
+public interface ExportProgress {
+    /**
+     * @param elementCount number of diagrams and types the export is expected to write; an estimate, as
+     * some types may be skipped.
+     */
+    void expect(int elementCount);
+
+    /**
+     * @param phase name of the phase started.
+     */
+    void phaseStarted(String phase);
+
+    /**
+     * @param kind kind of work completed.
+     * @param name name of the element.
+     */
+    void elementCompleted(ExportReport.ElementKind kind, String name);
+
+    /**
+     * @return true to stop the export before the next phase or element.
+     */
+    boolean isCancelled();
+}
@@ -0,0 +1,402 @@
+package org.openehr.docs.magicdraw;
+
+import org.openehr.docs.magicdraw.exception.ExportCancelledException;
+import org.openehr.docs.magicdraw.exception.OpenEhrExporterException;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Timings and counters of an export run: the wall time of each phase, the time spent on each model
+ * element with the slowest ones, the files written and skipped, the types skipped as unchanged or because
+ * a later type has the same class file, the bytes saved by optimising diagrams, and the heap usage of the
+ * JVM at the start and at its peak. Written as {@value #REPORT_FILE_NAME} to the output folder, for build
+ * servers to track export performance over time, and summarised on the console.
+ * <p>
+ * Elements may be recorded concurrently from several threads. As all phases and elements of an export are
+ * recorded here, the report also passes them on to the {@link ExportProgress} of the export, if set, and
+ * stops the export once that is cancelled.
+ * <p>
+ * The heap figures are those of the whole JVM: its peak usage is measured since the JVM started, and
+ * includes any other export running in it at the same time, such as the live export in MagicDraw, so it
+ * is only that of the export itself when the export is the only one in the JVM, as on the command line.
+ */
+public class ExportReport {
+    static final String REPORT_FILE_NAME = "export-report.json";
+    // increment on any incompatible change to the JSON layout
+    private static final int FORMAT_VERSION = 1;
+    private static final int SLOWEST_COUNT = 10;
+    private static final String TOTAL_PHASE = "total";
+
+    /**
+     * Timed work on a single model element.
+     */
+    public enum ElementKind {
+        BUILD("build"),
+        EXPORT("export"),
+        DIAGRAM("diagram"),
+        SVG_OPTIMIZE("svgOptimize");
+
+        private final String key;
+
+        ElementKind(String key) {
+            this.key = key;
+        }
+    }
+
+    private final Instant startTime = Instant.now();
+    private final long start = System.nanoTime();
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+    private final Map<ElementKind, ElementTimes> elements = new EnumMap<>(ElementKind.class);
+    private int filesWritten;
+    private int filesSkipped;
+    private long bytesWritten;
+    private long svgBytesSaved;
+    private int typesUnchanged;
+    private final List<String> typesShadowed = new ArrayList<>();
+    private final long startHeap = heapUsage(false);
+    private long peakHeap;
+    private volatile ExportProgress progress;
+
+    public ExportReport() {
+        for (ElementKind kind : ElementKind.values()) {
+            elements.put(kind, new ElementTimes());
+        }
+    }
+
+    /**
+     * Set the progress to report phases and elements to, and to check for cancellation.
+     * @param progress progress of the export, or null for none.
+     */
+    public ExportReport setProgress(ExportProgress progress) {
+        this.progress = progress;
+        return this;
+    }
+
+    /**
+     * Pass the number of diagrams and types the export is expected to write on to the progress, if any.
+     */
+    public void expect(int elementCount) {
+        ExportProgress currentProgress = progress;
+        if (currentProgress != null) {
+            currentProgress.expect(elementCount);
+        }
+    }
+
+    /**
+     * Record the wall time of a phase. Adds to the time of the phase if already recorded.
+     * @param phase phase name.
+     * @param nanos duration in nanoseconds.
+     */
+    public synchronized void addPhase(String phase, long nanos) {
+        phases.merge(phase, nanos, Long::sum);
+    }
+
+    /**
+     * Run a phase and record its wall time.
+     * @param phase phase name.
+     * @param work work of the phase.
+     * @exception ExportCancelledException if the export has been cancelled before the phase.
+     */
+    public void timePhase(String phase, Runnable work) {
+        ExportProgress currentProgress = startWork();
+        if (currentProgress != null) {
+            currentProgress.phaseStarted(phase);
+        }
+        long phaseStart = System.nanoTime();
+        try {
+            work.run();
+        } finally {
+            addPhase(phase, System.nanoTime() - phaseStart);
+        }
+    }
+
+    /**
+     * Run work on a model element and record its time.
+     * @param kind kind of work.
+     * @param name element name.
+     * @param work work on the element.
+     * @return result of the work.
+     * @exception ExportCancelledException if the export has been cancelled before the work.
+     */
+    public <T> T timeElement(ElementKind kind, String name, Supplier<T> work) {
+        ExportProgress currentProgress = startWork();
+        long elementStart = System.nanoTime();
+        T result;
+        try {
+            result = work.get();
+        } finally {
+            elements.get(kind).add(name, System.nanoTime() - elementStart);
+        }
+        if (currentProgress != null) {
+            currentProgress.elementCompleted(kind, name);
+        }
+        return result;
+    }
+
+    /**
+     * @return the progress, if any.
+     * @exception ExportCancelledException if the export has been cancelled.
+     */
+    private ExportProgress startWork() {
+        ExportProgress currentProgress = progress;
+        if (currentProgress != null && currentProgress.isCancelled()) {
+            throw new ExportCancelledException();
+        }
+        return currentProgress;
+    }
+
+    /**
+     * Run work on a model element and record its time.
+     * @param kind kind of work.
+     * @param name element name.
+     * @param work work on the element.
+     */
+    public void timeElement(ElementKind kind, String name, Runnable work) {
+        timeElement(kind, name, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Record the bytes saved by optimising an SVG diagram.
+     * @param bytes number of bytes saved.
+     */
+    public synchronized void addSvgBytesSaved(long bytes) {
+        svgBytesSaved += bytes;
+    }
+
+    /**
+     * Record the types skipped as unchanged since the previous export, without building them.
+     * @param count number of types skipped.
+     */
+    public synchronized void addTypesUnchanged(int count) {
+        typesUnchanged += count;
+    }
+
+    /**
+     * Record a type not exported because a later type of the export has the same class file.
+     * @param description qualified name of the type, and the file and type it is shadowed by.
+     */
+    public synchronized void addShadowedType(String description) {
+        typesShadowed.add(description);
+    }
+
+    /**
+     * Complete the report: record the total time, the file counters and the peak heap usage of the JVM.
+     * @param fileWriter file writer of the export.
+     */
+    public synchronized void finish(ExportFileWriter fileWriter) {
+        phases.put(TOTAL_PHASE, System.nanoTime() - start);
+        filesWritten = fileWriter.getWrittenCount();
+        filesSkipped = fileWriter.getSkippedCount();
+        bytesWritten = fileWriter.getBytesWritten();
+        peakHeap = heapUsage(true);
+    }
+
+    /**
+     * @param peak true for the peak usage, false for the current usage.
+     * @return sum of the usage of the heap pools of the JVM; for the peak, an upper bound, as the pools needn't
+     * peak at the same time. Peaks aren't reset, as that would affect other exports running in the JVM.
+     */
+    private static long heapUsage(boolean peak) {
+        return ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .map(pool -> peak ? pool.getPeakUsage() : pool.getUsage())
+                .filter(Objects::nonNull)
+                .mapToLong(MemoryUsage::getUsed)
+                .sum();
+    }
+
+    /**
+     * Write the report as JSON to the output folder.
+     * @param outputFolder output folder of the export.
+     * @exception OpenEhrExporterException on fail to write to file.
+     */
+    public void write(File outputFolder) {
+        write(outputFolder, REPORT_FILE_NAME);
+    }
+
+    /**
+     * Write the report as JSON to a file of the output folder.
+     * @param outputFolder output folder of the export.
+     * @param fileName name of the report file.
+     * @exception OpenEhrExporterException on fail to write to file.
+     */
+    public void write(File outputFolder, String fileName) {
+        File reportFile = new File(outputFolder, fileName);
+        try {
+            Files.write(reportFile.toPath(), toJson().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new OpenEhrExporterException("Unable to write to " + reportFile + '!', e);
+        }
+    }
+
+    synchronized String toJson() {
+        StringBuilder json = new StringBuilder(4096);
+        json.append("{\n");
+        json.append("  \"formatVersion\": ").append(FORMAT_VERSION).append(",\n");
+        json.append("  \"startTime\": ").append(quote(startTime.toString())).append(",\n");
+        json.append("  \"phasesMillis\": {");
+        String separator = "\n";
+        for (Map.Entry<String, Long> phase : phases.entrySet()) {
+            json.append(separator).append("    ").append(quote(phase.getKey())).append(": ").append(millis(phase.getValue()));
+            separator = ",\n";
+        }
+        json.append("\n  },\n");
+        json.append("  \"elements\": {");
+        separator = "\n";
+        for (ElementKind kind : ElementKind.values()) {
+            json.append(separator).append("    ").append(quote(kind.key)).append(": ");
+            elements.get(kind).appendJson(json);
+            separator = ",\n";
+        }
+        json.append("\n  },\n");
+        json.append("  \"files\": {\n");
+        json.append("    \"written\": ").append(filesWritten).append(",\n");
+        json.append("    \"skipped\": ").append(filesSkipped).append(",\n");
+        json.append("    \"bytesWritten\": ").append(bytesWritten).append(",\n");
+        json.append("    \"svgBytesSaved\": ").append(svgBytesSaved).append('\n');
+        json.append("  },\n");
+        json.append("  \"typesUnchanged\": ").append(typesUnchanged).append(",\n");
+        json.append("  \"typesShadowed\": [");
+        separator = "\n";
+        for (String type : typesShadowed) {
+            json.append(separator).append("    ").append(quote(type));
+            separator = ",\n";
+        }
+        json.append(typesShadowed.isEmpty() ? "],\n" : "\n  ],\n");
+        json.append("  \"startHeapBytes\": ").append(startHeap).append(",\n");
+        json.append("  \"peakHeapBytes\": ").append(peakHeap).append('\n');
+        json.append("}\n");
+        return json.toString();
+    }
+
+    /**
+     * @return a few lines summarising the report, for the console.
+     */
+    public synchronized String summary() {
+        StringBuilder summary = new StringBuilder("Export completed in ").append(millis(phases.getOrDefault(TOTAL_PHASE, 0L))).append(" ms");
+        List<String> phaseTimes = new ArrayList<>();
+        for (Map.Entry<String, Long> phase : phases.entrySet()) {
+            if (!TOTAL_PHASE.equals(phase.getKey())) {
+                phaseTimes.add(phase.getKey() + ' ' + millis(phase.getValue()) + " ms");
+            }
+        }
+        if (!phaseTimes.isEmpty()) {
+            summary.append(" (").append(String.join(", ", phaseTimes)).append(')');
+        }
+        summary.append(System.lineSeparator());
+        summary.append("Files: ").append(filesWritten).append(" written (").append(bytesWritten / 1024).append(" KB), ")
+                .append(filesSkipped).append(" unchanged");
+        if (typesUnchanged > 0) {
+            summary.append("; ").append(typesUnchanged).append(" types unchanged, not built");
+        }
+        if (!typesShadowed.isEmpty()) {
+            summary.append("; ").append(typesShadowed.size()).append(" types not exported, sharing a class file with a later type: ")
+                    .append(String.join(", ", typesShadowed));
+        }
+        summary.append("; JVM heap ").append(startHeap / (1024 * 1024)).append(" MB at start, peak ")
+                .append(peakHeap / (1024 * 1024)).append(" MB");
+        if (elements.get(ElementKind.SVG_OPTIMIZE).count > 0) {
+            summary.append("; SVG optimisation saved ").append(svgBytesSaved / 1024).append(" KB");
+        }
+        for (ElementKind kind : ElementKind.values()) {
+            ElementTimes times = elements.get(kind);
+            List<ElementTime> slowest = times.getSlowest();
+            if (!slowest.isEmpty()) {
+                summary.append(System.lineSeparator()).append("Slowest ").append(kind.key).append(": ");
+                for (int i = 0; i < Math.min(3, slowest.size()); i++) {
+                    summary.append(i > 0 ? ", " : "").append(slowest.get(i).name).append(' ').append(millis(slowest.get(i).nanos)).append(" ms");
+                }
+                summary.append(" (").append(times.count).append(" in ").append(millis(times.totalNanos)).append(" ms)");
+            }
+        }
+        return summary.toString();
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / (double)TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < ' ') {
+                quoted.append(String.format("\\u%04x", (int)c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * Count and total time of the elements of a kind, and the slowest of them.
+     */
+    private static class ElementTimes {
+        private final PriorityQueue<ElementTime> slowest = new PriorityQueue<>(Comparator.comparingLong(t -> t.nanos));
+        private int count;
+        private long totalNanos;
+
+        synchronized void add(String name, long nanos) {
+            count++;
+            totalNanos += nanos;
+            if (slowest.size() < SLOWEST_COUNT) {
+                slowest.add(new ElementTime(name, nanos));
+            } else if (slowest.peek().nanos < nanos) {
+                slowest.poll();
+                slowest.add(new ElementTime(name, nanos));
+            }
+        }
+
+        synchronized List<ElementTime> getSlowest() {
+            List<ElementTime> sorted = new ArrayList<>(slowest);
+            sorted.sort(Comparator.comparingLong((ElementTime t) -> t.nanos).reversed());
+            return sorted;
+        }
+
+        synchronized void appendJson(StringBuilder json) {
+            json.append("{\"count\": ").append(count)
+                    .append(", \"totalMillis\": ").append(millis(totalNanos))
+                    .append(", \"slowest\": [");
+            String separator = "";
+            for (ElementTime time : getSlowest()) {
+                json.append(separator).append("{\"name\": ").append(quote(time.name)).append(", \"millis\": ").append(millis(time.nanos)).append('}');
+                separator = ", ";
+            }
+            json.append("]}");
+        }
+    }
+
+    private static class ElementTime {
+        private final String name;
+        private final long nanos;
+
+        ElementTime(String name, long nanos) {
+            this.name = name;
+            this.nanos = nanos;
+        }
+    }
+}
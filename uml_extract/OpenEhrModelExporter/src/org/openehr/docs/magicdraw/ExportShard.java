@@ -0,0 +1,94 @@
+package org.openehr.docs.magicdraw;
+
+import org.openehr.docs.magicdraw.exception.OpenEhrExporterException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * One of a number of shards of an export, run by separate processes, possibly on separate machines, that
+ * each export a part of the types and diagrams of the same model to their own files. An element belongs
+ * to the shard selected by the CRC-32 of its qualified name, which depends neither on the JVM nor on the
+ * order in which the model is traversed, so every process assigns each element to the same shard.
+ * <p>
+ * Files of which each shard writes its own, such as the manifest and the report, are named after the
+ * shard, so that shards may share an output folder.
+ */
+public final class ExportShard {
+    private static final Pattern SPEC = Pattern.compile("([0-9]{1,4})/([0-9]{1,4})");
+
+    private final int index;
+    private final int count;
+
+    /**
+     * @param index number of the shard, from 1 to count.
+     * @param count number of shards.
+     * @exception OpenEhrExporterException if the index is out of range.
+     */
+    public ExportShard(int index, int count) {
+        if (count < 1 || index < 1 || index > count) {
+            throw new OpenEhrExporterException("Invalid shard: " + index + '/' + count + " (expected 1 to " + count + " of " + count + ")!");
+        }
+        this.index = index;
+        this.count = count;
+    }
+
+    /**
+     * @param spec shard as "i/n", the i-th of n shards, counting from 1.
+     * @return shard.
+     * @exception OpenEhrExporterException if the shard is invalid.
+     */
+    public static ExportShard parse(String spec) {
+        Matcher matcher = SPEC.matcher(spec.trim());
+        if (!matcher.matches()) {
+            throw new OpenEhrExporterException("Invalid shard: " + spec + " (expected i/n, for example 2/4)!");
+        }
+        return new ExportShard(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @param qualifiedName qualified name of a type or diagram.
+     * @return true if the element belongs to this shard.
+     */
+    public boolean contains(String qualifiedName) {
+        return shardOf(qualifiedName, count) == index;
+    }
+
+    /**
+     * @param qualifiedName qualified name of a type or diagram.
+     * @param count number of shards.
+     * @return number of the shard the element belongs to, from 1 to count.
+     */
+    static int shardOf(String qualifiedName, int count) {
+        CRC32 crc = new CRC32();
+        crc.update(qualifiedName.getBytes(StandardCharsets.UTF_8));
+        return (int)(crc.getValue() % count) + 1;
+    }
+
+    /**
+     * Name the file of this shard, by inserting the shard before the file extension, as in
+     * export-report-2-of-4.json.
+     * @param fileName file name of an unsharded export.
+     * @return file name of this shard.
+     */
+    public String fileName(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        String suffix = "-" + index + "-of-" + count;
+        return dot <= 0 ? fileName + suffix : fileName.substring(0, dot) + suffix + fileName.substring(dot);
+    }
+
+    @Override
+    public String toString() {
+        return index + "/" + count;
+    }
+}
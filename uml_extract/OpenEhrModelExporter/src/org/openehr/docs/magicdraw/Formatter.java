@@ -16,6 +16,8 @@ public interface Formatter {
 
     String hardLineBreak();
 
+    String nonBreakingSpace();
+
     String escapeLiteral(String value);
 
     String escape(String value);
@@ -24,6 +26,34 @@ public interface Formatter {
 
     String normalizeLines(String doc);
 
+    /**
+     * Append escape(value) to a builder.
+     * @param target builder to append to.
+     * @param value documentation string.
+     */
+    default void appendEscaped(StringBuilder target, String value) {
+        target.append(escape(value));
+    }
+
+    /**
+     * Append escapeLiteral(value) to a builder.
+     * @param target builder to append to.
+     * @param value literal string.
+     */
+    default void appendEscapedLiteral(StringBuilder target, String value) {
+        target.append(escapeLiteral(value));
+    }
+
+    /**
+     * Append documentation as it goes into a table cell, escapeColumnSeparator(normalizeLines(doc)),
+     * to a builder.
+     * @param target builder to append to.
+     * @param doc documentation string.
+     */
+    default void appendDocumentation(StringBuilder target, String doc) {
+        target.append(escapeColumnSeparator(normalizeLines(doc)));
+    }
+
     String errorDelimiterLine();
 
 }
@@ -0,0 +1,375 @@
+package org.openehr.docs.magicdraw;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Formats the text of the info objects as HTML, for the {@link HtmlRenderer}.
+ * <p>
+ * The text passed to the markup methods and to escape is plain text, which may already contain character
+ * references such as &amp;#160;: '&lt;', '&gt;' and '"' are escaped, and '&amp;' unless it starts a
+ * character or entity reference, so escaping text twice leaves it as escaped once.
+ * <p>
+ * Documentation is escaped line by line when the info objects are built, and converted from its Asciidoctor
+ * block structure to HTML when appended to a table cell: paragraphs, literal blocks, block titles such as
+ * .Errors, bulleted, numbered and labeled lists, hard line breaks and `monospace` text. Other inline markup,
+ * such as cross references, is passed as text.
+ */
+public class HtmlFormatter implements Formatter {
+    private static final String LITERAL_BLOCK_DELIMITER = "----";
+    private static final String PASSTHROUGH_DELIMITER = "++++";
+    private static final String ASCIIDOC_HARD_LINE_BREAK = " +";
+    private static final String HARD_LINE_BREAK = "<br>";
+    private static final Pattern BULLET_ITEM = Pattern.compile("(?:\\*+|-) +(.*)");
+    private static final Pattern NUMBERED_ITEM = Pattern.compile("\\.+ +(.*)");
+    private static final Pattern LABELED_ITEM = Pattern.compile("(.+?)::(?: +(.*))?");
+    private static final Pattern[] LIST_ITEMS = {BULLET_ITEM, NUMBERED_ITEM, LABELED_ITEM};
+    private static final Pattern REFERENCE = Pattern.compile("&(?:#[0-9]{1,7}|#[xX][0-9a-fA-F]{1,6}|[a-zA-Z][a-zA-Z0-9]{1,31});");
+
+    @Override
+    public String bold(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            return "";
+        }
+        return "<strong>" + escape(text) + "</strong>";
+    }
+
+    @Override
+    public String monospace(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            return "";
+        }
+        return "<code>" + escape(text) + "</code>";
+    }
+
+    @Override
+    public String italicMonospace(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            return "";
+        }
+        return "<code><em>" + escape(text) + "</em></code>";
+    }
+
+    @Override
+    public String boldMonospace(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            return "";
+        }
+        return "<code><strong>" + escape(text) + "</strong></code>";
+    }
+
+    @Override
+    public String italicBold(String text) {
+        return "<strong><em>" + escape(text) + "</em></strong>";
+    }
+
+    @Override
+    public String hardLineBreak() {
+        return HARD_LINE_BREAK + System.lineSeparator();
+    }
+
+    @Override
+    public String nonBreakingSpace() {
+        return "&#160;";
+    }
+
+    @Override
+    public String escapeLiteral(String value) {
+        return escape(value);
+    }
+
+    @Override
+    public String escape(String value) {
+        if (!needsEscape(value)) {
+            return value;
+        }
+        StringBuilder builder = new StringBuilder(value.length() + 16);
+        appendEscaped(builder, value);
+        return builder.toString();
+    }
+
+    /**
+     * HTML has no column separators to escape.
+     * @param value documentation string.
+     */
+    @Override
+    public String escapeColumnSeparator(String value) {
+        return value;
+    }
+
+    /**
+     * Removing leading and trailing spaces from lines, except in literal (code etc) blocks; as the
+     * AsciidocFormatter does.
+     * @param doc documentation string.
+     */
+    @Override
+    public String normalizeLines(String doc) {
+        StringBuilder builder = new StringBuilder(doc.length());
+        AsciidocFormatter.appendNormalizedLines(builder, doc, false);
+        return builder.toString();
+    }
+
+    @Override
+    public void appendEscaped(StringBuilder target, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '<':
+                    target.append("&lt;");
+                    break;
+                case '>':
+                    target.append("&gt;");
+                    break;
+                case '"':
+                    target.append("&quot;");
+                    break;
+                case '&':
+                    target.append(isReference(value, i) ? "&" : "&amp;");
+                    break;
+                default:
+                    target.append(c);
+            }
+        }
+    }
+
+    @Override
+    public void appendEscapedLiteral(StringBuilder target, String value) {
+        appendEscaped(target, value);
+    }
+
+    /**
+     * Append documentation as HTML blocks.
+     * @param target builder to append to.
+     * @param doc escaped documentation string.
+     */
+    @Override
+    public void appendDocumentation(StringBuilder target, String doc) {
+        DocumentationConverter converter = new DocumentationConverter(target);
+        String normalized = normalizeLines(doc);
+        if (normalized.isEmpty()) {
+            return;
+        }
+        int lineStart = 0;
+        while (lineStart <= normalized.length()) {
+            int lineEnd = normalized.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = normalized.length();
+            }
+            converter.line(normalized.substring(lineStart, lineEnd));
+            lineStart = lineEnd + 1;
+        }
+        converter.finish();
+    }
+
+    /**
+     * Generate the line of text ".Errors", which is converted to a block title.
+     */
+    @Override
+    public String errorDelimiterLine() {
+        return (System.lineSeparator() + ".Errors" + System.lineSeparator());
+    }
+
+    private static boolean needsEscape(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '<' || c == '>' || c == '"' || c == '&' && !isReference(value, i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isReference(String value, int ampersand) {
+        Matcher matcher = REFERENCE.matcher(value);
+        return matcher.region(ampersand, value.length()).lookingAt();
+    }
+
+    /**
+     * Converts normalized documentation, line by line, to HTML blocks. A list stays open across blank
+     * lines until a line that isn't a list item; a line directly following a list item continues it.
+     */
+    private static final class DocumentationConverter {
+        private final StringBuilder target;
+        // closing tags of the open paragraph, literal block or list, null if none
+        private String blockEnd;
+        // closing tags of the open list item
+        private String itemEnd;
+        private Pattern listItem;
+        private boolean inLiteralBlock;
+        private boolean previousBlank;
+        private boolean empty = true;
+
+        DocumentationConverter(StringBuilder target) {
+            this.target = target;
+        }
+
+        void line(String line) {
+            if (inLiteralBlock) {
+                if (line.trim().startsWith(LITERAL_BLOCK_DELIMITER)) {
+                    closeBlock();
+                    inLiteralBlock = false;
+                } else {
+                    target.append('\n').append(passthroughSafe(line));
+                }
+                return;
+            }
+            if (line.trim().startsWith(LITERAL_BLOCK_DELIMITER)) {
+                // each line of the block is preceded by a line break, which is ignored after the opening <pre>
+                openBlock("<div class=\"literalblock\"><div class=\"content\"><pre>", "</pre></div></div>");
+                inLiteralBlock = true;
+                previousBlank = false;
+                return;
+            }
+            if (line.isEmpty()) {
+                if (listItem == null) {
+                    closeBlock();
+                }
+                previousBlank = true;
+                return;
+            }
+            if (line.startsWith("[") && line.endsWith("]")) {
+                // block attributes, such as [horizontal], have no equivalent
+                return;
+            }
+            if (line.length() > 1 && line.charAt(0) == '.' && line.charAt(1) != '.' && line.charAt(1) > ' ') {
+                closeBlock();
+                separate();
+                target.append("<div class=\"title\">").append(inline(stripHardLineBreak(line.substring(1)))).append("</div>");
+                previousBlank = false;
+                return;
+            }
+            if (listItem(line)) {
+                previousBlank = false;
+                return;
+            }
+            if (listItem != null && !previousBlank) {
+                target.append('\n').append(inline(line));
+                return;
+            }
+            if (blockEnd == null || listItem != null) {
+                openBlock("<div class=\"paragraph\"><p>", "</p></div>");
+                target.append(inline(line));
+            } else {
+                target.append('\n').append(inline(line));
+            }
+            previousBlank = false;
+        }
+
+        void finish() {
+            closeBlock();
+        }
+
+        /**
+         * Append the line as an item if it is one of the list open, or else starts a list.
+         */
+        private boolean listItem(String line) {
+            char first = line.charAt(0);
+            if (first != '*' && first != '-' && first != '.' && !line.contains("::")) {
+                return false;
+            }
+            for (Pattern pattern : LIST_ITEMS) {
+                Matcher matcher = pattern.matcher(line);
+                if (!matcher.matches()) {
+                    continue;
+                }
+                if (pattern == LABELED_ITEM && matcher.group(1).endsWith(":")) {
+                    // not a term, such as a qualified name openehr::rm::
+                    continue;
+                }
+                if (listItem != pattern) {
+                    if (pattern == BULLET_ITEM) {
+                        openBlock("<div class=\"ulist\"><ul>", "</ul></div>");
+                    } else if (pattern == NUMBERED_ITEM) {
+                        openBlock("<div class=\"olist arabic\"><ol class=\"arabic\">", "</ol></div>");
+                    } else {
+                        openBlock("<div class=\"dlist\"><dl>", "</dl></div>");
+                    }
+                    listItem = pattern;
+                } else {
+                    target.append(itemEnd);
+                }
+                target.append('\n');
+                if (pattern == LABELED_ITEM) {
+                    String description = matcher.group(2) == null ? "" : matcher.group(2);
+                    target.append("<dt class=\"hdlist1\">").append(inline(matcher.group(1))).append("</dt>")
+                            .append("<dd><p>").append(inline(description));
+                    itemEnd = "</p></dd>";
+                } else {
+                    target.append("<li><p>").append(inline(matcher.group(1)));
+                    itemEnd = "</p></li>";
+                }
+                return true;
+            }
+            return false;
+        }
+
+        private void openBlock(String start, String end) {
+            closeBlock();
+            separate();
+            target.append(start);
+            blockEnd = end;
+        }
+
+        private void closeBlock() {
+            if (blockEnd != null) {
+                if (listItem != null) {
+                    target.append(itemEnd).append('\n');
+                }
+                target.append(blockEnd);
+                blockEnd = null;
+                listItem = null;
+                itemEnd = null;
+            }
+        }
+
+        private void separate() {
+            if (!empty) {
+                target.append('\n');
+            }
+            empty = false;
+        }
+
+        /**
+         * Convert `monospace` text and a trailing hard line break of a line.
+         */
+        private static String inline(String line) {
+            String text = line.endsWith(ASCIIDOC_HARD_LINE_BREAK)
+                    ? line.substring(0, line.length() - ASCIIDOC_HARD_LINE_BREAK.length()) + HARD_LINE_BREAK
+                    : line;
+            int open = text.indexOf('`');
+            if (open < 0) {
+                return passthroughSafe(text);
+            }
+            StringBuilder builder = new StringBuilder(text.length() + 32);
+            int from = 0;
+            while (open >= 0) {
+                int close = text.indexOf('`', open + 1);
+                if (close < 0) {
+                    break;
+                }
+                if (close > open + 1) {
+                    builder.append(text, from, open).append("<code>").append(text, open + 1, close).append("</code>");
+                    from = close + 1;
+                }
+                open = text.indexOf('`', close + 1);
+            }
+            return passthroughSafe(builder.append(text, from, text.length()).toString());
+        }
+
+        private static String stripHardLineBreak(String text) {
+            for (String lineBreak : new String[] {HARD_LINE_BREAK, ASCIIDOC_HARD_LINE_BREAK}) {
+                if (text.endsWith(lineBreak)) {
+                    return text.substring(0, text.length() - lineBreak.length());
+                }
+            }
+            return text;
+        }
+
+        /**
+         * A line starting with the passthrough delimiter would end the passthrough block the table is in.
+         */
+        private static String passthroughSafe(String line) {
+            return line.startsWith(PASSTHROUGH_DELIMITER) ? "&#43;" + line.substring(1) : line;
+        }
+    }
+}
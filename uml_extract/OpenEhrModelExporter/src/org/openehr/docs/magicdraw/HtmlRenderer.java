@@ -0,0 +1,131 @@
+package org.openehr.docs.magicdraw;
+
+/**
+ * Renders ClassInfo objects as class files whose class table is an HTML fragment, within an Asciidoctor
+ * passthrough block. The master documents include the class files as before, but Asciidoctor passes the
+ * table through instead of parsing it, which is much of the time of a specification build. The markup is
+ * that Asciidoctor generates for the table of the {@link AsciidocRenderer}, so the specification
+ * stylesheets apply unchanged. For the HTML backend only; other backends, such as PDF, drop passthrough
+ * HTML.
+ * <p>
+ * The info objects must have been built with an {@link HtmlFormatter}.
+ */
+public class HtmlRenderer extends ClassRenderer {
+    private static final String PASSTHROUGH_DELIMITER = "++++";
+    private static final String HEADER_CELL = "<th class=\"tableblock halign-center valign-top\"";
+    private static final String CELL = "<td class=\"tableblock halign-left valign-top\"";
+    private static final String SPAN = " colspan=\"2\"";
+
+    /**
+     * @param formatter HTML formatter.
+     * @param headingLevel level of class headings.
+     * @param indexRelease release the class index links to.
+     */
+    public HtmlRenderer(Formatter formatter, int headingLevel, String indexRelease) {
+        super(formatter, headingLevel, indexRelease);
+    }
+
+    @Override
+    protected void startTable(StringBuilder content) {
+        appendLine(content, PASSTHROUGH_DELIMITER);
+        // column widths of cols="^1,3,5"
+        appendLine(content, "<table class=\"tableblock frame-all grid-all stretch\">");
+        appendLine(content, "<colgroup><col style=\"width: 11.1111%;\"><col style=\"width: 33.3333%;\"><col style=\"width: 55.5556%;\"></colgroup>");
+        appendLine(content, "<tbody>");
+    }
+
+    @Override
+    protected void exportTitle(StringBuilder content, String metaType, String typeTitle) {
+        appendLine(content, "<tr>");
+        appendHeaderCell(content, "", formatter.bold(metaType));
+        appendHeaderCell(content, SPAN, typeTitle);
+        appendLine(content, "</tr>");
+    }
+
+    @Override
+    protected void exportDescription(StringBuilder content, String documentation) {
+        appendLine(content, "<tr>");
+        appendHeaderCell(content, "", formatter.bold("Description"));
+        appendDocumentationCell(content, SPAN, documentation);
+        appendLine(content, "</tr>");
+    }
+
+    @Override
+    protected void exportParent(StringBuilder content, String parentClassName) {
+        appendLine(content, "<tr>");
+        appendHeaderCell(content, "", formatter.bold("Inherit"));
+        appendCell(content, SPAN, parentClassName);
+        appendLine(content, "</tr>");
+    }
+
+    @Override
+    protected void exportFeatureHeading(StringBuilder content, String title) {
+        appendLine(content, "<tr>");
+        appendHeaderCell(content, "", formatter.bold(title));
+        appendHeaderCell(content, "", formatter.bold("Signature"));
+        appendHeaderCell(content, "", formatter.bold("Meaning"));
+        appendLine(content, "</tr>");
+    }
+
+    @Override
+    protected void exportAttribute(StringBuilder content, ClassFeatureInfo classFeatureInfo) {
+        appendLine(content, "<tr>");
+        // the status may contain a line break, so it isn't escaped by formatter.bold()
+        String status = classFeatureInfo.getStatus();
+        appendHeaderCell(content, "", status.isEmpty() ? "" : "<strong>" + status + "</strong>");
+        appendCell(content, "", classFeatureInfo.getSignature());
+        appendDocumentationCell(content, "", classFeatureInfo.getDocumentation());
+        appendLine(content, "</tr>");
+    }
+
+    @Override
+    protected void exportFunction(StringBuilder content, ClassFeatureInfo classFeatureInfo) {
+        appendLine(content, "<tr>");
+        appendHeaderCell(content, "", classFeatureInfo.getStatus());
+        appendCell(content, "", classFeatureInfo.getSignature());
+        appendDocumentationCell(content, "", classFeatureInfo.getDocumentation());
+        appendLine(content, "</tr>");
+    }
+
+    @Override
+    protected void exportConstraint(StringBuilder content, String title, ConstraintInfo constraintInfo) {
+        appendLine(content, "<tr>");
+        appendHeaderCell(content, "", title);
+        appendDocumentationCell(content, SPAN, constraintInfo.getDocumentation());
+        appendLine(content, "</tr>");
+    }
+
+    @Override
+    protected void endTable(StringBuilder content) {
+        appendLine(content, "</tbody>");
+        appendLine(content, "</table>");
+        appendLine(content, PASSTHROUGH_DELIMITER);
+    }
+
+    private static void appendHeaderCell(StringBuilder content, String attributes, String text) {
+        content.append(HEADER_CELL).append(attributes).append('>');
+        appendParagraph(content, text);
+        content.append("</th>").append(LINE_SEPARATOR);
+    }
+
+    private static void appendCell(StringBuilder content, String attributes, String text) {
+        content.append(CELL).append(attributes).append('>');
+        appendParagraph(content, text);
+        content.append("</td>").append(LINE_SEPARATOR);
+    }
+
+    private static void appendParagraph(StringBuilder content, String text) {
+        if (text != null && !text.isEmpty()) {
+            content.append("<p class=\"tableblock\">").append(text).append("</p>");
+        }
+    }
+
+    /**
+     * Append a table cell with documentation, converted to HTML blocks by the formatter.
+     */
+    private void appendDocumentationCell(StringBuilder content, String attributes, String doc) {
+        content.append(CELL).append(attributes).append("><div class=\"content\">");
+        formatter.appendDocumentation(content, doc);
+        content.append("</div></td>").append(LINE_SEPARATOR);
+    }
+}
@@ -0,0 +1,75 @@
+package org.openehr.docs.magicdraw;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The part of a ClassInfo needed for the class index, kept for every exported type in place of the full
+ * ClassInfo, which can be released once its class file is written. Ordered like ClassInfo.
+ */
+public final class IndexEntry implements Comparable<IndexEntry> {
+    private final String component;
+    private final String packageName;
+    private final String subPackage;
+    private final String classTypeName;
+    private final String className;
+    private final String metaType;
+
+    public IndexEntry(String component, String packageName, String subPackage, String classTypeName, String className,
+                      String metaType) {
+        this.component = component;
+        this.packageName = packageName;
+        this.subPackage = subPackage;
+        this.classTypeName = classTypeName;
+        this.className = className;
+        this.metaType = metaType;
+    }
+
+    public static IndexEntry of(ClassInfo classInfo) {
+        return new IndexEntry(classInfo.getIndexComponent(), classInfo.getIndexPackage(), classInfo.getIndexSubPackage(),
+                              classInfo.getClassTypeName(), classInfo.getClassName(), classInfo.getMetaType());
+    }
+
+    public String getComponent() {
+        return component;
+    }
+
+    public String getPackageName() {
+        return packageName;
+    }
+
+    public String getSubPackage() {
+        return subPackage;
+    }
+
+    public String getClassTypeName() {
+        return classTypeName;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public String getMetaType() {
+        return metaType;
+    }
+
+    @Override
+    public int compareTo(@Nonnull IndexEntry o) {
+        int i = component.compareTo(o.component);
+        if (i != 0) {
+            return i;
+        }
+
+        int j = packageName.compareTo(o.packageName);
+        if (j != 0) {
+            return j;
+        }
+
+        int k = subPackage.compareTo(o.subPackage);
+        if (k != 0) {
+            return k;
+        }
+
+        return classTypeName.compareTo(o.classTypeName);
+    }
+}
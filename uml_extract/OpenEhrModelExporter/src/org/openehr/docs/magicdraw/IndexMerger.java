@@ -0,0 +1,146 @@
+package org.openehr.docs.magicdraw;
+
+import org.openehr.docs.magicdraw.exception.OpenEhrExporterException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Plain Java entry point that merges the {@link PartialIndex} files written by the shards of an export,
+ * run with --shard, into the class index the export would have written unsharded. Doesn't need MagicDraw
+ * on the classpath.
+ */
+@SuppressWarnings("UseOfSystemOutOrSystemErr")
+public class IndexMerger {
+    private static final String PARTIAL_INDEX_GLOB = "class_index-*-of-*.part";
+
+    private String indexRelease;
+    private final List<Path> inputs = new ArrayList<>();
+    private File outFolder;
+    private boolean helpOnly;
+
+    public static void main(String[] args) {
+        try {
+            IndexMerger merger = new IndexMerger();
+            merger.parseArgs(args);
+            if (!merger.helpOnly) {
+                merger.merge();
+            }
+        } catch (OpenEhrExporterException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Read the partial indexes and write the class index of all of them to the output folder.
+     */
+    void merge() {
+        List<PartialIndex> parts = new ArrayList<>();
+        for (Path input : inputs) {
+            for (Path file : partialIndexFiles(input)) {
+                parts.add(PartialIndex.read(file));
+            }
+        }
+        List<IndexEntry> entries = PartialIndex.merge(parts);
+
+        String release = indexRelease;
+        if (release == null) {
+            for (PartialIndex part : parts) {
+                if (part.getIndexRelease() == null) {
+                    throw new OpenEhrExporterException("No index release given, and shard " + part.getShard() + " was exported without one!");
+                }
+                if (release != null && !release.equals(part.getIndexRelease())) {
+                    throw new OpenEhrExporterException("Shards were exported for index releases " + release + " and " +
+                                                               part.getIndexRelease() + "; give the index release with -i!");
+                }
+                release = part.getIndexRelease();
+            }
+        }
+
+        // the index is Asciidoctor text in all output formats
+        OutputFormat format = OutputFormat.ASCIIDOC;
+        String content = format.createRenderer(format.createFormatter(), 3, release).renderIndex(entries);
+        File indexFile = new File(outFolder, ClassRenderer.CLASS_INDEX_FILE_NAME);
+        try {
+            Files.write(indexFile.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new OpenEhrExporterException("Unable to write to " + indexFile + '!', e);
+        }
+        System.out.println("Merged " + entries.size() + " types of " + parts.size() + " shard(s) into " + indexFile);
+    }
+
+    private static List<Path> partialIndexFiles(Path input) {
+        if (!Files.isDirectory(input)) {
+            return Arrays.asList(input);
+        }
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(input, PARTIAL_INDEX_GLOB)) {
+            stream.forEach(files::add);
+        } catch (IOException e) {
+            throw new OpenEhrExporterException("Unable to read folder: " + input, e);
+        }
+        files.sort(null);
+        return files;
+    }
+
+    @SuppressWarnings("SwitchStatementDensity")
+    void parseArgs(String[] cmdLineArgs) {
+        for (Iterator<String> iterator = Arrays.asList(cmdLineArgs).iterator(); iterator.hasNext(); ) {
+            String arg = iterator.next();
+            switch (arg) {
+                case "-o":
+                    String outputFolder = getParameterValue(iterator, "-o");
+                    Path outputPath = Paths.get(outputFolder);
+                    if (!Files.isDirectory(outputPath)) {
+                        throw new OpenEhrExporterException("Output folder " + outputFolder + " doesn't exist!");
+                    }
+                    outFolder = outputPath.toFile();
+                    break;
+                case "-i":
+                    indexRelease = getParameterValue(iterator, "-i");
+                    break;
+                case "-?":
+                case "-h":
+                    System.out.println("Usage: index_merge [-o output_folder] [-i index_release] [<partial index file or folder>...]");
+                    System.out.println("       -o: output folder to write " + ClassRenderer.CLASS_INDEX_FILE_NAME + " to (default = current folder)");
+                    System.out.println("       -i: release the index links to (default = the release the shards were exported with)");
+                    System.out.println("       Merges the partial class indexes written by 'uml_generate --shard i/n' for all n shards;");
+                    System.out.println("       folders are searched for " + PARTIAL_INDEX_GLOB + " files (default = the output folder).");
+                    helpOnly = true;
+                    break;
+                default:
+                    Path input = Paths.get(arg);
+                    if (!Files.exists(input)) {
+                        throw new OpenEhrExporterException("Partial index " + arg + " doesn't exist!");
+                    }
+                    inputs.add(input);
+            }
+        }
+        if (!helpOnly) {
+            if (outFolder == null) {
+                outFolder = new File(".");
+            }
+            if (inputs.isEmpty()) {
+                inputs.add(outFolder.toPath());
+            }
+        }
+    }
+
+    private static String getParameterValue(Iterator<String> iterator, String param) {
+        if (iterator.hasNext()) {
+            return iterator.next();
+        } else {
+            throw new OpenEhrExporterException("Missing parameter for " + param + '!');
+        }
+    }
+}
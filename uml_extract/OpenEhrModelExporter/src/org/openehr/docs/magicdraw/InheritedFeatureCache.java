@@ -0,0 +1,97 @@
+package org.openehr.docs.magicdraw;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-export cache of the attributes and operations a UML class inherits from its ancestors, keyed by
+ * feature name. The table of each class is built once, from the already built tables of its direct
+ * superclasses, so a hierarchy is flattened once rather than once for every descendant.
+ * <p>
+ * Name clashes are resolved deterministically: a feature defined in a class hides a feature of the same
+ * name in any of its ancestors, earlier superclasses take precedence over later ones under multiple
+ * inheritance, and within a single class the first declared feature of a name (e.g. of an overloaded
+ * operation) is used.
+ */
+public class InheritedFeatureCache {
+    private static final FeatureTable EMPTY = new FeatureTable(Collections.emptyMap(), Collections.emptyMap());
+
+    // tables of features inherited by a class
+    private final Map<UmlClassifier, FeatureTable> inheritedFeatures = new HashMap<>();
+    // tables of all features (own and inherited) visible in a class
+    private final Map<UmlClassifier, FeatureTable> allFeatures = new HashMap<>();
+
+    /**
+     * Get the features a class inherits from its superclasses, excluding the features it defines itself.
+     * @param umlClass UML class.
+     * @return inherited features table.
+     */
+    public FeatureTable getInheritedFeatures(UmlClassifier umlClass) {
+        if (umlClass.getSuperClasses().isEmpty()) {
+            return EMPTY;
+        }
+        FeatureTable table = inheritedFeatures.get(umlClass);
+        if (table == null) {
+            table = inherit(umlClass);
+            inheritedFeatures.put(umlClass, table);
+        }
+        return table;
+    }
+
+    private FeatureTable getAllFeatures(UmlClassifier umlClass) {
+        FeatureTable table = allFeatures.get(umlClass);
+        if (table == null) {
+            FeatureTable inherited = getInheritedFeatures(umlClass);
+            Map<String, UmlProperty> attributes = new LinkedHashMap<>();
+            Map<String, UmlOperation> operations = new LinkedHashMap<>();
+            putOwn(attributes, umlClass.getAttributes());
+            putOwn(operations, umlClass.getOperations());
+            inherited.getAttributes().forEach(attributes::putIfAbsent);
+            inherited.getOperations().forEach(operations::putIfAbsent);
+            table = new FeatureTable(attributes, operations);
+            allFeatures.put(umlClass, table);
+        }
+        return table;
+    }
+
+    private FeatureTable inherit(UmlClassifier umlClass) {
+        Map<String, UmlProperty> attributes = new LinkedHashMap<>();
+        Map<String, UmlOperation> operations = new LinkedHashMap<>();
+        for (UmlClassifier superClass : umlClass.getSuperClasses()) {
+            FeatureTable superFeatures = getAllFeatures(superClass);
+            superFeatures.getAttributes().forEach(attributes::putIfAbsent);
+            superFeatures.getOperations().forEach(operations::putIfAbsent);
+        }
+        return new FeatureTable(attributes, operations);
+    }
+
+    private static <F extends UmlElement> void putOwn(Map<String, F> features, List<F> ownFeatures) {
+        for (F feature : ownFeatures) {
+            features.putIfAbsent(feature.getName(), feature);
+        }
+    }
+
+    /**
+     * Attributes and operations visible in a class, keyed by name.
+     */
+    public static class FeatureTable {
+        private final Map<String, UmlProperty> attributes;
+        private final Map<String, UmlOperation> operations;
+
+        FeatureTable(Map<String, UmlProperty> attributes, Map<String, UmlOperation> operations) {
+            this.attributes = Collections.unmodifiableMap(attributes);
+            this.operations = Collections.unmodifiableMap(operations);
+        }
+
+        public Map<String, UmlProperty> getAttributes() {
+            return attributes;
+        }
+
+        public Map<String, UmlOperation> getOperations() {
+            return operations;
+        }
+    }
+}
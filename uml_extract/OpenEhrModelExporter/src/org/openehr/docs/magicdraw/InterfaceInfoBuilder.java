@@ -1,42 +1,38 @@
 package org.openehr.docs.magicdraw;
 
-import com.nomagic.uml2.ext.magicdraw.classes.mdinterfaces.Interface;
-import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Operation;
-import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Property;
-
 import java.util.HashMap;
 import java.util.Map;
 
 /**
  * @author Bostjan Lah
  */
-public class InterfaceInfoBuilder extends AbstractInfoBuilder<Interface> {
+public class InterfaceInfoBuilder extends AbstractInfoBuilder<UmlClassifier> {
     public InterfaceInfoBuilder(Formatter formatter) {
         super(formatter);
     }
 
+    public InterfaceInfoBuilder(Formatter formatter, SymbolTable symbols) {
+        super(formatter, symbols);
+    }
+
     @Override
-    public ClassInfo build(Interface element) {
+    public ClassInfo build(UmlClassifier element) {
         String className = element.getName();
         ClassInfo classInfo = new ClassInfo("Interface")
                 .setClassTypeName(className)
-                .setDocumentation(getDocumentation(element, getFormatter()))
+                .setDocumentation(getDocBlock(element).getText())
                 .setAbstractClass(element.isAbstract());
         setHierarchy(element.getQualifiedName(), classInfo);
 
-        Map<String, Property> superClassAttributes = new HashMap<>();
-        Map<String, Operation> superClassOperations = new HashMap<>();
+        Map<String, UmlProperty> superClassAttributes = new HashMap<>();
+        Map<String, UmlOperation> superClassOperations = new HashMap<>();
 
-        if (element.hasOwnedAttribute()) {
-            addAttributes(classInfo.getAttributes(), element.getOwnedAttribute(), superClassAttributes);
-        }
-        if (element.hasOwnedOperation()) {
-            addOperations(classInfo.getOperations(), element.getOwnedOperation(), superClassOperations);
-        }
+        addAttributes(classInfo.getAttributes(), element.getAttributes(), superClassAttributes);
+        addOperations(classInfo.getOperations(), element.getOperations(), superClassOperations);
 
-        addConstraints(classInfo.getConstraints(), element.get_constraintOfConstrainedElement());
+        addConstraints(classInfo.getConstraints(), element.getConstraints());
 
-        return classInfo;
+        return classInfo.compact(symbols);
     }
 
 }
@@ -0,0 +1,195 @@
+package org.openehr.docs.magicdraw;
+
+import jdk.jfr.Category;
+import jdk.jfr.Configuration;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.StackTrace;
+import org.openehr.docs.magicdraw.exception.OpenEhrExporterException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * JFR events of {@link ExportEvents}. Only referenced once JFR is known to be available.
+ * <p>
+ * Event fields are only filled in when the event is going to be committed, so a disabled event is
+ * little more than an allocation the JIT can remove.
+ */
+final class JfrExportEvents {
+    private static final String CATEGORY = "openEHR Export";
+
+    private JfrExportEvents() {
+    }
+
+    static ClassInfo classBuilt(String qualifiedName, Supplier<ClassInfo> build) {
+        ClassBuilt event = new ClassBuilt();
+        event.begin();
+        ClassInfo classInfo = build.get();
+        event.end();
+        if (event.shouldCommit()) {
+            event.qualifiedName = qualifiedName;
+            event.setCounts(classInfo);
+            event.commit();
+        }
+        return classInfo;
+    }
+
+    static String classRendered(ClassInfo classInfo, Supplier<String> render) {
+        ClassRendered event = new ClassRendered();
+        event.begin();
+        String content = render.get();
+        event.end();
+        if (event.shouldCommit()) {
+            event.qualifiedName = classInfo.getIndexPackage() + "::" + classInfo.getClassName();
+            event.setCounts(classInfo);
+            event.length = content.length();
+            event.commit();
+        }
+        return content;
+    }
+
+    static void fileWritten(Path target, int bytes, boolean skipped, Runnable write) {
+        FileWritten event = new FileWritten();
+        event.begin();
+        write.run();
+        event.end();
+        if (event.shouldCommit()) {
+            event.path = target.toString();
+            event.bytes = bytes;
+            event.skipped = skipped;
+            event.commit();
+        }
+    }
+
+    static void diagramExported(String name, File[] images, BooleanSupplier export) {
+        DiagramExported event = new DiagramExported();
+        event.begin();
+        boolean cached = export.getAsBoolean();
+        event.end();
+        if (event.shouldCommit()) {
+            event.name = name;
+            event.cached = cached;
+            for (File image : images) {
+                event.bytes += image.length();
+            }
+            event.commit();
+        }
+    }
+
+    static AutoCloseable startRecording(Path destination) {
+        Recording recording;
+        try {
+            recording = new Recording(Configuration.getConfiguration("default"));
+        } catch (IOException | ParseException e) {
+            throw new OpenEhrExporterException("Unable to start flight recording!", e);
+        }
+        recording.setName("openEHR export");
+        List<Class<? extends Event>> eventClasses = Arrays.asList(ClassBuilt.class, ClassRendered.class, FileWritten.class, DiagramExported.class);
+        for (Class<? extends Event> eventClass : eventClasses) {
+            recording.enable(eventClass).withoutStackTrace().withoutThreshold();
+        }
+        try {
+            recording.setDestination(destination);
+        } catch (IOException e) {
+            recording.close();
+            throw new OpenEhrExporterException("Unable to write flight recording to " + destination + '!', e);
+        }
+        recording.start();
+        return () -> {
+            // stopping writes the recording to its destination
+            recording.stop();
+            recording.close();
+        };
+    }
+
+    @Category(CATEGORY)
+    @StackTrace(false)
+    abstract static class ClassEvent extends Event {
+        @Label("Qualified Name")
+        String qualifiedName;
+
+        @Label("Meta Type")
+        String metaType;
+
+        @Label("Attributes")
+        int attributes;
+
+        @Label("Constants")
+        int constants;
+
+        @Label("Functions")
+        int functions;
+
+        @Label("Invariants")
+        int invariants;
+
+        void setCounts(ClassInfo classInfo) {
+            metaType = classInfo.getMetaType();
+            attributes = classInfo.getAttributes().size();
+            constants = classInfo.getConstants().size();
+            functions = classInfo.getOperations().size();
+            invariants = classInfo.getConstraints().size();
+        }
+    }
+
+    @Name("org.openehr.docs.ClassBuilt")
+    @Label("Class Built")
+    @Description("ClassInfo built from a UML class, interface or enumeration")
+    static class ClassBuilt extends ClassEvent {
+    }
+
+    @Name("org.openehr.docs.ClassRendered")
+    @Label("Class Rendered")
+    @Description("Class file rendered from a ClassInfo")
+    static class ClassRendered extends ClassEvent {
+        @Label("Length")
+        @Description("Length of the rendered class file, in characters")
+        int length;
+    }
+
+    @Name("org.openehr.docs.FileWritten")
+    @Label("File Written")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static class FileWritten extends Event {
+        @Label("Path")
+        String path;
+
+        @Label("Size")
+        @DataAmount(DataAmount.BYTES)
+        int bytes;
+
+        @Label("Skipped")
+        @Description("Unchanged since the previous export, so not written")
+        boolean skipped;
+    }
+
+    @Name("org.openehr.docs.DiagramExported")
+    @Label("Diagram Exported")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static class DiagramExported extends Event {
+        @Label("Name")
+        String name;
+
+        @Label("Size")
+        @Description("Total size of the diagram images")
+        @DataAmount(DataAmount.BYTES)
+        long bytes;
+
+        @Label("Cached")
+        @Description("Restored from the diagram cache rather than exported")
+        boolean cached;
+    }
+}
@@ -0,0 +1,55 @@
+package org.openehr.docs.magicdraw;
+
+import com.nomagic.magicdraw.actions.MDStateAction;
+import com.nomagic.magicdraw.core.Application;
+
+import javax.annotation.CheckForNull;
+import java.awt.event.ActionEvent;
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Toggles the live export of the current project, see {@link LiveExporter}.
+ */
+class LiveExportAction extends MDStateAction {
+    private static final long serialVersionUID = 1L;
+
+    @CheckForNull
+    private transient LiveExporter liveExporter;
+
+    LiveExportAction(@CheckForNull String id, String name) {
+        super(id, name, null, null);
+    }
+
+    /**
+     * @see java.awt.event.ActionListener#actionPerformed(ActionEvent)
+     */
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        if (liveExporter != null) {
+            stop();
+            return;
+        }
+        File outputFolder = OpenEHRExportAction.chooseFolder();
+        if (outputFolder != null) {
+            Set<String> rootPackageNames = new HashSet<>();
+            rootPackageNames.add("openehr");
+            liveExporter = new LiveExporter(new OpenEHRProjectExporter(3, rootPackageNames, null), outputFolder,
+                                            Application.getInstance().getProject());
+            liveExporter.start();
+        }
+        setState(liveExporter != null);
+    }
+
+    /**
+     * Stop the live export, if running.
+     */
+    void stop() {
+        if (liveExporter != null) {
+            liveExporter.close();
+            liveExporter = null;
+        }
+        setState(false);
+    }
+}
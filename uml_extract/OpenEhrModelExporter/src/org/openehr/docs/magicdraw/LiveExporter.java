@@ -0,0 +1,200 @@
+package org.openehr.docs.magicdraw;
+
+import com.nomagic.magicdraw.core.Application;
+import com.nomagic.magicdraw.core.Project;
+import com.nomagic.magicdraw.core.project.ProjectEventListener;
+import com.nomagic.magicdraw.core.project.ProjectEventListenerAdapter;
+import com.nomagic.magicdraw.ui.ProgressStatusRunner;
+import com.nomagic.uml2.transaction.TransactionCommitListener;
+import org.openehr.docs.magicdraw.exception.OpenEhrExporterException;
+
+import javax.swing.*;
+import java.beans.PropertyChangeEvent;
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Collection;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the export of a project up to date while it is edited: exports the whole project once, then
+ * records the changes of each committed transaction, including undo and redo, and exports the types and
+ * diagrams they affect again once the model has been quiet for a short debounce period.
+ * <p>
+ * Exports are scheduled one at a time on a thread of their own, but don't run in the background: MagicDraw's
+ * model can't be read while it is edited, so each export runs as a modal MagicDraw progress task, started
+ * from the event dispatch thread, and editing is blocked until it completes. An export of a few changes
+ * completes before the progress dialog is shown; the first, full export, or one affecting many types, shows
+ * it. Changes made before an export starts are exported by the next one, and the changes of a failed export
+ * are kept for the next one. Until a full export has succeeded, each export is a full one, so a failed first
+ * export doesn't leave the output incomplete.
+ * <p>
+ * Each export of changes also removes the class files of the types deleted or renamed since the previous
+ * export, and generates the class index again, if the exporter has an index release.
+ * Stops by itself when the project is closed.
+ */
+public class LiveExporter implements AutoCloseable {
+    private static final long DEBOUNCE_MILLIS = 250;
+    // exports of a few changes complete without showing the progress dialog
+    private static final int PROGRESS_DELAY_MILLIS = 1000;
+
+    private final OpenEHRProjectExporter exporter;
+    private final File outputFolder;
+    private final Project project;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "openehr-live-export");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final TransactionCommitListener commitListener = this::transactionCommitted;
+    private final ProjectEventListener projectListener = new ProjectEventListenerAdapter() {
+        @Override
+        public void projectClosed(Project closedProject) {
+            if (closedProject == project) {
+                close();
+            }
+        }
+    };
+
+    private final Object lock = new Object();
+    // guarded by lock
+    private ModelChangeSet pendingChanges = new ModelChangeSet();
+    private ScheduledFuture<?> scheduledExport;
+    private boolean closed;
+    // only accessed on the export thread
+    private boolean fullExportNeeded = true;
+
+    /**
+     * @param exporter exporter, configured as for a full export.
+     * @param outputFolder Directory in which to write the files.
+     * @param project MD descriptor for the project to follow.
+     */
+    public LiveExporter(OpenEHRProjectExporter exporter, File outputFolder, Project project) {
+        this.exporter = exporter.setIncremental(true);
+        this.outputFolder = outputFolder;
+        this.project = project;
+    }
+
+    /**
+     * Start following the changes of the project, after a full export.
+     */
+    public void start() {
+        project.getRepository().getTransactionManager().addTransactionCommitListenerIncludingUndoAndRedo(commitListener);
+        Application.getInstance().addProjectEventListener(projectListener);
+        executor.execute(this::exportProject);
+    }
+
+    /**
+     * Stop following the changes of the project. An export already running completes; pending changes are
+     * dropped.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (scheduledExport != null) {
+                scheduledExport.cancel(false);
+            }
+        }
+        project.getRepository().getTransactionManager().removeTransactionCommitListener(commitListener);
+        Application.getInstance().removeProjectEventListener(projectListener);
+        // not shutdownNow, which would interrupt an export writing its files
+        executor.shutdown();
+    }
+
+    private Runnable transactionCommitted(Collection<PropertyChangeEvent> events) {
+        synchronized (lock) {
+            if (!closed) {
+                events.forEach(pendingChanges::add);
+                if (scheduledExport != null) {
+                    scheduledExport.cancel(false);
+                }
+                scheduledExport = executor.schedule(this::exportChanges, DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+        // nothing to run within the transaction
+        return null;
+    }
+
+    private void exportProject() {
+        ExportReport report = new ExportReport();
+        try {
+            runAsProgressTask(() -> exporter.exportProject(outputFolder, project, report));
+            fullExportNeeded = false;
+            log("Live export to " + outputFolder + " started: " + report.summary());
+        } catch (Exception e) {
+            log("Live export to " + outputFolder + " failed, exporting the whole project again with the next change: " + e.getMessage());
+        }
+    }
+
+    private void exportChanges() {
+        ModelChangeSet changes;
+        synchronized (lock) {
+            changes = pendingChanges;
+            pendingChanges = new ModelChangeSet();
+        }
+        if (fullExportNeeded) {
+            // the full export covers the changes
+            exportProject();
+            return;
+        }
+        if (changes.isEmpty()) {
+            return;
+        }
+        ExportReport report = new ExportReport();
+        try {
+            runAsProgressTask(() -> exporter.exportChanges(outputFolder, project, changes, report));
+            log("Live export: " + report.summary());
+        } catch (RuntimeException e) {
+            synchronized (lock) {
+                changes.addAll(pendingChanges);
+                pendingChanges = changes;
+            }
+            log("Live export failed, retrying with the next change: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Run an export as a modal progress task started from the event dispatch thread, so that the model isn't
+     * edited while it is read, and wait for it to complete.
+     * @exception OpenEhrExporterException the failure of the export.
+     */
+    private static void runAsProgressTask(ExportTask export) {
+        Exception[] failure = new Exception[1];
+        try {
+            SwingUtilities.invokeAndWait(() -> ProgressStatusRunner.runWithProgressStatus(progressStatus -> {
+                try {
+                    export.run();
+                } catch (Exception e) {
+                    failure[0] = e;
+                }
+            }, "Live export", false, PROGRESS_DELAY_MILLIS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OpenEhrExporterException("Interrupted while waiting for the live export!", e);
+        } catch (InvocationTargetException e) {
+            throw new OpenEhrExporterException(e.getCause());
+        }
+        if (failure[0] instanceof OpenEhrExporterException) {
+            throw (OpenEhrExporterException)failure[0];
+        } else if (failure[0] != null) {
+            throw new OpenEhrExporterException(failure[0]);
+        }
+    }
+
+    private static void log(String message) {
+        Application.getInstance().getGUILog().log(message);
+    }
+
+    /**
+     * An export, which may fail with any exception.
+     */
+    private interface ExportTask {
+        void run() throws Exception;
+    }
+}
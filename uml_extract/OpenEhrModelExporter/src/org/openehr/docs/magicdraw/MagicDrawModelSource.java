@@ -0,0 +1,335 @@
+package org.openehr.docs.magicdraw;
+
+import com.nomagic.uml2.ext.magicdraw.auxiliaryconstructs.mdtemplates.ParameterableElement;
+import com.nomagic.uml2.ext.magicdraw.auxiliaryconstructs.mdtemplates.TemplateBinding;
+import com.nomagic.uml2.ext.magicdraw.auxiliaryconstructs.mdtemplates.TemplateParameter;
+import com.nomagic.uml2.ext.magicdraw.auxiliaryconstructs.mdtemplates.TemplateParameterSubstitution;
+import com.nomagic.uml2.ext.magicdraw.auxiliaryconstructs.mdtemplates.TemplateSignature;
+import com.nomagic.uml2.ext.magicdraw.classes.mdinterfaces.Interface;
+import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Classifier;
+import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Comment;
+import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Constraint;
+import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Element;
+import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Enumeration;
+import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.LiteralString;
+import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.NamedElement;
+import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.OpaqueExpression;
+import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Operation;
+import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Parameter;
+import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Property;
+import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Type;
+import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.ValueSpecification;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * The types collected from a MagicDraw project by a {@link ModelElementCollector}, read through thin views
+ * of the MagicDraw UML elements. Views are created as the builders ask for them and hold no state of their
+ * own; views of the same element are equal.
+ * <p>
+ * Types are added to the {@link TypeTable} of the source, with their template signatures and bindings, when
+ * first referred to, so the model is queried once per type for the names and signatures of all references.
+ */
+public class MagicDrawModelSource implements ModelSource {
+    private final ModelElementCollector collector;
+    private final TypeTable types = new TypeTable();
+
+    /**
+     * @param collector collector, after it has collected the model.
+     */
+    public MagicDrawModelSource(ModelElementCollector collector) {
+        this.collector = collector;
+    }
+
+    @Override
+    public List<UmlClassifier> getClasses() {
+        return map(collector.getClasses(), MdClassifier::new);
+    }
+
+    @Override
+    public List<UmlClassifier> getInterfaces() {
+        return map(collector.getInterfaces(), MdClassifier::new);
+    }
+
+    @Override
+    public List<UmlClassifier> getEnumerations() {
+        return map(collector.getEnumerations(), MdClassifier::new);
+    }
+
+    private static <E, V> List<V> map(Collection<E> elements, Function<E, V> view) {
+        return elements.stream().map(view).collect(Collectors.toList());
+    }
+
+    private String typeName(Type type) {
+        return type == null ? null : types.getSignature(addType(type));
+    }
+
+    /**
+     * Add a type to the type table, if not yet in it, with its template signature, and if bound to a
+     * template, with the template and the actual types of the binding.
+     * @return id of the type.
+     */
+    private String addType(Type type) {
+        String id = type.getID();
+        if (types.get(id) != null) {
+            return id;
+        }
+        TypeTable.TypeSymbol symbol = types.add(id, type.getQualifiedName(), type.getName());
+        if (type instanceof Classifier) {
+            Classifier classifier = (Classifier)type;
+            TemplateSignature tplSig = classifier.getOwnedTemplateSignature();
+            if (tplSig != null) {
+                for (TemplateParameter parameter : tplSig.getOwnedParameter()) {
+                    symbol.addTemplateParameter(parameter.getID(), parameterName(parameter));
+                }
+            }
+            for (TemplateBinding binding : classifier.getTemplateBinding()) {
+                Element template = binding.getSignature() == null ? null : binding.getSignature().getOwner();
+                if (template instanceof Type) {
+                    symbol.bind(addType((Type)template));
+                    for (TemplateParameterSubstitution substitution : binding.getParameterSubstitution()) {
+                        if (substitution.getFormal() != null && substitution.getActual() instanceof Type) {
+                            symbol.substitute(substitution.getFormal().getID(), addType((Type)substitution.getActual()));
+                        }
+                    }
+                    break;
+                }
+            }
+        }
+        return id;
+    }
+
+    private static String parameterName(TemplateParameter parameter) {
+        ParameterableElement element = parameter.getParameteredElement();
+        String name = element instanceof NamedElement ? ((NamedElement)element).getName() : null;
+        // the human name isn't used, as it is prefixed by the kind of element in the language of the user
+        if (name != null && !name.isEmpty()) {
+            return name;
+        }
+        return element == null ? parameter.getID() : element.getID();
+    }
+
+    private abstract class MdElement<E extends NamedElement> implements UmlElement {
+        final E element;
+
+        MdElement(E element) {
+            this.element = element;
+        }
+
+        @Override
+        public String getName() {
+            return element.getName();
+        }
+
+        @Override
+        public List<String> getComments() {
+            return map(element.getOwnedComment(), Comment::getBody);
+        }
+
+        List<UmlConstraint> constraints() {
+            return map(element.get_constraintOfConstrainedElement(), MdConstraint::new);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof MdElement && element.equals(((MdElement<?>)o).element);
+        }
+
+        @Override
+        public int hashCode() {
+            return element.hashCode();
+        }
+    }
+
+    private class MdClassifier extends MdElement<Classifier> implements UmlClassifier {
+        MdClassifier(Classifier element) {
+            super(element);
+        }
+
+        @Override
+        public String getQualifiedName() {
+            return element.getQualifiedName();
+        }
+
+        @Override
+        public boolean isAbstract() {
+            return element.isAbstract();
+        }
+
+        @Override
+        public List<String> getTemplateParameters() {
+            return types.get(addType(element)).getTemplateParameters();
+        }
+
+        @Override
+        public List<UmlClassifier> getSuperClasses() {
+            if (element instanceof com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Class) {
+                return map(((com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Class)element).getSuperClass(), MdClassifier::new);
+            }
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<UmlProperty> getAttributes() {
+            if (element instanceof com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Class) {
+                return map(((com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Class)element).getOwnedAttribute(), MdProperty::new);
+            }
+            if (element instanceof Interface) {
+                return map(((Interface)element).getOwnedAttribute(), MdProperty::new);
+            }
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<UmlOperation> getOperations() {
+            if (element instanceof com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Class) {
+                return map(((com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Class)element).getOwnedOperation(), MdOperation::new);
+            }
+            if (element instanceof Interface) {
+                return map(((Interface)element).getOwnedOperation(), MdOperation::new);
+            }
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<UmlElement> getLiterals() {
+            if (element instanceof Enumeration) {
+                return map(((Enumeration)element).getOwnedLiteral(), MdLiteral::new);
+            }
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<UmlConstraint> getConstraints() {
+            return constraints();
+        }
+    }
+
+    private class MdLiteral extends MdElement<NamedElement> {
+        MdLiteral(NamedElement element) {
+            super(element);
+        }
+    }
+
+    private class MdParameter extends MdElement<Parameter> implements UmlTypedElement {
+        MdParameter(Parameter element) {
+            super(element);
+        }
+
+        @Override
+        public String getTypeName() {
+            return typeName(element.getType());
+        }
+
+        @Override
+        public int getLower() {
+            return element.getLower();
+        }
+
+        @Override
+        public int getUpper() {
+            return element.getUpper();
+        }
+    }
+
+    private class MdProperty extends MdElement<Property> implements UmlProperty {
+        MdProperty(Property element) {
+            super(element);
+        }
+
+        @Override
+        public String getTypeName() {
+            return typeName(element.getType());
+        }
+
+        @Override
+        public int getLower() {
+            return element.getLower();
+        }
+
+        @Override
+        public int getUpper() {
+            return element.getUpper();
+        }
+
+        @Override
+        public boolean isReadOnly() {
+            return element.isReadOnly();
+        }
+
+        @Override
+        public UmlTypedElement getQualifier() {
+            return element.getAssociation() != null && element.hasQualifier() ? new MdProperty(element.getQualifier().get(0)) : null;
+        }
+
+        @Override
+        public String getDefaultValue() {
+            ValueSpecification defaultValue = element.getDefaultValue();
+            return defaultValue instanceof LiteralString ? ((LiteralString)defaultValue).getValue() : null;
+        }
+    }
+
+    private class MdOperation extends MdElement<Operation> implements UmlOperation {
+        MdOperation(Operation element) {
+            super(element);
+        }
+
+        @Override
+        public String getTypeName() {
+            return typeName(element.getType());
+        }
+
+        @Override
+        public int getLower() {
+            return element.getLower();
+        }
+
+        @Override
+        public int getUpper() {
+            return element.getUpper();
+        }
+
+        @Override
+        public boolean isAbstract() {
+            return element.isAbstract();
+        }
+
+        @Override
+        public List<UmlTypedElement> getParameters() {
+            return element.hasOwnedParameter() ? map(element.getOwnedParameter(), MdParameter::new) : Collections.emptyList();
+        }
+
+        @Override
+        public List<UmlConstraint> getConstraints() {
+            return constraints();
+        }
+    }
+
+    private static class MdConstraint implements UmlConstraint {
+        private final Constraint constraint;
+
+        MdConstraint(Constraint constraint) {
+            this.constraint = constraint;
+        }
+
+        @Override
+        public String getName() {
+            return constraint.getName();
+        }
+
+        @Override
+        public List<String> getBody() {
+            if (constraint.getSpecification() instanceof OpaqueExpression) {
+                OpaqueExpression opaqueExpression = (OpaqueExpression)constraint.getSpecification();
+                if (opaqueExpression.hasBody()) {
+                    return opaqueExpression.getBody();
+                }
+            }
+            return Collections.emptyList();
+        }
+    }
+}
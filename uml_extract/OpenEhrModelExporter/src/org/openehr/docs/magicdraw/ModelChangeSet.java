@@ -0,0 +1,229 @@
+package org.openehr.docs.magicdraw;
+
+import com.nomagic.magicdraw.uml.symbols.DiagramPresentationElement;
+import com.nomagic.magicdraw.uml.symbols.PresentationElement;
+import com.nomagic.uml2.ext.magicdraw.classes.mdinterfaces.Interface;
+import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Classifier;
+import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Constraint;
+import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Element;
+import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Operation;
+import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Parameter;
+import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Property;
+import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Type;
+
+import java.beans.PropertyChangeEvent;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The model and diagram elements changed since the last export, as reported by the change events of the
+ * project, from which the types and diagrams to export again are derived: the types owning a changed
+ * element, their subclasses, whose inherited feature status may have changed, the types referring to a
+ * renamed type, and the diagrams showing any of these types or changed themselves.
+ * <p>
+ * Not thread safe; the live exporter records events and hands the set over to its export thread under
+ * its own lock.
+ */
+public class ModelChangeSet {
+    private static final String NAME_PROPERTY = "name";
+
+    private final Set<Element> changedElements = new HashSet<>();
+    private final Set<Element> renamedElements = new HashSet<>();
+    private final Set<DiagramPresentationElement> changedDiagrams = new HashSet<>();
+
+    /**
+     * Record a change event of the project.
+     * @param event change event, of a model or presentation element.
+     */
+    public void add(PropertyChangeEvent event) {
+        Object source = event.getSource();
+        if (source instanceof Element) {
+            changedElements.add((Element)source);
+            if (NAME_PROPERTY.equals(event.getPropertyName())) {
+                renamedElements.add((Element)source);
+            }
+        } else if (source instanceof PresentationElement) {
+            DiagramPresentationElement diagram = source instanceof DiagramPresentationElement
+                    ? (DiagramPresentationElement)source
+                    : ((PresentationElement)source).getDiagramPresentationElement();
+            if (diagram != null) {
+                changedDiagrams.add(diagram);
+            }
+        }
+    }
+
+    /**
+     * Add the changes of another change set, such as those of a failed export, to be exported again.
+     */
+    public void addAll(ModelChangeSet changes) {
+        changedElements.addAll(changes.changedElements);
+        renamedElements.addAll(changes.renamedElements);
+        changedDiagrams.addAll(changes.changedDiagrams);
+    }
+
+    public boolean isEmpty() {
+        return changedElements.isEmpty() && changedDiagrams.isEmpty();
+    }
+
+    /**
+     * Determine the exportable types affected by the changes.
+     * @param collector collector, after it has collected the model.
+     * @return qualified names of the affected types.
+     */
+    public Set<String> getAffectedTypes(ModelElementCollector collector) {
+        Set<Classifier> types = new HashSet<>();
+        types.addAll(collector.getClasses());
+        types.addAll(collector.getInterfaces());
+        types.addAll(collector.getEnumerations());
+
+        Set<Classifier> affected = new LinkedHashSet<>();
+        // classifiers owning a changed element, exported or not, whose subclasses are affected
+        Set<Classifier> changedClassifiers = new HashSet<>();
+        for (Element element : changedElements) {
+            addOwningType(affected, changedClassifiers, element, types);
+            if (element instanceof Constraint) {
+                for (Element constrained : ((Constraint)element).getConstrainedElement()) {
+                    addOwningType(affected, changedClassifiers, constrained, types);
+                }
+            }
+        }
+        if (!renamedElements.isEmpty()) {
+            for (Classifier type : types) {
+                if (refersTo(type, renamedElements)) {
+                    affected.add(type);
+                }
+            }
+        }
+        changedClassifiers.addAll(affected);
+        addSubclasses(affected, changedClassifiers, collector.getClasses());
+
+        Set<String> names = new HashSet<>();
+        for (Classifier type : affected) {
+            names.add(type.getQualifiedName());
+        }
+        return names;
+    }
+
+    /**
+     * @param diagram diagram of the model.
+     * @param affectedTypes qualified names of the affected types, see {@link #getAffectedTypes(ModelElementCollector)}.
+     * @return true if the diagram changed, or shows an affected type or one of its features.
+     */
+    public boolean affects(DiagramPresentationElement diagram, Set<String> affectedTypes) {
+        return changedDiagrams.contains(diagram) || changedElements.contains(diagram.getDiagram())
+                || shows(diagram, affectedTypes);
+    }
+
+    private static boolean shows(PresentationElement presentationElement, Set<String> affectedTypes) {
+        Element element = presentationElement.getElement();
+        if (element != null && (isAffected(element, affectedTypes) || isAffected(element.getOwner(), affectedTypes))) {
+            return true;
+        }
+        for (PresentationElement child : presentationElement.getPresentationElements()) {
+            if (shows(child, affectedTypes)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isAffected(Element element, Set<String> affectedTypes) {
+        return element instanceof Classifier && affectedTypes.contains(((Classifier)element).getQualifiedName());
+    }
+
+    /**
+     * Add the nearest exportable type owning an element, or the element itself if it is one; and all
+     * classifiers up to it.
+     */
+    private static void addOwningType(Set<Classifier> affected, Set<Classifier> changedClassifiers, Element element,
+                                      Set<Classifier> types) {
+        for (Element owner = element; owner != null; owner = owner.getOwner()) {
+            if (owner instanceof Classifier) {
+                changedClassifiers.add((Classifier)owner);
+                if (types.contains(owner)) {
+                    affected.add((Classifier)owner);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if a feature of the type has one of the elements as its type, or as the type of a
+     * parameter or qualifier, so that the type shows its name.
+     */
+    private static boolean refersTo(Classifier type, Set<Element> elements) {
+        List<Property> attributes = new ArrayList<>();
+        List<Operation> operations = new ArrayList<>();
+        if (type instanceof com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Class) {
+            attributes.addAll(((com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Class)type).getOwnedAttribute());
+            operations.addAll(((com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Class)type).getOwnedOperation());
+        } else if (type instanceof Interface) {
+            attributes.addAll(((Interface)type).getOwnedAttribute());
+            operations.addAll(((Interface)type).getOwnedOperation());
+        }
+        for (Property attribute : attributes) {
+            if (isIn(attribute.getType(), elements)) {
+                return true;
+            }
+            for (Property qualifier : attribute.getQualifier()) {
+                if (isIn(qualifier.getType(), elements)) {
+                    return true;
+                }
+            }
+        }
+        for (Operation operation : operations) {
+            if (isIn(operation.getType(), elements)) {
+                return true;
+            }
+            for (Parameter parameter : operation.getOwnedParameter()) {
+                if (isIn(parameter.getType(), elements)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isIn(Type type, Set<Element> elements) {
+        return type != null && elements.contains(type);
+    }
+
+    /**
+     * Add the classes of the export inheriting, directly or not, from a changed classifier.
+     */
+    private static void addSubclasses(Set<Classifier> affected, Set<Classifier> changedClassifiers,
+                                      Collection<com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Class> classes) {
+        Map<Classifier, Boolean> inherits = new HashMap<>();
+        for (com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Class umlClass : classes) {
+            if (inheritsChange(umlClass, changedClassifiers, inherits)) {
+                affected.add(umlClass);
+            }
+        }
+    }
+
+    private static boolean inheritsChange(com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Class umlClass, Set<Classifier> changedClassifiers,
+                                          Map<Classifier, Boolean> inherits) {
+        Boolean known = inherits.get(umlClass);
+        if (known != null) {
+            return known;
+        }
+        // guards against cycles of generalisations
+        inherits.put(umlClass, false);
+        boolean result = false;
+        for (com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Class superClass : umlClass.getSuperClass()) {
+            if (changedClassifiers.contains(superClass) || inheritsChange(superClass, changedClassifiers, inherits)) {
+                result = true;
+                break;
+            }
+        }
+        inherits.put(umlClass, result);
+        return result;
+    }
+}
@@ -0,0 +1,125 @@
+package org.openehr.docs.magicdraw;
+
+import com.nomagic.uml2.ext.magicdraw.classes.mdinterfaces.Interface;
+import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Classifier;
+import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Element;
+import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Enumeration;
+import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Package;
+import com.nomagic.uml2.ext.magicdraw.statemachines.mdbehaviorstatemachines.StateMachine;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Walks the containment tree of a UML model once and sorts the exportable elements found within the
+ * selected packages into class, interface, enumeration and state machine buckets.
+ * <p>
+ * Packages are selected by a {@link PackageSelector}, stepped once per package from the state of its
+ * parent; subtrees in which no package can be selected are not visited at all.
+ */
+public class ModelElementCollector {
+    private final PackageSelector packageSelector;
+    private final Set<Package> selectedPackages = new HashSet<>();
+
+    private final List<com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Class> classes = new ArrayList<>();
+    private final List<Interface> interfaces = new ArrayList<>();
+    private final List<Enumeration> enumerations = new ArrayList<>();
+    private final List<StateMachine> stateMachines = new ArrayList<>();
+
+    /**
+     * @param rootPackageNames root package patterns, see {@link PackageSelector}.
+     */
+    public ModelElementCollector(Set<String> rootPackageNames) {
+        this(PackageSelector.compile(rootPackageNames));
+    }
+
+    public ModelElementCollector(PackageSelector packageSelector) {
+        this.packageSelector = packageSelector;
+    }
+
+    /**
+     * Collect all exportable elements below the model. Package patterns are relative to it.
+     * @param model model at which to start the traversal, normally the primary model.
+     * @return this collector.
+     */
+    public ModelElementCollector collect(Package model) {
+        visitPackage(model, packageSelector.getRootState());
+        return this;
+    }
+
+    /**
+     * Test whether an element, such as a diagram, lies within a selected package; only valid after
+     * {@link #collect(Package)}.
+     * @param element model element.
+     * @return true if the nearest package owning the element was selected.
+     */
+    public boolean isInSelectedPackage(Element element) {
+        Element owner = element.getOwner();
+        while (owner != null && !(owner instanceof Package)) {
+            owner = owner.getOwner();
+        }
+        return owner != null && selectedPackages.contains(owner);
+    }
+
+    /**
+     * UML classes within the root packages. As with a model query for the UML Class metatype, this
+     * includes state machines, which are also available separately via {@link #getStateMachines()}.
+     */
+    public List<com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Class> getClasses() {
+        return classes;
+    }
+
+    public List<Interface> getInterfaces() {
+        return interfaces;
+    }
+
+    public List<Enumeration> getEnumerations() {
+        return enumerations;
+    }
+
+    public List<StateMachine> getStateMachines() {
+        return stateMachines;
+    }
+
+    private void visitPackage(Package pkg, PackageSelector.State state) {
+        if (state.isSelected()) {
+            selectedPackages.add(pkg);
+        }
+        for (Element element : pkg.getPackagedElement()) {
+            if (element instanceof Package) {
+                Package nestedPackage = (Package)element;
+                PackageSelector.State nestedState = state.child(nestedPackage.getName());
+                if (nestedState.canSelectBelow()) {
+                    visitPackage(nestedPackage, nestedState);
+                }
+            } else if (state.isSelected()) {
+                visitElement(element);
+            }
+        }
+    }
+
+    private void visitElement(Element element) {
+        if (element instanceof com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Class) {
+            com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Class umlClass = (com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Class)element;
+            classes.add(umlClass);
+            if (element instanceof StateMachine) {
+                stateMachines.add((StateMachine)element);
+            }
+            visitNestedClassifiers(umlClass.getNestedClassifier());
+        } else if (element instanceof Interface) {
+            interfaces.add((Interface)element);
+            visitNestedClassifiers(((Interface)element).getNestedClassifier());
+        } else if (element instanceof Enumeration) {
+            enumerations.add((Enumeration)element);
+        }
+    }
+
+    private void visitNestedClassifiers(Collection<Classifier> nestedClassifiers) {
+        for (Classifier classifier : nestedClassifiers) {
+            visitElement(classifier);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package org.openehr.docs.magicdraw;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.CodeSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Merkle tree of fingerprints over the exported types of a model, see {@link TypeFingerprints}, and the
+ * packages containing them: the fingerprint of a package covers those of all types and packages below it.
+ * Stored between runs as {@value #FILE_NAME} in the output folder, so that an incremental export can skip
+ * the types of an unchanged package, or unchanged types of a changed one, without building them.
+ * <p>
+ * For each type, the store also keeps what the export needs of it when skipped: its index entry, and the
+ * content hash of its class file, which must still be the one in the manifest for the type to be skipped.
+ * <p>
+ * File layout (UTF-8 text), like that of {@link PartialIndex}: a header line with a magic string, the
+ * format version and the export settings the class files depend on; then a line per package, "P",
+ * fingerprint and qualified name; and a line per type, "T", fingerprint, class file hash, qualified name
+ * and the fields of its index entry.
+ */
+public class ModelFingerprints {
+    static final String FILE_NAME = ".export-fingerprints";
+
+    private static final String MAGIC = "openehr-model-fingerprints";
+    // increment on any change to the file layout
+    private static final int FORMAT_VERSION = 1;
+    // increment on any change to how class files are rendered, for exporters run from a folder of classes,
+    // whose build isn't identified by an archive
+    private static final int RENDERER_VERSION = 1;
+    private static final String EXPORTER_BUILD = archiveBuild(ModelFingerprints.class);
+    private static final String SEPARATOR = "\t";
+    private static final String PACKAGE_LINE = "P";
+    private static final String TYPE_LINE = "T";
+    private static final int TYPE_FIELDS = 10;
+    private static final String NAME_SEPARATOR = "::";
+
+    private final String settings;
+    private final Map<String, String> packages;
+    private final Map<String, TypeEntry> types;
+
+    /**
+     * @param settings export settings the class files depend on, see {@link #settings(OutputFormat, int)}.
+     * @param packages fingerprints of the packages, by qualified name; the model itself is the empty name.
+     * @param types entries of the types, by qualified name.
+     */
+    ModelFingerprints(String settings, Map<String, String> packages, Map<String, TypeEntry> types) {
+        this.settings = settings;
+        this.packages = packages;
+        this.types = types;
+    }
+
+    /**
+     * @return the export settings the class files depend on, including the build of the exporter rendering
+     * them, so that an upgrade of the exporter exports all types again.
+     */
+    static String settings(OutputFormat outputFormat, int headingLevel) {
+        return outputFormat.getName() + '/' + headingLevel + '/' + RENDERER_VERSION + '/' + EXPORTER_BUILD;
+    }
+
+    /**
+     * @param type class of the build.
+     * @return identification of the build holding a class: its version, and the location, size and time of
+     * the archive holding its classes.
+     */
+    static String archiveBuild(Class<?> type) {
+        StringBuilder build = new StringBuilder(String.valueOf(type.getPackage() == null ? null : type.getPackage().getImplementationVersion()));
+        CodeSource codeSource = type.getProtectionDomain().getCodeSource();
+        URL location = codeSource == null ? null : codeSource.getLocation();
+        if (location != null) {
+            try {
+                File archive = new File(location.toURI());
+                build.append('/').append(archive.getAbsolutePath()).append('/').append(archive.length())
+                        .append('/').append(archive.lastModified());
+            } catch (URISyntaxException | IllegalArgumentException ignored) {
+                build.append('/').append(location);
+            }
+        }
+        return build.toString();
+    }
+
+    /**
+     * Compute the fingerprints of the packages containing a number of types.
+     * @param typeFingerprints fingerprints of the types, by qualified name.
+     * @return fingerprints of the packages, by qualified name.
+     */
+    static Map<String, String> packageFingerprints(Map<String, String> typeFingerprints) {
+        // children of each package, sorted so that the fingerprint doesn't depend on the order of the model;
+        // packages are entered without a fingerprint, which is computed from their own children
+        Map<String, SortedMap<String, String>> children = new HashMap<>();
+        for (Map.Entry<String, String> type : typeFingerprints.entrySet()) {
+            String name = type.getKey();
+            children.computeIfAbsent(packageOf(name), k -> new TreeMap<>()).put(TYPE_LINE + SEPARATOR + name, type.getValue());
+            for (String pkg = packageOf(name); !pkg.isEmpty(); pkg = packageOf(pkg)) {
+                children.computeIfAbsent(packageOf(pkg), k -> new TreeMap<>()).putIfAbsent(PACKAGE_LINE + SEPARATOR + pkg, null);
+            }
+        }
+        Map<String, String> fingerprints = new HashMap<>();
+        if (!children.isEmpty()) {
+            packageFingerprint("", children, fingerprints);
+        }
+        return fingerprints;
+    }
+
+    private static String packageFingerprint(String pkg, Map<String, SortedMap<String, String>> children,
+                                             Map<String, String> fingerprints) {
+        TypeFingerprints.Digest digest = new TypeFingerprints.Digest();
+        for (Map.Entry<String, String> child : children.get(pkg).entrySet()) {
+            digest.add(child.getKey());
+            digest.add(child.getValue() != null
+                               ? child.getValue()
+                               : packageFingerprint(child.getKey().substring(PACKAGE_LINE.length() + SEPARATOR.length()), children, fingerprints));
+        }
+        String fingerprint = digest.toHex();
+        fingerprints.put(pkg, fingerprint);
+        return fingerprint;
+    }
+
+    /**
+     * @return qualified name of the package (or type) owning a type, or the empty name for the model.
+     */
+    private static String packageOf(String qualifiedName) {
+        int index = qualifiedName.lastIndexOf(NAME_SEPARATOR);
+        return index < 0 ? "" : qualifiedName.substring(0, index);
+    }
+
+    /**
+     * Look up a type that is unchanged since these fingerprints were taken: either a package containing it
+     * is, or its own fingerprint is.
+     * @param qualifiedName qualified name of the type.
+     * @param fingerprint current fingerprint of the type.
+     * @param currentPackages current fingerprints of the packages.
+     * @return the stored entry of the type, or null if it changed or wasn't exported.
+     */
+    TypeEntry getUnchanged(String qualifiedName, String fingerprint, Map<String, String> currentPackages) {
+        TypeEntry entry = types.get(qualifiedName);
+        if (entry == null) {
+            return null;
+        }
+        // the nearest package is the most likely to be unchanged, and implies the same of all types in it
+        for (String pkg = packageOf(qualifiedName); ; pkg = packageOf(pkg)) {
+            String packageFingerprint = packages.get(pkg);
+            if (packageFingerprint != null && packageFingerprint.equals(currentPackages.get(pkg))) {
+                return entry;
+            }
+            if (pkg.isEmpty()) {
+                break;
+            }
+        }
+        return entry.fingerprint.equals(fingerprint) ? entry : null;
+    }
+
+    /**
+     * @param qualifiedName qualified name of a type.
+     * @return the stored entry of the type, changed or not, or null if it wasn't exported.
+     */
+    TypeEntry getEntry(String qualifiedName) {
+        return types.get(qualifiedName);
+    }
+
+    /**
+     * @return content of the fingerprints file.
+     */
+    String render() {
+        StringBuilder content = new StringBuilder(64 + packages.size() * 96 + types.size() * 256);
+        content.append(MAGIC).append(SEPARATOR).append(FORMAT_VERSION).append(SEPARATOR).append(PartialIndex.escape(settings)).append('\n');
+        for (Map.Entry<String, String> pkg : new TreeMap<>(packages).entrySet()) {
+            appendLine(content, PACKAGE_LINE, pkg.getValue(), pkg.getKey());
+        }
+        for (Map.Entry<String, TypeEntry> type : new TreeMap<>(types).entrySet()) {
+            TypeEntry entry = type.getValue();
+            IndexEntry indexEntry = entry.indexEntry;
+            appendLine(content, TYPE_LINE, entry.fingerprint, entry.fileHash, type.getKey(),
+                       indexEntry.getComponent(), indexEntry.getPackageName(), indexEntry.getSubPackage(),
+                       indexEntry.getClassTypeName(), indexEntry.getClassName(), indexEntry.getMetaType());
+        }
+        return content.toString();
+    }
+
+    private static void appendLine(StringBuilder content, String... fields) {
+        for (int i = 0; i < fields.length; i++) {
+            content.append(i > 0 ? SEPARATOR : "").append(PartialIndex.escape(fields[i]));
+        }
+        content.append('\n');
+    }
+
+    /**
+     * Read the fingerprints file of an earlier export. A missing or unreadable file, or one taken with other
+     * export settings, just means that no type is skipped.
+     * @param file fingerprints file.
+     * @param settings export settings the class files depend on.
+     * @return the fingerprints of the earlier export, or none.
+     */
+    static ModelFingerprints read(Path file, String settings) {
+        Map<String, String> packages = new HashMap<>();
+        Map<String, TypeEntry> types = new HashMap<>();
+        if (Files.isRegularFile(file)) {
+            try {
+                List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+                String[] header = lines.isEmpty() ? new String[0] : lines.get(0).split(SEPARATOR, -1);
+                if (header.length == 3 && MAGIC.equals(header[0]) && String.valueOf(FORMAT_VERSION).equals(header[1])
+                        && settings.equals(PartialIndex.unescape(header[2]))) {
+                    for (String line : lines.subList(1, lines.size())) {
+                        String[] fields = line.split(SEPARATOR, -1);
+                        for (int i = 0; i < fields.length; i++) {
+                            fields[i] = PartialIndex.unescape(fields[i]);
+                        }
+                        if (fields.length == 3 && PACKAGE_LINE.equals(fields[0])) {
+                            packages.put(fields[2], fields[1]);
+                        } else if (fields.length == TYPE_FIELDS && TYPE_LINE.equals(fields[0])) {
+                            types.put(fields[3], new TypeEntry(fields[1], fields[2],
+                                                               new IndexEntry(fields[4], fields[5], fields[6], fields[7], fields[8], fields[9])));
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                // an unreadable file just means a full export
+                packages.clear();
+                types.clear();
+            }
+        }
+        return new ModelFingerprints(settings, packages, types);
+    }
+
+    /**
+     * What an export keeps of a type between runs.
+     */
+    static final class TypeEntry {
+        private final String fingerprint;
+        private final String fileHash;
+        private final IndexEntry indexEntry;
+
+        /**
+         * @param fingerprint fingerprint of the type.
+         * @param fileHash content hash of its class file.
+         * @param indexEntry its index entry.
+         */
+        TypeEntry(String fingerprint, String fileHash, IndexEntry indexEntry) {
+            this.fingerprint = fingerprint;
+            this.fileHash = fileHash;
+            this.indexEntry = indexEntry;
+        }
+
+        String getFingerprint() {
+            return fingerprint;
+        }
+
+        String getFileHash() {
+            return fileHash;
+        }
+
+        IndexEntry getIndexEntry() {
+            return indexEntry;
+        }
+    }
+}
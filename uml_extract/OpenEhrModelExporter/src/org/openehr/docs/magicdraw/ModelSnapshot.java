@@ -0,0 +1,206 @@
+package org.openehr.docs.magicdraw;
+
+import org.openehr.docs.magicdraw.exception.OpenEhrExporterException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Snapshot of a fully built export: the output format the types were built for, the ClassInfo objects
+ * of all exported classes, interfaces and enumerations, and the names of the exported diagrams. Written
+ * to a compact, versioned binary file, from which the class files and class index can be rendered again
+ * without MagicDraw.
+ * <p>
+ * File layout (gzip compressed): magic number, format version, output format name, then the type and
+ * diagram lists, each as a count followed by its entries. Strings are written as a UTF-8 byte count
+ * followed by the bytes, with a count of -1 for null. Version 1 files, without the output format, are
+ * read as Asciidoctor output.
+ */
+public class ModelSnapshot {
+    private static final int MAGIC = 0x4F455853; // "OEXS"
+    // increment on any change to the file layout
+    static final int FORMAT_VERSION = 2;
+    private static final int ASCIIDOC_ONLY_FORMAT_VERSION = 1;
+
+    private final OutputFormat outputFormat;
+    private final List<ClassInfo> types;
+    private final List<String> diagramNames;
+
+    /**
+     * @param types exported classes, interfaces and enumerations, built for Asciidoctor output.
+     * @param diagramNames names of the exported diagrams.
+     */
+    public ModelSnapshot(List<ClassInfo> types, List<String> diagramNames) {
+        this(OutputFormat.ASCIIDOC, types, diagramNames);
+    }
+
+    /**
+     * @param outputFormat output format the types were built for.
+     * @param types exported classes, interfaces and enumerations.
+     * @param diagramNames names of the exported diagrams.
+     */
+    public ModelSnapshot(OutputFormat outputFormat, List<ClassInfo> types, List<String> diagramNames) {
+        this.outputFormat = outputFormat;
+        this.types = Collections.unmodifiableList(types);
+        this.diagramNames = Collections.unmodifiableList(diagramNames);
+    }
+
+    public OutputFormat getOutputFormat() {
+        return outputFormat;
+    }
+
+    public List<ClassInfo> getTypes() {
+        return types;
+    }
+
+    public List<String> getDiagramNames() {
+        return diagramNames;
+    }
+
+    /**
+     * Write the snapshot to a file.
+     * @param file target file.
+     * @exception OpenEhrExporterException on fail to write to file.
+     */
+    public void write(File file) {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(file))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            writeString(out, outputFormat.getName());
+            out.writeInt(types.size());
+            for (ClassInfo classInfo : types) {
+                writeClassInfo(out, classInfo);
+            }
+            out.writeInt(diagramNames.size());
+            for (String diagramName : diagramNames) {
+                writeString(out, diagramName);
+            }
+        } catch (IOException e) {
+            throw new OpenEhrExporterException("Unable to write to " + file + '!', e);
+        }
+    }
+
+    /**
+     * Read a snapshot from a file.
+     * @param file snapshot file.
+     * @return snapshot, with compacted types.
+     * @exception OpenEhrExporterException on fail to read the file, or if it isn't a snapshot of a supported format version.
+     */
+    public static ModelSnapshot read(File file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))))) {
+            if (in.readInt() != MAGIC) {
+                throw new OpenEhrExporterException(file + " is not a model snapshot!");
+            }
+            int version = in.readInt();
+            if (version != FORMAT_VERSION && version != ASCIIDOC_ONLY_FORMAT_VERSION) {
+                throw new OpenEhrExporterException("Unsupported model snapshot version " + version + " in " + file +
+                                                           " (expected " + FORMAT_VERSION + ")!");
+            }
+            OutputFormat outputFormat = version == ASCIIDOC_ONLY_FORMAT_VERSION
+                    ? OutputFormat.ASCIIDOC
+                    : OutputFormat.fromName(readString(in));
+            int typeCount = in.readInt();
+            List<ClassInfo> types = new ArrayList<>(typeCount);
+            SymbolTable symbols = new SymbolTable();
+            for (int i = 0; i < typeCount; i++) {
+                types.add(readClassInfo(in).compact(symbols));
+            }
+            int diagramCount = in.readInt();
+            List<String> diagramNames = new ArrayList<>(diagramCount);
+            for (int i = 0; i < diagramCount; i++) {
+                diagramNames.add(readString(in));
+            }
+            return new ModelSnapshot(outputFormat, types, diagramNames);
+        } catch (IOException e) {
+            throw new OpenEhrExporterException("Unable to read " + file + '!', e);
+        }
+    }
+
+    private static void writeClassInfo(DataOutputStream out, ClassInfo classInfo) throws IOException {
+        writeString(out, classInfo.getMetaType());
+        writeString(out, classInfo.getClassTypeName());
+        writeString(out, classInfo.getDocumentation());
+        writeString(out, classInfo.getParentClassName());
+        writeString(out, classInfo.getIndexComponent());
+        writeString(out, classInfo.getIndexPackage());
+        writeString(out, classInfo.getIndexSubPackage());
+        out.writeBoolean(classInfo.isAbstractClass());
+        writeFeatures(out, classInfo.getAttributes());
+        writeFeatures(out, classInfo.getConstants());
+        writeFeatures(out, classInfo.getOperations());
+        out.writeInt(classInfo.getConstraints().size());
+        for (ConstraintInfo constraintInfo : classInfo.getConstraints()) {
+            writeString(out, constraintInfo.getDocumentation());
+        }
+    }
+
+    private static ClassInfo readClassInfo(DataInputStream in) throws IOException {
+        ClassInfo classInfo = new ClassInfo(readString(in))
+                .setClassTypeName(readString(in))
+                .setDocumentation(readString(in))
+                .setParentClassName(readString(in));
+        classInfo.setIndexComponent(readString(in));
+        classInfo.setIndexPackage(readString(in));
+        classInfo.setIndexSubPackage(readString(in));
+        classInfo.setAbstractClass(in.readBoolean());
+        readFeatures(in, classInfo.getAttributes());
+        readFeatures(in, classInfo.getConstants());
+        readFeatures(in, classInfo.getOperations());
+        int constraintCount = in.readInt();
+        for (int i = 0; i < constraintCount; i++) {
+            classInfo.getConstraints().add(new ConstraintInfo().setDocumentation(readString(in)));
+        }
+        return classInfo;
+    }
+
+    private static void writeFeatures(DataOutputStream out, List<ClassFeatureInfo> features) throws IOException {
+        out.writeInt(features.size());
+        for (ClassFeatureInfo feature : features) {
+            writeString(out, feature.getStatus());
+            writeString(out, feature.getSignature());
+            writeString(out, feature.getDocumentation());
+        }
+    }
+
+    private static void readFeatures(DataInputStream in, List<ClassFeatureInfo> features) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            features.add(new ClassFeatureInfo()
+                                 .setStatus(readString(in))
+                                 .setSignature(readString(in))
+                                 .setDocumentation(readString(in)));
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,19 @@
+package org.openehr.docs.magicdraw;
+
+import java.util.List;
+
+/**
+ * The exportable types of a UML model within the selected packages, read by MagicDraw
+ * ({@link MagicDrawModelSource}) or from an XMI file ({@link XmiModelSource}). Types are listed in model
+ * order, a nested type after the type owning it.
+ */
+public interface ModelSource {
+    /**
+     * @return UML classes, including state machines and other behaviours.
+     */
+    List<UmlClassifier> getClasses();
+
+    List<UmlClassifier> getInterfaces();
+
+    List<UmlClassifier> getEnumerations();
+}
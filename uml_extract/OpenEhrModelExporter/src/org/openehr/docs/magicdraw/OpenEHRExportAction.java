@@ -2,7 +2,11 @@ package org.openehr.docs.magicdraw;
 
 import com.nomagic.magicdraw.actions.MDAction;
 import com.nomagic.magicdraw.core.Application;
+import com.nomagic.magicdraw.core.Project;
+import com.nomagic.magicdraw.ui.ProgressStatusRunner;
 import com.nomagic.magicdraw.ui.dialogs.MDDialogParentProvider;
+import com.nomagic.task.ProgressStatus;
+import org.openehr.docs.magicdraw.exception.ExportCancelledException;
 
 import javax.annotation.CheckForNull;
 import javax.swing.*;
@@ -25,6 +29,7 @@ class OpenEHRExportAction extends MDAction {
     }
 
     /**
+     * Run the export as a background task with a progress dialog, from which it can be cancelled.
      * @see java.awt.event.ActionListener#actionPerformed(ActionEvent)
      */
     @SuppressWarnings("OverlyBroadCatchBlock")
@@ -32,21 +37,33 @@ class OpenEHRExportAction extends MDAction {
     public void actionPerformed(ActionEvent e) {
         File outputFolder = chooseFolder();
         if (outputFolder != null) {
-            try {
-                Set<String> rootPackageNames = new HashSet<>();
-                rootPackageNames.add("openehr");
-                OpenEHRProjectExporter exporter = new OpenEHRProjectExporter(3, rootPackageNames, null);
-                exporter.exportProject(outputFolder, Application.getInstance().getProject());
+            Set<String> rootPackageNames = new HashSet<>();
+            rootPackageNames.add("openehr");
+            OpenEHRProjectExporter exporter = new OpenEHRProjectExporter(3, rootPackageNames, null);
+            Project project = Application.getInstance().getProject();
 
+            Exception[] failure = new Exception[1];
+            ProgressStatusRunner.runWithProgressStatus(progressStatus -> {
+                try {
+                    exporter.exportProject(outputFolder, project, new ExportReport().setProgress(new ExportProgressStatus(progressStatus)));
+                } catch (Exception ex) {
+                    failure[0] = ex;
+                }
+            }, "Export to asciidoc", true, 0);
+
+            if (failure[0] instanceof ExportCancelledException) {
+                JOptionPane.showMessageDialog(MDDialogParentProvider.getProvider().getDialogParent(), "Export cancelled.", "Export",
+                                              JOptionPane.INFORMATION_MESSAGE);
+            } else if (failure[0] != null) {
+                JOptionPane.showMessageDialog(MDDialogParentProvider.getProvider().getDialogParent(), "Unable to export data: " + failure[0].getMessage());
+            } else {
                 JOptionPane.showMessageDialog(MDDialogParentProvider.getProvider().getDialogParent(), "Export complete.", "Export",
                                               JOptionPane.INFORMATION_MESSAGE);
-            } catch (Exception ex) {
-                JOptionPane.showMessageDialog(MDDialogParentProvider.getProvider().getDialogParent(), "Unable to export data: " + ex.getMessage());
             }
         }
     }
 
-    private File chooseFolder() {
+    static File chooseFolder() {
         JFileChooser chooser = new JFileChooser();
         chooser.setCurrentDirectory(null);
         chooser.setDialogTitle("Select Export Folder");
@@ -65,4 +82,41 @@ class OpenEHRExportAction extends MDAction {
 
         return chosen;
     }
-}
\ No newline at end of file
+
+    /**
+     * Shows the progress of an export in the MagicDraw progress dialog: the phase, then each diagram and
+     * type as it is written.
+     */
+    private static class ExportProgressStatus implements ExportProgress {
+        private final ProgressStatus progressStatus;
+
+        ExportProgressStatus(ProgressStatus progressStatus) {
+            this.progressStatus = progressStatus;
+        }
+
+        @Override
+        public synchronized void expect(int elementCount) {
+            progressStatus.setIndeterminate(false);
+            progressStatus.setMax(elementCount);
+            progressStatus.setCurrent(0);
+        }
+
+        @Override
+        public synchronized void phaseStarted(String phase) {
+            progressStatus.setDescription("Export: " + phase);
+        }
+
+        @Override
+        public synchronized void elementCompleted(ExportReport.ElementKind kind, String name) {
+            if (kind == ExportReport.ElementKind.EXPORT || kind == ExportReport.ElementKind.DIAGRAM) {
+                progressStatus.increase();
+                progressStatus.setDescription("Exported " + name);
+            }
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return progressStatus.isCancel();
+        }
+    }
+}
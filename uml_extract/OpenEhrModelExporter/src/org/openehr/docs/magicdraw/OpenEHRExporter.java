@@ -10,6 +10,8 @@ import com.nomagic.magicdraw.plugins.Plugin;
  * @author Bostjan Lah
  */
 public class OpenEHRExporter extends Plugin {
+    private final LiveExportAction liveExportAction = new LiveExportAction(null, "Live export to asciidoc");
+
     @Override
     public void init() {
         ActionsConfiguratorsManager manager = ActionsConfiguratorsManager.getInstance();
@@ -18,6 +20,7 @@ public class OpenEHRExporter extends Plugin {
 
     @Override
     public boolean close() {
+        liveExportAction.stop();
         return true;
     }
 
@@ -33,6 +36,7 @@ public class OpenEHRExporter extends Plugin {
     private NMAction getSeparatedActions() {
         ActionsCategory category = new ActionsCategory(null, null);
         category.addAction(new OpenEHRExportAction(null, "Export to asciidoc"));
+        category.addAction(liveExportAction);
         return category;
     }
 }
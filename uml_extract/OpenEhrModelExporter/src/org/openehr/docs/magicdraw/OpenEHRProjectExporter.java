@@ -3,18 +3,11 @@ package org.openehr.docs.magicdraw;
 import com.nomagic.magicdraw.core.Project;
 import com.nomagic.magicdraw.export.image.ImageExporter;
 import com.nomagic.magicdraw.uml.symbols.DiagramPresentationElement;
-import com.nomagic.uml2.ext.jmi.helpers.ModelHelper;
-import com.nomagic.uml2.ext.magicdraw.classes.mdinterfaces.Interface;
-import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Element;
-import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Enumeration;
-import com.nomagic.uml2.ext.magicdraw.classes.mdkernel.NamedElement;
+import org.openehr.docs.magicdraw.exception.ExportCancelledException;
 import org.openehr.docs.magicdraw.exception.OpenEhrExporterException;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.nio.charset.Charset;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -25,344 +18,361 @@ import java.util.stream.Collectors;
  * @author Bostjan Lah
  */
 public class OpenEHRProjectExporter {
-    private static final String ADOC_FILE_EXTENSION = ".adoc";
-
     private static final String DIAGRAMS_FOLDER = "diagrams";
-    private static final String CLASSES_FOLDER = "classes";
-    // component, release, html file, subref classname + type, description
-    private static final String INDEX_LINK_FORMAT = "[.xcode]\n* link:/releases/%s/%s/%s.html#_%s_%s[%s^]\n";
-
-    private final Formatter formatter = new AsciidocFormatter();
-    private final String headingPrefix;
-    private final Set<String> rootPackageNames;
 
+    private final PackageSelector packageSelector;
+    private final int headingLevel;
     private final String indexRelease;
 
+    private OutputFormat outputFormat;
+    private Formatter formatter;
+    private ClassRenderer renderer;
+
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    private boolean incremental;
+    private DiagramCache diagramCache;
+    private SvgOptimizer svgOptimizer;
+    private ExportShard shard;
+    private File snapshotFile;
+
+    /**
+     * @param headingLevel level of class headings.
+     * @param rootPackageNames patterns of the packages to export, see {@link PackageSelector}.
+     * @param indexRelease release the class index links to, or null for no index.
+     * @exception OpenEhrExporterException if a package pattern is invalid.
+     */
     public OpenEHRProjectExporter(int headingLevel, Set<String> rootPackageNames, String indexRelease) {
-        StringBuilder builder = new StringBuilder();
-        for (int i = 0; i < headingLevel; i++) {
-            builder.append('=');
-        }
-        headingPrefix = builder.toString();
-        this.rootPackageNames = rootPackageNames;
+        packageSelector = PackageSelector.compile(rootPackageNames);
+        this.headingLevel = headingLevel;
         this.indexRelease = indexRelease;
+        setOutputFormat(OutputFormat.ASCIIDOC);
     }
 
     /**
-     * Export a UML project as a set of files.
-     * @param outputFolder Directory in which to write the files.
-     * @param project MD descriptor for a project.
-     * @exception IOException on fail to write to file.
+     * Set the output format of the class tables.
+     * @param outputFormat output format, Asciidoctor by default.
+     * @return this exporter.
      */
-    public void exportProject(File outputFolder, Project project) throws Exception {
-        File classesFolder = new File(outputFolder, CLASSES_FOLDER);
-        if (!classesFolder.exists()) {
-            if (!classesFolder.mkdir()) {
-                throw new OpenEhrExporterException("Unable to create folder: " + classesFolder);
-            }
-        }
+    public OpenEHRProjectExporter setOutputFormat(OutputFormat outputFormat) {
+        this.outputFormat = outputFormat;
+        formatter = outputFormat.createFormatter();
+        renderer = outputFormat.createRenderer(formatter, headingLevel, indexRelease);
+        return this;
+    }
 
-        // Gather UML classes, enumerations and interfaces, run through a pipeline that does:
-        // * cast to an MD class object
-        // * retain only classes within the root package(s) specified on the command line
-        // * convert to ClassInfo objects (local representation used here)
-        // Then export each ClassInfo object as an output file
-        ClassInfoBuilder classInfoBuilder = new ClassInfoBuilder(formatter);
-        Collection<? extends Element> umlClasses = ModelHelper.getElementsOfType(project.getPrimaryModel(),
-                new Class[]{com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Class.class},
-                true);
-        List<ClassInfo> classes = umlClasses.stream()
-                .map(e -> (com.nomagic.uml2.ext.magicdraw.classes.mdkernel.Class)e)
-                .filter(c -> ! c.getName().contains("<"))// ignore classes with names simulating template type names
-                .filter(this::matchesRootPackages)
-                .map(classInfoBuilder::build)
-                .collect(Collectors.toList());
-        classes.forEach(cl -> exportClass(cl, classesFolder));
-
-        Collection<? extends Element> umlInterfaces = ModelHelper.getElementsOfType(project.getPrimaryModel(),
-                new Class[]{Interface.class},
-                true);
-        InterfaceInfoBuilder interfaceInfoBuilder = new InterfaceInfoBuilder(formatter);
-        List<ClassInfo> interfaces = umlInterfaces.stream()
-                .map(e -> (Interface)e)
-                .filter(c -> ! c.getName().contains("<"))// ignore classes with names simulating template type names
-                .filter(this::matchesRootPackages)
-                .map(interfaceInfoBuilder::build)
-                .collect(Collectors.toList());
-        interfaces.forEach(cl -> exportClass(cl, classesFolder));
-
-        Collection<? extends Element> umlEnumerations = ModelHelper.getElementsOfType(project.getPrimaryModel(),
-                new Class[]{Enumeration.class},
-                true);
-
-        EnumerationInfoBuilder enumerationInfoBuilder = new EnumerationInfoBuilder(formatter);
-        List<ClassInfo> enumerations = umlEnumerations.stream()
-                .map(e -> (Enumeration)e)
-                .filter(this::matchesRootPackages)
-                .map(enumerationInfoBuilder::build)
-                .collect(Collectors.toList());
-        enumerations.forEach(en -> exportClass(en, classesFolder));
-
-     //   Collection<? extends Element> umlStateMachines = ModelHelper.getElementsOfType(project.getPrimaryModel(),
-     //           new Class[]{StateMachine.class},
-     //           true);
-
-        // Generate the index file
-        if (indexRelease != null) {
-            generateIndex(outputFolder, classes, interfaces, enumerations);
-        }
+    /**
+     * Set the number of worker threads used to render and write class files.
+     * @param threadCount number of threads, at least 1.
+     * @return this exporter.
+     */
+    public OpenEHRProjectExporter setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+        return this;
+    }
 
-        // obtain and generate the diagrams
-        File diagramsFolder = new File(outputFolder, DIAGRAMS_FOLDER);
-        if (!diagramsFolder.exists()) {
-            if (!diagramsFolder.mkdir()) {
-                throw new OpenEhrExporterException("Unable to create folder: " + diagramsFolder);
-            }
-        }
+    /**
+     * Set incremental mode, in which only files whose content has changed since the previous export to the
+     * same folder are written, files no longer produced are removed, and types whose fingerprint is unchanged
+     * aren't built at all, see {@link ModelFingerprints}.
+     * @param incremental true for incremental export.
+     * @return this exporter.
+     */
+    public OpenEHRProjectExporter setIncremental(boolean incremental) {
+        this.incremental = incremental;
+        return this;
+    }
 
-        List<DiagramPresentationElement> diagrams = project.getDiagrams().stream()
-                .filter(this::diagMatchesRootPackages)
-                .collect(Collectors.toList());
-        diagrams.forEach(d -> exportDiagram(diagramsFolder, d));
+    /**
+     * Set the cache from which images of unchanged diagrams are restored instead of being exported again.
+     * @param diagramCache diagram cache, or null to always export diagrams.
+     * @return this exporter.
+     */
+    public OpenEHRProjectExporter setDiagramCache(DiagramCache diagramCache) {
+        this.diagramCache = diagramCache;
+        return this;
     }
 
-    private boolean matchesRootPackages(NamedElement namedElement) {
-        return rootPackageNames.stream().anyMatch (rn -> namedElement.getQualifiedName().contains(rn + "::"));
-     //   return rootPackageNames.stream().filter(rn -> namedElement.getQualifiedName().contains(rn)).findFirst().isPresent();
+    /**
+     * Set the optimiser the SVG images of the diagrams are passed through once all diagrams are exported.
+     * The diagram cache holds the images as exported, so restored images are optimised again.
+     * @param svgOptimizer SVG optimiser, or null to keep the images as exported.
+     * @return this exporter.
+     */
+    public OpenEHRProjectExporter setSvgOptimizer(SvgOptimizer svgOptimizer) {
+        this.svgOptimizer = svgOptimizer;
+        return this;
     }
 
-    private boolean diagMatchesRootPackages(DiagramPresentationElement diagElement) {
-        return rootPackageNames.stream().anyMatch (rn -> diagElement.getName().contains(rn + "-"));
+    /**
+     * Set the shard of the export, to only export the types and diagrams of that shard. A sharded export
+     * writes a {@link PartialIndex} in place of the class index, from which {@link IndexMerger} writes the
+     * class index once all shards have run; and names its manifest and report after the shard.
+     * @param shard shard to export, or null to export the whole model.
+     * @return this exporter.
+     */
+    public OpenEHRProjectExporter setShard(ExportShard shard) {
+        this.shard = shard;
+        return this;
     }
 
     /**
-     * Export a UML diagram in PNG and SVG format to the export folder.
-     * @param outputFolder target folder on file system.
-     * @param diagramPresentationElement UML diagram representation.
+     * Set the file to which a {@link ModelSnapshot} of the export is written, for rendering without MagicDraw.
+     * @param snapshotFile snapshot file, or null for none.
+     * @return this exporter.
      */
-    private void exportDiagram(File outputFolder, DiagramPresentationElement diagramPresentationElement) {
-        String name = diagramPresentationElement.getName();
-        try {
-            ImageExporter.export(diagramPresentationElement, 1, new File(outputFolder, formatDiagramName(name) + ".png"));
-            ImageExporter.export(diagramPresentationElement, 5, new File(outputFolder, formatDiagramName(name) + ".svg"));
-        } catch (IOException e) {
-            throw new OpenEhrExporterException("Unable to export diagrams for " + name + '!', e);
-        }
+    public OpenEHRProjectExporter setSnapshotFile(File snapshotFile) {
+        this.snapshotFile = snapshotFile;
+        return this;
     }
 
     /**
-     * Export a class as an Asciidoctor (.adoc) file to the output folder on the file system.
-     * @param targetFolder Directory in which to write the file.
-     * @param classInfo info object for the class.
+     * Export a UML project as a set of files.
+     * @param outputFolder Directory in which to write the files.
+     * @param project MD descriptor for a project.
      * @exception IOException on fail to write to file.
      */
-    private void exportClass(ClassInfo classInfo, File targetFolder) {
-        try (PrintWriter printWriter = new PrintWriter(Files.newBufferedWriter(
-                targetFolder.toPath().resolve(fileName(classInfo.getClassName().toLowerCase()) + ADOC_FILE_EXTENSION), Charset.forName("UTF-8")))) {
-            printWriter.println(headingPrefix + ' ' + classInfo.getClassTypeName() + ' ' + classInfo.getMetaType());
-            printWriter.println();
-
-            printWriter.println("[cols=\"^1,3,5\"]");
-            printWriter.println("|===");
-            printWriter.println("h|" + formatter.bold(classInfo.getMetaType()));
-            printWriter.println("2+^h|" +
-                                        (classInfo.isAbstractClass()
-                                                ? formatter.italicBold(classInfo.getClassTypeName() + " (abstract)")
-                                                : formatter.bold(classInfo.getClassTypeName())));
-            printWriter.println();
-
-            printWriter.println("h|" + formatter.bold("Description"));
-
-            printWriter.println("2+a|" + formatter.escapeColumnSeparator(formatter.normalizeLines(classInfo.getDocumentation())));
-            printWriter.println();
-
-            if (classInfo.getParentClassName() != null) {
-                printWriter.println("h|" + formatter.bold("Inherit"));
-                printWriter.println("2+|" + classInfo.getParentClassName());
-                printWriter.println();
-            }
-
-            if (!classInfo.getConstants().isEmpty()) {
-                printWriter.println("h|" + formatter.bold("Constants"));
-                printWriter.println("^h|" + formatter.bold("Signature"));
-                printWriter.println("^h|" + formatter.bold("Meaning"));
+    public void exportProject(File outputFolder, Project project) throws Exception {
+        exportProject(outputFolder, project, new ExportReport());
+    }
 
-                exportConstants(classInfo, printWriter);
-            }
+    /**
+     * Export a UML project as a set of files, and write the timings and counters of the export as a
+     * report to the output folder.
+     * @param outputFolder Directory in which to write the files.
+     * @param project MD descriptor for a project.
+     * @param report report to record the export in; may already hold earlier phases, such as the project load.
+     * @exception IOException on fail to write to file.
+     */
+    public void exportProject(File outputFolder, Project project, ExportReport report) throws Exception {
+        export(outputFolder, project, null, report);
+        report.write(outputFolder, shardFileName(ExportReport.REPORT_FILE_NAME));
+    }
 
-            if (!classInfo.getAttributes().isEmpty()) {
-                printWriter.println("h|" + formatter.bold("Attributes"));
-                printWriter.println("^h|" + formatter.bold("Signature"));
-                printWriter.println("^h|" + formatter.bold("Meaning"));
+    /**
+     * Export again the types and diagrams affected by changes to the project since an earlier export to the
+     * same output folder, always incrementally. The types not affected are taken from the fingerprints of the
+     * earlier export; the class files of types no longer in the model, deleted or renamed, are removed, and
+     * the index is generated again. The report is left as it is.
+     * @param outputFolder Directory of the earlier export.
+     * @param project MD descriptor for a project.
+     * @param changes changes since the earlier export.
+     * @param report report to record the export in; it isn't written to the output folder.
+     */
+    public void exportChanges(File outputFolder, Project project, ModelChangeSet changes, ExportReport report) {
+        export(outputFolder, project, changes, report);
+    }
 
-                exportAttributes(classInfo, printWriter);
+    /**
+     * @param changes changes since an earlier export, to export those only, or null for a full export.
+     */
+    private void export(File outputFolder, Project project, ModelChangeSet changes, ExportReport report) {
+        File classesFolder = createFolder(outputFolder, ClassRenderer.CLASSES_FOLDER);
+        File diagramsFolder = createFolder(outputFolder, DIAGRAMS_FOLDER);
+
+        ExportFileWriter fileWriter = new ExportFileWriter(outputFolder.toPath(), shardFileName(ExportFileWriter.MANIFEST_FILE_NAME),
+                                                           incremental || changes != null);
+        Path fingerprintFile = outputFolder.toPath().resolve(shardFileName(ModelFingerprints.FILE_NAME));
+        String fingerprintSettings = ModelFingerprints.settings(outputFormat, headingLevel);
+        ClassExport classExport;
+        List<DiagramPresentationElement> diagrams;
+        try (ExportExecutor workers = new ExportExecutor(threadCount)) {
+            // Gather UML classes, enumerations and interfaces within the root package(s) specified on the
+            // command line in a single traversal of the model, then run each through a pipeline that does:
+            // * convert to ClassInfo objects (local representation used here), on this thread
+            // * export each ClassInfo object as an output file, on the worker threads
+            // MagicDraw's model and ImageExporter aren't thread-safe: every call into them, the traversal,
+            // the builds, the fingerprints and the diagram export, is made on this thread, the one MagicDraw
+            // runs the export on (the task of ProgressStatusRunner, or the main thread of the command line).
+            // The workers only ever get built ClassInfo objects.
+            ModelElementCollector collector = new ModelElementCollector(packageSelector);
+            report.timePhase("traversal", () -> collector.collect(project.getPrimaryModel()));
+            Set<String> affectedTypes = changes != null ? changes.getAffectedTypes(collector) : null;
+
+            // obtain the diagrams in the selected packages, or those affected by the changes
+            diagrams = project.getDiagrams().stream()
+                    .filter(d -> collector.isInSelectedPackage(d.getDiagram()) && isInShard(d.getDiagram().getQualifiedName()))
+                    .filter(d -> changes == null || changes.affects(d, affectedTypes))
+                    .collect(Collectors.toList());
+            report.expect((changes != null
+                                   ? affectedTypes.size()
+                                   : collector.getClasses().size() + collector.getInterfaces().size() + collector.getEnumerations().size())
+                                  + diagrams.size());
+
+            // only a compact index entry is kept of each type, unless all of them are needed for a snapshot
+            boolean snapshot = snapshotFile != null && changes == null;
+            classExport = new ClassExport(renderer, classesFolder, fileWriter, workers, report, snapshot);
+            // types are only fingerprinted in incremental mode, in which unchanged ones are skipped; a snapshot
+            // needs all of them built
+            if (changes != null) {
+                classExport.setChanges(ModelFingerprints.read(fingerprintFile, fingerprintSettings), fingerprintSettings, affectedTypes);
+            } else if (incremental) {
+                classExport.setFingerprints(snapshot ? null : ModelFingerprints.read(fingerprintFile, fingerprintSettings), fingerprintSettings);
             }
+            classExport.export(new MagicDrawModelSource(collector), formatter, c -> isInShard(c.getQualifiedName()));
 
-            if (!classInfo.getOperations().isEmpty()) {
-                printWriter.println("h|" + formatter.bold("Functions"));
-                printWriter.println("^h|" + formatter.bold("Signature"));
-                printWriter.println("^h|" + formatter.bold("Meaning"));
-
-                exportFunctions(classInfo, printWriter);
+            // generate the diagrams on this thread while the workers write the remaining class files
+            exportDiagramsAndAwait(diagramsFolder, diagrams, workers, report);
+            if (svgOptimizer != null) {
+                report.timePhase("svgOptimize", () -> optimizeDiagrams(diagramsFolder, diagrams, workers, report));
             }
+            classExport.reportPhase();
+        }
+        if (incremental || changes != null) {
+            report.timePhase("fingerprints", () -> classExport.writeFingerprints(fingerprintFile));
+        }
 
-            if (!classInfo.getConstraints().isEmpty()) {
-                exportConstraints(classInfo, printWriter);
-            }
+        // Generate the index file, or the part of it of this shard
+        if (shard != null) {
+            report.timePhase("index", () -> fileWriter.write(outputFolder.toPath().resolve(PartialIndex.fileName(shard)),
+                                                             new PartialIndex(shard, indexRelease, classExport.getIndexEntries()).render()));
+        } else if (indexRelease != null) {
+            report.timePhase("index", () -> renderer.generateIndex(outputFolder, classExport.getIndexEntries(), fileWriter));
+        }
+        // in incremental mode, this removes the class files of the types no longer exported
+        report.timePhase("finish", fileWriter::finish);
 
-            printWriter.println("|===");
-        } catch (IOException e) {
-            throw new OpenEhrExporterException(e);
+        if (classExport.getRetainedTypes() != null) {
+            report.timePhase("snapshot", () -> new ModelSnapshot(outputFormat, classExport.getRetainedTypes(), diagrams.stream()
+                    .map(d -> formatDiagramName(d.getName()))
+                    .collect(Collectors.toList())).write(snapshotFile));
         }
+
+        report.finish(fileWriter);
     }
 
     /**
-     * Export all constraints in a class as text (invariants) in an Asciidoctor (.adoc) file.
-     * @param classInfo info object for the class.
-     * @param printWriter File outputter.
+     * Export UML diagrams on this thread, the one reading the model, while the workers render and write the
+     * class files handed over to them; then wait for the workers. The failures of the workers are reported
+     * first, with those of the diagrams suppressed.
+     * @param outputFolder target folder on file system.
+     * @param diagrams UML diagram representations.
+     * @param workers workers exporting the class files.
+     * @param report report to record the diagram export times in.
      */
-    private void exportConstraints(ClassInfo classInfo, PrintWriter printWriter) {
-        String title = formatter.bold("Invariants");
-        for (ConstraintInfo constraintInfo : classInfo.getConstraints()) {
-            printWriter.println();
-            printWriter.println("h|" + formatter.escapeColumnSeparator(title));
-
-            printWriter.println("2+a|" + formatter.escapeColumnSeparator(formatter.normalizeLines(constraintInfo.getDocumentation())));
-            title = "";
+    private void exportDiagramsAndAwait(File outputFolder, List<DiagramPresentationElement> diagrams, ExportExecutor workers,
+                                        ExportReport report) {
+        OpenEhrExporterException diagramFailure = null;
+        try {
+            report.timePhase("diagrams", () -> exportDiagrams(outputFolder, diagrams, report));
+        } catch (ExportCancelledException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            diagramFailure = ExportExecutor.addFailure(null, e);
         }
-    }
-    /**
-     * Generate an HTML file containing a clickable index of Class names that contain links to the location of
-     * the class within the relevant specification.
-     * @param targetFolder Directory in which to write the file.
-     * @param classes classes to include in index.
-     * @param interfaces interfaces to include in index.
-     * @param enumerations enumerations to include in index.
-     * @exception IOException on fail to write to file.
-     */
-    private void generateIndex(File targetFolder, List<ClassInfo> classes, List<ClassInfo> interfaces, List<ClassInfo> enumerations) {
-        List<ClassInfo> allTypes = new ArrayList<>(classes.size() + interfaces.size() + enumerations.size());
-        allTypes.addAll(classes);
-        allTypes.addAll(interfaces);
-        allTypes.addAll(enumerations);
-
-        Collections.sort(allTypes);
-
-        Path targetPath = targetFolder.toPath().resolve("class_index" + ADOC_FILE_EXTENSION);
-        try (PrintWriter printWriter = new PrintWriter(Files.newBufferedWriter(targetPath, Charset.forName("UTF-8")))) {
-            String indexComponent = "";
-            String indexPackage = "";
-            String indexSubPackage = "";
-
-            for (ClassInfo classInfo : allTypes) {
-                // The test for className > 2 is to avoid generic parameters like 'T', and
-                // occasionally 'TT' or similar.
-                if (classInfo.getClassName().length() > 2) {
-
-                    // if Component of class has changed since last iteration, output a new header line
-                    if (!indexComponent.equals(classInfo.getIndexComponent())) {
-                        printWriter.println();
-                        printWriter.println("== Component " + classInfo.getIndexComponent());
-                        indexComponent = classInfo.getIndexComponent();
-                    }
-
-                    // if Package of class has changed since last iteration, output a new header line
-                    if (!indexPackage.equals(classInfo.getIndexPackage())) {
-                        printWriter.println();
-                        printWriter.println("=== Model " + classInfo.getIndexPackage());
-                        indexPackage = classInfo.getIndexPackage();
-                    }
-
-                    // if Sub-package of class has changed since last iteration, output a new header line
-                    if (!indexSubPackage.equals(classInfo.getIndexSubPackage())) {
-                        printWriter.println();
-                        printWriter.println("==== Package " + classInfo.getIndexSubPackage());
-                        printWriter.println();
-                        indexSubPackage = classInfo.getIndexSubPackage();
-                    }
-
-                    // Output the class as a linked text line
-                    printWriter.printf(INDEX_LINK_FORMAT, indexComponent, indexRelease,
-                            classSpecMap.containsKey(indexSubPackage) ? classSpecMap.get(indexSubPackage) : indexSubPackage, // base link
-                            classInfo.getClassName().toLowerCase(), classInfo.getMetaType().toLowerCase(), // #href
-                            classInfo.getClassName()); // [descr]
-                }
+        try {
+            workers.awaitCompletion();
+        } catch (OpenEhrExporterException e) {
+            if (diagramFailure != null) {
+                e.addSuppressed(diagramFailure);
             }
-        } catch (IOException e) {
-            throw new OpenEhrExporterException("Unable to write to " + targetPath + '!', e);
+            throw e;
+        }
+        if (diagramFailure != null) {
+            throw diagramFailure;
         }
     }
 
-    /*
-     * Handle exceptions to regular relationship between package name and
-     * specification document name.
+    /**
+     * Export UML diagrams in PNG and SVG format to the export folder. A failure to export one diagram doesn't
+     * stop the export of the others; all failures are reported together at the end. Cancelling the export
+     * stops it before the next diagram.
+     * @param outputFolder target folder on file system.
+     * @param diagrams UML diagram representations.
+     * @param report report to record the diagram export times in.
      */
-    static Hashtable<String, String> classSpecMap = new Hashtable<String, String>();
-
-    static {
-        classSpecMap.put("composition", "ehr");
-        classSpecMap.put("aom2", "AOM2");
-        classSpecMap.put("aom2_profile", "AOM2");
-        classSpecMap.put("p_aom2", "AOM2");
+    private void exportDiagrams(File outputFolder, List<DiagramPresentationElement> diagrams, ExportReport report) {
+        OpenEhrExporterException failure = null;
+        for (DiagramPresentationElement diagram : diagrams) {
+            try {
+                report.timeElement(ExportReport.ElementKind.DIAGRAM, diagram.getName(), () -> exportDiagram(outputFolder, diagram));
+            } catch (ExportCancelledException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                failure = ExportExecutor.addFailure(failure, e);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
     }
 
     /**
-     * Export all methods in a class as text in an Asciidoctor (.adoc) file.
-     * @param classInfo info object for the class.
-     * @param printWriter File outputter.
+     * Optimise the SVG images of the exported diagrams, spread over the workers.
+     * @param outputFolder target folder on file system.
+     * @param diagrams UML diagram representations.
+     * @param workers workers, with no tasks outstanding.
+     * @param report report to record the optimisation times and the bytes saved in.
      */
-    private void exportFunctions(ClassInfo classInfo, PrintWriter printWriter) {
-        for (ClassFeatureInfo classFeatureInfo : classInfo.getOperations()) {
-            printWriter.println();
-            printWriter.println("h|" + classFeatureInfo.getStatus());
-
-            printWriter.println('|' + classFeatureInfo.getSignature());
-            printWriter.println("a|" + formatter.escapeColumnSeparator(formatter.normalizeLines(classFeatureInfo.getDocumentation())));
+    private void optimizeDiagrams(File outputFolder, List<DiagramPresentationElement> diagrams, ExportExecutor workers,
+                                  ExportReport report) {
+        // diagrams of the same name share their image files, which must only be optimised once
+        Set<String> fileNames = diagrams.stream()
+                .map(d -> formatDiagramName(d.getName()))
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        for (String fileName : fileNames) {
+            File svgFile = new File(outputFolder, fileName + SvgOptimizer.SVG_FILE_EXTENSION);
+            workers.submit(() -> report.timeElement(ExportReport.ElementKind.SVG_OPTIMIZE, fileName,
+                                                    () -> report.addSvgBytesSaved(svgOptimizer.optimize(svgFile.toPath()))));
         }
+        workers.awaitCompletion();
     }
 
     /**
-     * Export all attributes in a class as text in an Asciidoctor (.adoc) file.
-     * @param classInfo info object for the class.
-     * @param printWriter File outputter.
+     * Export a UML diagram in PNG and SVG format to the export folder. If a diagram cache is set and holds
+     * images for the current state of the diagram, these are used instead.
+     * @param outputFolder target folder on file system.
+     * @param diagramPresentationElement UML diagram representation.
      */
-    private void exportAttributes(ClassInfo classInfo, PrintWriter printWriter) {
-        for (ClassFeatureInfo classFeatureInfo : classInfo.getAttributes()) {
-            exportAttribute(printWriter, classFeatureInfo);
-        }
+    private void exportDiagram(File outputFolder, DiagramPresentationElement diagramPresentationElement) {
+        String name = diagramPresentationElement.getName();
+        File pngFile = new File(outputFolder, formatDiagramName(name) + ".png");
+        File svgFile = new File(outputFolder, formatDiagramName(name) + ".svg");
+        ExportEvents.diagramExported(name, new File[] {pngFile, svgFile},
+                                     () -> exportDiagram(diagramPresentationElement, pngFile, svgFile));
     }
 
     /**
-     * Export all constants in a class as text in an Asciidoctor (.adoc) file.
-     * @param classInfo info object for the class.
-     * @param printWriter File outputter.
+     * @return true if the images were restored from the diagram cache.
      */
-    private void exportConstants(ClassInfo classInfo, PrintWriter printWriter) {
-        for (ClassFeatureInfo classFeatureInfo : classInfo.getConstants()) {
-            exportAttribute(printWriter, classFeatureInfo);
+    private boolean exportDiagram(DiagramPresentationElement diagramPresentationElement, File pngFile, File svgFile) {
+        String fingerprint = null;
+        if (diagramCache != null) {
+            fingerprint = DiagramFingerprint.of(diagramPresentationElement);
+            if (diagramCache.restore(fingerprint, pngFile, svgFile)) {
+                return true;
+            }
+        }
+        try {
+            ImageExporter.export(diagramPresentationElement, 1, pngFile);
+            ImageExporter.export(diagramPresentationElement, 5, svgFile);
+        } catch (IOException e) {
+            throw new OpenEhrExporterException("Unable to export diagrams for " + diagramPresentationElement.getName() + '!', e);
+        }
+        if (diagramCache != null) {
+            diagramCache.store(fingerprint, pngFile, svgFile);
         }
+        return false;
     }
 
-    /**
-     * Export a single attribute in a class as text in an Asciidoctor (.adoc) file.
-     * @param classFeatureInfo info object for the attribute.
-     * @param printWriter File outputter.
-     */
-    private void exportAttribute(PrintWriter printWriter, ClassFeatureInfo classFeatureInfo) {
-        printWriter.println();
-        printWriter.println("h|" + formatter.bold(classFeatureInfo.getStatus()));
-        printWriter.println('|' + classFeatureInfo.getSignature());
-        printWriter.println("a|" + formatter.escapeColumnSeparator(formatter.normalizeLines(classFeatureInfo.getDocumentation())));
+    private boolean isInShard(String qualifiedName) {
+        return shard == null || shard.contains(qualifiedName);
+    }
+
+    private static File createFolder(File outputFolder, String name) {
+        File folder = new File(outputFolder, name);
+        if (!folder.exists()) {
+            if (!folder.mkdir()) {
+                throw new OpenEhrExporterException("Unable to create folder: " + folder);
+            }
+        }
+        return folder;
     }
 
     /**
-     * Convert a class name to a legal file name.
-     * @param className name of class.
-     * @return filename..
+     * @return the name of a file of which each shard writes its own.
      */
-    private String fileName(String className) {
-        String name = className.replaceAll("[^a-z0-9]", "_");
-        return name.replaceAll("^_+", "");
+    private String shardFileName(String fileName) {
+        return shard == null ? fileName : shard.fileName(fileName);
     }
 
     private static String formatDiagramName(String name) {
@@ -0,0 +1,75 @@
+package org.openehr.docs.magicdraw;
+
+import org.openehr.docs.magicdraw.exception.OpenEhrExporterException;
+
+/**
+ * Output format of the class tables. The info objects are built with the formatter of the format, and
+ * rendered with its renderer; both must be of the same format.
+ */
+public enum OutputFormat {
+    /**
+     * Asciidoctor tables, for all Asciidoctor backends.
+     */
+    ASCIIDOC("asciidoc") {
+        @Override
+        public Formatter createFormatter() {
+            return new AsciidocFormatter();
+        }
+
+        @Override
+        public ClassRenderer createRenderer(Formatter formatter, int headingLevel, String indexRelease) {
+            return new AsciidocRenderer(formatter, headingLevel, indexRelease);
+        }
+    },
+    /**
+     * HTML tables passed through by Asciidoctor, for the HTML backend only.
+     */
+    HTML("html") {
+        @Override
+        public Formatter createFormatter() {
+            return new HtmlFormatter();
+        }
+
+        @Override
+        public ClassRenderer createRenderer(Formatter formatter, int headingLevel, String indexRelease) {
+            return new HtmlRenderer(formatter, headingLevel, indexRelease);
+        }
+    };
+
+    private final String name;
+
+    OutputFormat(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return name of the format on the command line.
+     */
+    public String getName() {
+        return name;
+    }
+
+    public abstract Formatter createFormatter();
+
+    /**
+     * @param formatter formatter of this format, which the info objects were built with.
+     * @param headingLevel level of class headings.
+     * @param indexRelease release the class index links to.
+     * @return renderer.
+     */
+    public abstract ClassRenderer createRenderer(Formatter formatter, int headingLevel, String indexRelease);
+
+    /**
+     * @param name name of a format on the command line.
+     * @return format.
+     * @exception OpenEhrExporterException if there is no such format.
+     */
+    public static OutputFormat fromName(String name) {
+        for (OutputFormat format : values()) {
+            if (format.name.equals(name)) {
+                return format;
+            }
+        }
+        throw new OpenEhrExporterException("Unknown output format: " + name + " (expected asciidoc or html)!");
+    }
+}
@@ -0,0 +1,246 @@
+package org.openehr.docs.magicdraw;
+
+import org.openehr.docs.magicdraw.exception.OpenEhrExporterException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Selects the packages to export, from include and exclude patterns over '::' separated package paths
+ * (for example openehr::rm::composition). The patterns are compiled into a trie
+ * over the path segments, which is walked alongside the model's package tree, so that each package is
+ * matched by a single step from its parent's state, and excluded subtrees, as well as those no pattern
+ * can select, are skipped.
+ * <p>
+ * Pattern syntax:
+ * <ul>
+ *     <li>a segment is matched literally, or as a wildcard when it contains '*' (any characters) or '?'
+ *     (any single character);</li>
+ *     <li>a '**' segment matches any number of segments, including none;</li>
+ *     <li>a pattern matches at any depth of the model, as if it started with '**::', so that 'openehr'
+ *     matches an openehr package wherever the model has it, below a component package or not; a pattern
+ *     starting with '::' only matches from the model itself, e.g. '::openehr' only matches a top level
+ *     openehr package;</li>
+ *     <li>a pattern starting with '-' excludes the packages it matches, and all packages below them.</li>
+ * </ul>
+ * Segments are always matched whole: 'openehr' doesn't match a package named foo_openehr.
+ * A package matching a pattern is selected together with all packages below it, unless a deeper package
+ * matches an exclude pattern. A package matching an exclude pattern is left out with all packages below
+ * it, even those an include pattern matches, so its subtree is never visited. When both an include and an
+ * exclude pattern match the same package, the exclude wins.
+ */
+public class PackageSelector {
+    static final String SEPARATOR = "::";
+    private static final String EXCLUDE = "-";
+    private static final String ANY_SEGMENTS = "**";
+
+    private final Node root = new Node();
+    private final State rootState;
+
+    private PackageSelector(Collection<String> patterns) {
+        for (String pattern : patterns) {
+            add(pattern.trim());
+        }
+        root.markIncludes();
+        rootState = new State(closure(Collections.singleton(root)), false);
+    }
+
+    /**
+     * @param patterns include and exclude patterns.
+     * @return selector.
+     * @exception OpenEhrExporterException if a pattern is empty or has an empty segment.
+     */
+    public static PackageSelector compile(Collection<String> patterns) {
+        return new PackageSelector(patterns);
+    }
+
+    /**
+     * @return state of the model itself, from which the states of the top level packages are obtained.
+     */
+    public State getRootState() {
+        return rootState;
+    }
+
+    private void add(String pattern) {
+        boolean exclude = pattern.startsWith(EXCLUDE);
+        String path = exclude ? pattern.substring(EXCLUDE.length()) : pattern;
+        // unless anchored at the model, a pattern matches below any number of packages
+        boolean anchored = path.startsWith(SEPARATOR);
+        if (anchored) {
+            path = path.substring(SEPARATOR.length());
+        }
+        if (path.isEmpty()) {
+            throw new OpenEhrExporterException("Empty package pattern!");
+        }
+        Node node = anchored || path.startsWith(ANY_SEGMENTS + SEPARATOR) ? root : root.child(ANY_SEGMENTS);
+        for (String segment : path.split(SEPARATOR, -1)) {
+            if (segment.isEmpty()) {
+                throw new OpenEhrExporterException("Empty segment in package pattern " + pattern + '!');
+            }
+            node = node.child(segment);
+        }
+        if (exclude) {
+            node.exclude = true;
+        } else {
+            node.include = true;
+        }
+    }
+
+    /**
+     * Add the nodes reached by '**' matching no segment.
+     */
+    private static Set<Node> closure(Set<Node> nodes) {
+        Set<Node> closure = new LinkedHashSet<>(nodes);
+        List<Node> pending = new ArrayList<>(nodes);
+        while (!pending.isEmpty()) {
+            Node node = pending.remove(pending.size() - 1);
+            if (node.anySegments != null && closure.add(node.anySegments)) {
+                pending.add(node.anySegments);
+            }
+        }
+        return closure;
+    }
+
+    /**
+     * Position of the walk at a package: the trie nodes matching its path, and whether it is selected.
+     * Immutable.
+     */
+    public static final class State {
+        // an excluded package, below which nothing is selected
+        private static final State EXCLUDED = new State(Collections.emptySet(), false);
+
+        private final Set<Node> nodes;
+        private final boolean selected;
+
+        private State(Set<Node> nodes, boolean selected) {
+            this.nodes = nodes;
+            this.selected = selected;
+        }
+
+        /**
+         * @return true if the package is selected for export.
+         */
+        public boolean isSelected() {
+            return selected;
+        }
+
+        /**
+         * @return true if the package or any package below it may be selected; if false, its subtree
+         * needn't be visited.
+         */
+        public boolean canSelectBelow() {
+            if (selected) {
+                return true;
+            }
+            for (Node node : nodes) {
+                if (node.reachesInclude) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @param name name of a package directly below this one.
+         * @return state of that package.
+         */
+        public State child(String name) {
+            if (nodes.isEmpty()) {
+                // no pattern reaches further down, the selection is inherited as is
+                return this;
+            }
+            Set<Node> next = new LinkedHashSet<>();
+            for (Node node : nodes) {
+                node.step(name, next);
+            }
+            next = closure(next);
+            boolean include = false;
+            boolean exclude = false;
+            for (Node node : next) {
+                include |= node.include;
+                exclude |= node.exclude;
+            }
+            if (exclude) {
+                return EXCLUDED;
+            }
+            return new State(next.isEmpty() ? Collections.emptySet() : next, include || selected);
+        }
+    }
+
+    private static final class Node {
+        private final Map<String, Node> literals = new LinkedHashMap<>();
+        private final Map<String, Node> wildcards = new LinkedHashMap<>();
+        private final Map<String, Pattern> wildcardPatterns = new LinkedHashMap<>();
+        private Node anySegments;
+        // this node matches itself for any further segment; set on '**' nodes
+        private boolean repeats;
+        private boolean include;
+        private boolean exclude;
+        // this node or one below it is the end of an include pattern
+        private boolean reachesInclude;
+
+        Node child(String segment) {
+            if (ANY_SEGMENTS.equals(segment)) {
+                if (anySegments == null) {
+                    anySegments = new Node();
+                    anySegments.repeats = true;
+                }
+                return anySegments;
+            }
+            if (segment.indexOf('*') >= 0 || segment.indexOf('?') >= 0) {
+                wildcardPatterns.computeIfAbsent(segment, Node::toRegex);
+                return wildcards.computeIfAbsent(segment, s -> new Node());
+            }
+            return literals.computeIfAbsent(segment, s -> new Node());
+        }
+
+        boolean markIncludes() {
+            reachesInclude = include;
+            for (Node child : literals.values()) {
+                reachesInclude |= child.markIncludes();
+            }
+            for (Node child : wildcards.values()) {
+                reachesInclude |= child.markIncludes();
+            }
+            if (anySegments != null) {
+                reachesInclude |= anySegments.markIncludes();
+            }
+            return reachesInclude;
+        }
+
+        void step(String name, Set<Node> next) {
+            Node literal = literals.get(name);
+            if (literal != null) {
+                next.add(literal);
+            }
+            for (Map.Entry<String, Node> wildcard : wildcards.entrySet()) {
+                if (wildcardPatterns.get(wildcard.getKey()).matcher(name).matches()) {
+                    next.add(wildcard.getValue());
+                }
+            }
+            if (repeats) {
+                next.add(this);
+            }
+        }
+
+        private static Pattern toRegex(String segment) {
+            StringBuilder regex = new StringBuilder();
+            int start = 0;
+            for (int i = 0; i < segment.length(); i++) {
+                char c = segment.charAt(i);
+                if (c == '*' || c == '?') {
+                    regex.append(Pattern.quote(segment.substring(start, i))).append(c == '*' ? ".*" : ".");
+                    start = i + 1;
+                }
+            }
+            return Pattern.compile(regex.append(Pattern.quote(segment.substring(start))).toString());
+        }
+    }
+}
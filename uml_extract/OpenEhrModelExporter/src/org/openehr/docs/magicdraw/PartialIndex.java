@@ -0,0 +1,184 @@
+package org.openehr.docs.magicdraw;
+
+import org.openehr.docs.magicdraw.exception.OpenEhrExporterException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The index entries of the types exported by one shard of an export, from which {@link IndexMerger} renders
+ * the class index of the whole export once all shards have run. Each shard writes its own file, named after
+ * the shard, as in class_index-2-of-4.part.
+ * <p>
+ * File layout (UTF-8 text): a header line with a magic string, the format version, the shard and, if
+ * given to the export, the index release; then one line per entry, in any order. The fields of a line are
+ * separated by tabs; tabs, line breaks and backslashes within a field are escaped with a backslash.
+ */
+public class PartialIndex {
+    static final String FILE_NAME = "class_index.part";
+
+    private static final String MAGIC = "openehr-partial-class-index";
+    // increment on any change to the file layout
+    private static final int FORMAT_VERSION = 1;
+    private static final String SEPARATOR = "\t";
+    private static final int ENTRY_FIELDS = 6;
+
+    private final ExportShard shard;
+    private final String indexRelease;
+    private final List<IndexEntry> entries;
+
+    /**
+     * @param shard shard that exported the types.
+     * @param indexRelease release the class index links to, or null if only given when merging.
+     * @param entries index entries of the types exported by the shard.
+     */
+    public PartialIndex(ExportShard shard, String indexRelease, Collection<IndexEntry> entries) {
+        this.shard = shard;
+        this.indexRelease = indexRelease;
+        this.entries = Collections.unmodifiableList(new ArrayList<>(entries));
+    }
+
+    public ExportShard getShard() {
+        return shard;
+    }
+
+    public String getIndexRelease() {
+        return indexRelease;
+    }
+
+    public List<IndexEntry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * @param shard shard of an export.
+     * @return name of the partial index file of the shard.
+     */
+    static String fileName(ExportShard shard) {
+        return shard.fileName(FILE_NAME);
+    }
+
+    /**
+     * @return content of the partial index file.
+     */
+    public String render() {
+        StringBuilder content = new StringBuilder(64 + entries.size() * 96);
+        content.append(MAGIC).append(SEPARATOR).append(FORMAT_VERSION).append(SEPARATOR).append(shard);
+        if (indexRelease != null) {
+            content.append(SEPARATOR).append(escape(indexRelease));
+        }
+        content.append('\n');
+        for (IndexEntry entry : entries) {
+            String[] fields = {entry.getComponent(), entry.getPackageName(), entry.getSubPackage(),
+                               entry.getClassTypeName(), entry.getClassName(), entry.getMetaType()};
+            for (int i = 0; i < fields.length; i++) {
+                content.append(i > 0 ? SEPARATOR : "").append(escape(fields[i]));
+            }
+            content.append('\n');
+        }
+        return content.toString();
+    }
+
+    /**
+     * Read a partial index file.
+     * @param file partial index file.
+     * @return partial index.
+     * @exception OpenEhrExporterException on fail to read the file, or if it isn't a partial index of this version.
+     */
+    public static PartialIndex read(Path file) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new OpenEhrExporterException("Unable to read " + file + '!', e);
+        }
+        String[] header = lines.isEmpty() ? new String[0] : lines.get(0).split(SEPARATOR, -1);
+        if (header.length < 3 || !MAGIC.equals(header[0])) {
+            throw new OpenEhrExporterException(file + " is not a partial class index!");
+        }
+        if (!String.valueOf(FORMAT_VERSION).equals(header[1])) {
+            throw new OpenEhrExporterException("Unsupported partial class index version " + header[1] + " in " + file + '!');
+        }
+        ExportShard shard = ExportShard.parse(header[2]);
+        String indexRelease = header.length > 3 ? unescape(header[3]) : null;
+        List<IndexEntry> entries = new ArrayList<>(lines.size());
+        for (int i = 1; i < lines.size(); i++) {
+            if (lines.get(i).isEmpty()) {
+                continue;
+            }
+            String[] fields = lines.get(i).split(SEPARATOR, -1);
+            if (fields.length != ENTRY_FIELDS) {
+                throw new OpenEhrExporterException("Invalid entry on line " + (i + 1) + " of " + file + '!');
+            }
+            entries.add(new IndexEntry(unescape(fields[0]), unescape(fields[1]), unescape(fields[2]),
+                                       unescape(fields[3]), unescape(fields[4]), unescape(fields[5])));
+        }
+        return new PartialIndex(shard, indexRelease, entries);
+    }
+
+    /**
+     * Combine the partial indexes of all shards of an export.
+     * @param parts partial indexes, one of each shard.
+     * @return the index entries of all shards.
+     * @exception OpenEhrExporterException if the shards aren't those of a single export, or some are missing.
+     */
+    public static List<IndexEntry> merge(Collection<PartialIndex> parts) {
+        if (parts.isEmpty()) {
+            throw new OpenEhrExporterException("No partial class indexes to merge!");
+        }
+        int count = parts.iterator().next().shard.getCount();
+        Map<Integer, PartialIndex> byShard = new TreeMap<>();
+        List<IndexEntry> entries = new ArrayList<>();
+        for (PartialIndex part : parts) {
+            if (part.shard.getCount() != count) {
+                throw new OpenEhrExporterException("Partial class indexes of " + count + " and " + part.shard.getCount() + " shards can't be merged!");
+            }
+            if (byShard.put(part.shard.getIndex(), part) != null) {
+                throw new OpenEhrExporterException("More than one partial class index of shard " + part.shard + '!');
+            }
+            entries.addAll(part.entries);
+        }
+        List<String> missing = new ArrayList<>();
+        for (int index = 1; index <= count; index++) {
+            if (!byShard.containsKey(index)) {
+                missing.add(index + "/" + count);
+            }
+        }
+        if (!missing.isEmpty()) {
+            throw new OpenEhrExporterException("Missing partial class index of shard(s) " + String.join(", ", missing) + '!');
+        }
+        return entries;
+    }
+
+    static String escape(String value) {
+        if (value.indexOf('\\') < 0 && value.indexOf('\t') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    static String unescape(String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder builder = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char escaped = value.charAt(++i);
+                builder.append(escaped == 't' ? '\t' : escaped == 'n' ? '\n' : escaped == 'r' ? '\r' : escaped);
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,79 @@
+package org.openehr.docs.magicdraw;
+
+import org.openehr.docs.magicdraw.exception.OpenEhrExporterException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches a project file for changes, using the NIO watch service on its folder.
+ * <p>
+ * Saving a project usually produces several file system events in quick succession (e.g. a temporary file
+ * renamed over the project file, then further writes), so a change is only reported once the file has
+ * been quiet for a short settle period.
+ */
+public class ProjectFileWatcher implements AutoCloseable {
+    private static final long SETTLE_MILLIS = 1000;
+
+    private final Path projectFile;
+    private final WatchService watchService;
+
+    /**
+     * @param projectFile project file to watch.
+     * @exception OpenEhrExporterException if the watch service can't be started.
+     */
+    public ProjectFileWatcher(File projectFile) {
+        this.projectFile = projectFile.toPath().toAbsolutePath();
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            this.projectFile.getParent().register(watchService,
+                                                  StandardWatchEventKinds.ENTRY_CREATE,
+                                                  StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            throw new OpenEhrExporterException("Unable to watch " + projectFile + '!', e);
+        }
+    }
+
+    /**
+     * Block until the project file has changed and settled.
+     * @exception InterruptedException if interrupted while waiting.
+     */
+    public void awaitChange() throws InterruptedException {
+        boolean changed = false;
+        while (true) {
+            WatchKey key = changed
+                    ? watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)
+                    : watchService.take();
+            if (key == null) {
+                // nothing further happened within the settle period
+                return;
+            }
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                        || projectFile.getFileName().equals(event.context())) {
+                    changed = true;
+                }
+            }
+            if (!key.reset()) {
+                throw new OpenEhrExporterException("Folder of " + projectFile + " is no longer accessible!");
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException | ClosedWatchServiceException ignored) {
+            // closing anyway
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package org.openehr.docs.magicdraw;
+
+import org.openehr.docs.magicdraw.exception.OpenEhrExporterException;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.stream.Collectors;
+
+/**
+ * Plain Java entry point that renders the classes folder and class index from a {@link ModelSnapshot},
+ * written by an earlier export with --snapshot, in the output format of that export. Doesn't need MagicDraw on the classpath.
+ */
+@SuppressWarnings("UseOfSystemOutOrSystemErr")
+public class SnapshotRenderer {
+    private int headingLevel;
+    private String indexRelease;
+    private int threadCount;
+    private boolean incremental;
+    private File snapshotFile;
+    private File outFolder;
+    private boolean helpOnly;
+
+    public static void main(String[] args) {
+        try {
+            SnapshotRenderer renderer = new SnapshotRenderer();
+            renderer.parseArgs(args);
+            if (!renderer.helpOnly) {
+                renderer.render();
+            }
+        } catch (OpenEhrExporterException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Render the class files, and the class index if an index release is set, from the snapshot.
+     */
+    void render() {
+        ModelSnapshot snapshot = ModelSnapshot.read(snapshotFile);
+        // rendered in the format the types were built for
+        OutputFormat outputFormat = snapshot.getOutputFormat();
+        ClassRenderer renderer = outputFormat.createRenderer(outputFormat.createFormatter(), headingLevel, indexRelease);
+
+        File classesFolder = new File(outFolder, ClassRenderer.CLASSES_FOLDER);
+        if (!classesFolder.exists()) {
+            if (!classesFolder.mkdir()) {
+                throw new OpenEhrExporterException("Unable to create folder: " + classesFolder);
+            }
+        }
+
+        ExportFileWriter fileWriter = new ExportFileWriter(outFolder.toPath(), incremental);
+        try (ExportExecutor workers = new ExportExecutor(threadCount)) {
+            for (ClassInfo classInfo : snapshot.getTypes()) {
+                workers.submit(() -> renderer.exportClass(classInfo, classesFolder, fileWriter));
+            }
+            workers.awaitCompletion();
+        }
+        if (indexRelease != null) {
+            renderer.generateIndex(outFolder, snapshot.getTypes().stream()
+                    .map(IndexEntry::of)
+                    .collect(Collectors.toList()), fileWriter);
+        }
+        fileWriter.finish();
+    }
+
+    @SuppressWarnings({"OverlyComplexMethod", "SwitchStatementDensity"})
+    void parseArgs(String[] cmdLineArgs) {
+        for (Iterator<String> iterator = Arrays.asList(cmdLineArgs).iterator(); iterator.hasNext(); ) {
+            String arg = iterator.next();
+            switch (arg) {
+                case "-l":
+                    headingLevel = getIntParameterValue(iterator, "-l");
+                    break;
+                case "-o":
+                    String outputFolder = getParameterValue(iterator, "-o");
+                    Path outputPath = Paths.get(outputFolder);
+                    if (!Files.isDirectory(outputPath)) {
+                        throw new OpenEhrExporterException("Output folder " + outputFolder + " doesn't exist!");
+                    }
+                    outFolder = outputPath.toFile();
+                    break;
+                case "-i":
+                    indexRelease = getParameterValue(iterator, "-i");
+                    break;
+                case "-j":
+                    threadCount = getIntParameterValue(iterator, "-j");
+                    if (threadCount <= 0) {
+                        throw new OpenEhrExporterException("Invalid argument for -j: " + threadCount + " (expected at least 1)!");
+                    }
+                    break;
+                case "--incremental":
+                    incremental = true;
+                    break;
+                case "-?":
+                case "-h":
+                    System.out.println("Usage: snapshot_render [-o output_folder] [-l heading_level] [-i index_release] [-j threads] [--incremental] <snapshot file>");
+                    System.out.println("       -o: output folder (default = current folder)");
+                    System.out.println("       -l: class headings level (default = 3)");
+                    System.out.println("       -i: generate an index against a specific release, for example Release-1.0.3");
+                    System.out.println("       -j: number of threads rendering and writing files (default = number of processors)");
+                    System.out.println("       --incremental: only write files that changed since the last export to the output folder,");
+                    System.out.println("                      and remove files of types no longer in the model");
+                    helpOnly = true;
+                    break;
+                default:
+                    Path snapshotPath = Paths.get(arg);
+                    if (!Files.isReadable(snapshotPath)) {
+                        throw new OpenEhrExporterException("Snapshot file " + arg + " doesn't exist!");
+                    }
+                    snapshotFile = snapshotPath.toFile();
+            }
+        }
+        if (!helpOnly) {
+            if (snapshotFile == null) {
+                throw new OpenEhrExporterException("No snapshot file specified!");
+            }
+            if (headingLevel <= 0) {
+                headingLevel = 3;
+            }
+            if (threadCount <= 0) {
+                threadCount = Runtime.getRuntime().availableProcessors();
+            }
+            if (outFolder == null) {
+                outFolder = new File(".");
+            }
+        }
+    }
+
+    private static int getIntParameterValue(Iterator<String> iterator, String param) {
+        String value = getParameterValue(iterator, param);
+        try {
+            return Integer.valueOf(value);
+        } catch (NumberFormatException ignored) {
+            throw new OpenEhrExporterException("Invalid argument for " + param + ": " + value + " (expected numeric)!");
+        }
+    }
+
+    private static String getParameterValue(Iterator<String> iterator, String param) {
+        if (iterator.hasNext()) {
+            return iterator.next();
+        } else {
+            throw new OpenEhrExporterException("Missing parameter for " + param + '!');
+        }
+    }
+}
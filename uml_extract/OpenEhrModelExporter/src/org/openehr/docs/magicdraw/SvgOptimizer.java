@@ -0,0 +1,556 @@
+package org.openehr.docs.magicdraw;
+
+import org.openehr.docs.magicdraw.exception.OpenEhrExporterException;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rewrites exported SVG diagrams to a smaller equivalent. Each file is streamed through StAX, so memory use
+ * doesn't depend on the size of a diagram, and the DTD is never loaded, so no network access is needed.
+ * <ul>
+ * <li>style attributes are replaced by classes, with one rule per distinct style in a stylesheet at the end
+ * of the document;</li>
+ * <li>coordinates, lengths and transforms are rounded to a fixed number of decimals;</li>
+ * <li>metadata elements, elements and attributes of editor namespaces, comments, the DTD and whitespace
+ * between elements are dropped; whitespace within text is kept;</li>
+ * <li>elements without content are written as empty element tags.</li>
+ * </ul>
+ * Optimising a file again leaves it unchanged. Instances are stateless and may be used from several threads
+ * at once.
+ * <p>
+ * Also a plain Java entry point that optimises the SVG files of a diagrams folder, without MagicDraw.
+ */
+@SuppressWarnings("UseOfSystemOutOrSystemErr")
+public class SvgOptimizer {
+    public static final int DEFAULT_PRECISION = 2;
+    static final String SVG_FILE_EXTENSION = ".svg";
+
+    private static final String SVG_NAMESPACE = "http://www.w3.org/2000/svg";
+    private static final String XLINK_NAMESPACE = "http://www.w3.org/1999/xlink";
+    private static final Set<String> KEPT_NAMESPACES = new HashSet<>(Arrays.asList(
+            "", SVG_NAMESPACE, XLINK_NAMESPACE, XMLConstants.XML_NS_URI));
+    private static final Set<String> DROPPED_ELEMENTS = new HashSet<>(Arrays.asList("metadata"));
+    // elements whose whitespace is part of their content
+    private static final Set<String> TEXT_ELEMENTS = new HashSet<>(Arrays.asList(
+            "text", "tspan", "textPath", "title", "desc", "style", "script"));
+    private static final Set<String> COORDINATE_ATTRIBUTES = new HashSet<>(Arrays.asList(
+            "x", "y", "x1", "y1", "x2", "y2", "cx", "cy", "r", "rx", "ry", "dx", "dy", "width", "height",
+            "points", "d", "viewBox", "font-size", "stroke-width", "stroke-dasharray", "stroke-dashoffset"));
+    // transforms get more decimals, as their scale factors are multiplied with the coordinates
+    private static final Set<String> TRANSFORM_ATTRIBUTES = new HashSet<>(Arrays.asList(
+            "transform", "gradientTransform", "patternTransform"));
+    private static final Set<String> LENGTH_PROPERTIES = new HashSet<>(Arrays.asList(
+            "font-size", "stroke-width", "stroke-dasharray", "stroke-dashoffset"));
+    private static final int TRANSFORM_EXTRA_PRECISION = 2;
+    private static final Pattern NUMBER = Pattern.compile("[-+]?(?:[0-9]+(?:\\.[0-9]*)?|\\.[0-9]+)(?:[eE][-+]?[0-9]+)?");
+    private static final String STYLE_CLASS_PREFIX = "s";
+
+    private final int precision;
+
+    public SvgOptimizer() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * @param precision number of decimals coordinates are rounded to.
+     */
+    public SvgOptimizer(int precision) {
+        if (precision < 0) {
+            throw new IllegalArgumentException("Invalid precision: " + precision);
+        }
+        this.precision = precision;
+    }
+
+    /**
+     * Optimise an SVG file in place. The file is only replaced if the result is smaller.
+     * @param svgFile SVG file.
+     * @return number of bytes saved.
+     * @exception OpenEhrExporterException if the file can't be read, parsed or written; it is left unchanged.
+     */
+    public long optimize(Path svgFile) {
+        Path tempFile = svgFile.resolveSibling(svgFile.getFileName() + ".tmp");
+        try {
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(svgFile));
+                 OutputStream out = new BufferedOutputStream(Files.newOutputStream(tempFile))) {
+                optimize(in, out);
+            }
+            long saved = Files.size(svgFile) - Files.size(tempFile);
+            if (saved > 0) {
+                Files.move(tempFile, svgFile, StandardCopyOption.REPLACE_EXISTING);
+                return saved;
+            }
+            Files.delete(tempFile);
+            return 0;
+        } catch (IOException | XMLStreamException e) {
+            try {
+                Files.deleteIfExists(tempFile);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw new OpenEhrExporterException("Unable to optimise " + svgFile + '!', e);
+        }
+    }
+
+    /**
+     * Optimise an SVG document.
+     * @param in SVG document.
+     * @param out stream to write the optimised document to, UTF-8 encoded.
+     * @exception XMLStreamException if the document isn't well-formed.
+     */
+    public void optimize(InputStream in, OutputStream out) throws XMLStreamException {
+        XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+        // never resolve the DTD or external entities, which would need network access
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        inputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        XMLStreamReader reader = inputFactory.createXMLStreamReader(in);
+        XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+        try {
+            new DocumentOptimizer(reader, writer).run();
+            writer.flush();
+        } finally {
+            writer.close();
+            reader.close();
+        }
+    }
+
+    /**
+     * Round the numbers in an attribute value, such as path data or a list of points.
+     * @param value attribute value.
+     * @param precision number of decimals.
+     * @return value with rounded numbers.
+     */
+    static String round(String value, int precision) {
+        Matcher matcher = NUMBER.matcher(value);
+        if (!matcher.find()) {
+            return value;
+        }
+        StringBuilder builder = new StringBuilder(value.length());
+        int from = 0;
+        do {
+            String rounded = roundNumber(matcher.group(), precision);
+            if (matcher.start() == from && from > 0 && rounded.charAt(0) != '-') {
+                // numbers may follow each other without a separator, as in 1.5.5 or 1.5-2, which rounding could merge
+                builder.append(' ');
+            }
+            builder.append(value, from, matcher.start()).append(rounded);
+            from = matcher.end();
+        } while (matcher.find());
+        return builder.append(value, from, value.length()).toString();
+    }
+
+    private static String roundNumber(String number, int precision) {
+        int dot = number.indexOf('.');
+        boolean exponent = number.indexOf('e') >= 0 || number.indexOf('E') >= 0;
+        if (!exponent && (dot < 0 || number.length() - dot - 1 <= precision)) {
+            return number;
+        }
+        BigDecimal rounded = new BigDecimal(number).setScale(precision, RoundingMode.HALF_UP);
+        return rounded.signum() == 0 ? "0" : rounded.stripTrailingZeros().toPlainString();
+    }
+
+    /**
+     * Normalise the declarations of a style attribute, rounding lengths.
+     * @return declarations separated by ';', without whitespace around them; empty if there are none.
+     */
+    String normalizeStyle(String style) {
+        StringBuilder builder = new StringBuilder(style.length());
+        for (String declaration : splitDeclarations(style)) {
+            int colon = declaration.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            String property = declaration.substring(0, colon).trim();
+            String value = declaration.substring(colon + 1).trim();
+            if (property.isEmpty() || value.isEmpty()) {
+                continue;
+            }
+            if (LENGTH_PROPERTIES.contains(property)) {
+                value = round(value, precision);
+            }
+            if (builder.length() > 0) {
+                builder.append(';');
+            }
+            builder.append(property).append(':').append(value);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Split a style at the semicolons that aren't within quotes or parentheses, as in url(data:...;base64,...).
+     */
+    private static List<String> splitDeclarations(String style) {
+        List<String> declarations = new ArrayList<>();
+        int from = 0;
+        int parentheses = 0;
+        char quote = 0;
+        for (int i = 0; i < style.length(); i++) {
+            char c = style.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '(') {
+                parentheses++;
+            } else if (c == ')') {
+                parentheses = Math.max(0, parentheses - 1);
+            } else if (c == ';' && parentheses == 0) {
+                declarations.add(style.substring(from, i));
+                from = i + 1;
+            }
+        }
+        declarations.add(style.substring(from));
+        return declarations;
+    }
+
+    /**
+     * Optimises a single document. Holds at most one start element back, to see whether it has content,
+     * and the distinct styles of the document.
+     */
+    private final class DocumentOptimizer {
+        private final XMLStreamReader reader;
+        private final XMLStreamWriter writer;
+        // class names by normalized style, in order of first use
+        private final Map<String, String> styleClasses = new LinkedHashMap<>();
+        private StartElement pending;
+        private int depth;
+        private int skipDepth;
+        private int textDepth;
+        private String rootPrefix;
+        private String rootNamespace;
+
+        DocumentOptimizer(XMLStreamReader reader, XMLStreamWriter writer) {
+            this.reader = reader;
+            this.writer = writer;
+        }
+
+        void run() throws XMLStreamException {
+            writer.writeStartDocument("UTF-8", "1.0");
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (skipDepth > 0) {
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        skipDepth++;
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        skipDepth--;
+                    }
+                    continue;
+                }
+                switch (event) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        startElement();
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        endElement();
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        characters();
+                        break;
+                    case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                        // a stylesheet applies to the drawing; other instructions are for editors
+                        if ("xml-stylesheet".equals(reader.getPITarget())) {
+                            flushPending();
+                            writer.writeProcessingInstruction(reader.getPITarget(), reader.getPIData());
+                        }
+                        break;
+                    case XMLStreamConstants.END_DOCUMENT:
+                        writer.writeEndDocument();
+                        break;
+                    default:
+                        // comments, the DTD and entity references are dropped
+                }
+            }
+        }
+
+        private void startElement() throws XMLStreamException {
+            String namespace = nullToEmpty(reader.getNamespaceURI());
+            String localName = reader.getLocalName();
+            if (!KEPT_NAMESPACES.contains(namespace) || DROPPED_ELEMENTS.contains(localName)) {
+                skipDepth = 1;
+                return;
+            }
+            flushPending();
+            depth++;
+            if (depth == 1) {
+                rootPrefix = nullToEmpty(reader.getPrefix());
+                rootNamespace = namespace;
+            }
+            StartElement element = new StartElement(nullToEmpty(reader.getPrefix()), localName, namespace);
+            for (int i = 0; i < reader.getNamespaceCount(); i++) {
+                String uri = nullToEmpty(reader.getNamespaceURI(i));
+                if (KEPT_NAMESPACES.contains(uri)) {
+                    element.namespaces.add(new String[] {nullToEmpty(reader.getNamespacePrefix(i)), uri});
+                }
+            }
+            boolean preserveSpace = false;
+            String style = null;
+            int classIndex = -1;
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                String attributeNamespace = nullToEmpty(reader.getAttributeNamespace(i));
+                if (!KEPT_NAMESPACES.contains(attributeNamespace)) {
+                    continue;
+                }
+                String name = reader.getAttributeLocalName(i);
+                String value = reader.getAttributeValue(i);
+                if (attributeNamespace.isEmpty()) {
+                    if ("style".equals(name)) {
+                        style = value;
+                        continue;
+                    }
+                    if ("class".equals(name)) {
+                        classIndex = element.attributes.size();
+                    } else if (COORDINATE_ATTRIBUTES.contains(name)) {
+                        value = round(value, precision);
+                    } else if (TRANSFORM_ATTRIBUTES.contains(name)) {
+                        value = round(value, precision + TRANSFORM_EXTRA_PRECISION);
+                    }
+                } else if (XMLConstants.XML_NS_URI.equals(attributeNamespace) && "space".equals(name)) {
+                    preserveSpace = "preserve".equals(value);
+                }
+                element.attributes.add(new String[] {nullToEmpty(reader.getAttributePrefix(i)), attributeNamespace, name, value});
+            }
+            if (style != null) {
+                String styleClass = styleClass(style);
+                if (styleClass != null) {
+                    if (classIndex < 0) {
+                        element.attributes.add(new String[] {"", "", "class", styleClass});
+                    } else {
+                        String[] classAttribute = element.attributes.get(classIndex);
+                        classAttribute[3] = classAttribute[3].trim() + ' ' + styleClass;
+                    }
+                }
+            }
+            if (textDepth > 0 || preserveSpace || TEXT_ELEMENTS.contains(localName)) {
+                textDepth++;
+            }
+            pending = element;
+        }
+
+        private void endElement() throws XMLStreamException {
+            if (depth == 1 && !styleClasses.isEmpty()) {
+                flushPending();
+                writeStylesheet();
+            }
+            if (pending != null) {
+                pending.write(writer, true);
+                pending = null;
+            } else {
+                writer.writeEndElement();
+            }
+            if (textDepth > 0) {
+                textDepth--;
+            }
+            depth--;
+        }
+
+        private void characters() throws XMLStreamException {
+            if (textDepth == 0 && reader.isWhiteSpace()) {
+                return;
+            }
+            flushPending();
+            writer.writeCharacters(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+        }
+
+        private void flushPending() throws XMLStreamException {
+            if (pending != null) {
+                pending.write(writer, false);
+                pending = null;
+            }
+        }
+
+        /**
+         * @return the class of a style, or null if the style has no declarations.
+         */
+        private String styleClass(String style) {
+            String normalized = normalizeStyle(style);
+            if (normalized.isEmpty()) {
+                return null;
+            }
+            return styleClasses.computeIfAbsent(normalized, s -> STYLE_CLASS_PREFIX + styleClasses.size());
+        }
+
+        /**
+         * Write the rules of the style classes. Like the style attributes they replace, they take precedence
+         * over presentation attributes, so it doesn't matter that they come last.
+         */
+        private void writeStylesheet() throws XMLStreamException {
+            StringBuilder rules = new StringBuilder(styleClasses.size() * 64);
+            for (Map.Entry<String, String> styleClass : styleClasses.entrySet()) {
+                rules.append('.').append(styleClass.getValue()).append('{').append(styleClass.getKey()).append('}');
+            }
+            writer.writeStartElement(rootPrefix, "style", rootNamespace);
+            writer.writeCharacters(rules.toString());
+            writer.writeEndElement();
+        }
+    }
+
+    private static final class StartElement {
+        private final String prefix;
+        private final String localName;
+        private final String namespace;
+        // prefix, uri
+        private final List<String[]> namespaces = new ArrayList<>(2);
+        // prefix, namespace, local name, value
+        private final List<String[]> attributes = new ArrayList<>(8);
+
+        StartElement(String prefix, String localName, String namespace) {
+            this.prefix = prefix;
+            this.localName = localName;
+            this.namespace = namespace;
+        }
+
+        void write(XMLStreamWriter writer, boolean empty) throws XMLStreamException {
+            if (empty) {
+                writer.writeEmptyElement(prefix, localName, namespace);
+            } else {
+                writer.writeStartElement(prefix, localName, namespace);
+            }
+            for (String[] declaration : namespaces) {
+                if (declaration[0].isEmpty()) {
+                    writer.writeDefaultNamespace(declaration[1]);
+                } else {
+                    writer.writeNamespace(declaration[0], declaration[1]);
+                }
+            }
+            for (String[] attribute : attributes) {
+                if (attribute[1].isEmpty()) {
+                    writer.writeAttribute(attribute[2], attribute[3]);
+                } else {
+                    writer.writeAttribute(attribute[0], attribute[1], attribute[2], attribute[3]);
+                }
+            }
+        }
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    /**
+     * List the SVG files of a folder.
+     * @param folder diagrams folder.
+     * @return SVG files, sorted by name.
+     * @exception OpenEhrExporterException if the folder can't be read.
+     */
+    static List<Path> listSvgFiles(Path folder) {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder, "*" + SVG_FILE_EXTENSION)) {
+            stream.forEach(files::add);
+        } catch (IOException e) {
+            throw new OpenEhrExporterException("Unable to read folder: " + folder, e);
+        }
+        files.sort(null);
+        return files;
+    }
+
+    public static void main(String[] args) {
+        try {
+            int precision = DEFAULT_PRECISION;
+            int threadCount = Runtime.getRuntime().availableProcessors();
+            List<Path> folders = new ArrayList<>();
+            for (Iterator<String> iterator = Arrays.asList(args).iterator(); iterator.hasNext(); ) {
+                String arg = iterator.next();
+                switch (arg) {
+                    case "-p":
+                        precision = getIntParameterValue(iterator, "-p");
+                        break;
+                    case "-j":
+                        threadCount = getIntParameterValue(iterator, "-j");
+                        if (threadCount <= 0) {
+                            throw new OpenEhrExporterException("Invalid argument for -j: " + threadCount + " (expected at least 1)!");
+                        }
+                        break;
+                    case "-?":
+                    case "-h":
+                        System.out.println("Usage: svg_optimize [-p precision] [-j threads] <diagrams folder>...");
+                        System.out.println("       -p: number of decimals coordinates are rounded to (default = " + DEFAULT_PRECISION + ')');
+                        System.out.println("       -j: number of threads optimising files (default = number of processors)");
+                        return;
+                    default:
+                        Path folder = Paths.get(arg);
+                        if (!Files.isDirectory(folder)) {
+                            throw new OpenEhrExporterException("Diagrams folder " + arg + " doesn't exist!");
+                        }
+                        folders.add(folder);
+                }
+            }
+            if (folders.isEmpty()) {
+                folders.add(Paths.get("."));
+            }
+            optimizeFolders(new SvgOptimizer(precision), folders, Math.max(1, threadCount));
+        } catch (OpenEhrExporterException | IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void optimizeFolders(SvgOptimizer optimizer, List<Path> folders, int threadCount) {
+        AtomicLong bytesBefore = new AtomicLong();
+        AtomicLong bytesSaved = new AtomicLong();
+        int fileCount = 0;
+        try (ExportExecutor workers = new ExportExecutor("openehr-svg-optimize", threadCount)) {
+            for (Path folder : folders) {
+                for (Path svgFile : listSvgFiles(folder)) {
+                    fileCount++;
+                    workers.submit(() -> {
+                        try {
+                            bytesBefore.addAndGet(Files.size(svgFile));
+                        } catch (IOException e) {
+                            throw new OpenEhrExporterException("Unable to read " + svgFile + '!', e);
+                        }
+                        bytesSaved.addAndGet(optimizer.optimize(svgFile));
+                    });
+                }
+            }
+            workers.awaitCompletion();
+        }
+        long before = bytesBefore.get();
+        System.out.println("Optimised " + fileCount + " SVG file(s): " + before / 1024 + " KB to " +
+                                   (before - bytesSaved.get()) / 1024 + " KB");
+    }
+
+    private static int getIntParameterValue(Iterator<String> iterator, String param) {
+        if (!iterator.hasNext()) {
+            throw new OpenEhrExporterException("Missing parameter for " + param + '!');
+        }
+        String value = iterator.next();
+        try {
+            return Integer.valueOf(value);
+        } catch (NumberFormatException ignored) {
+            throw new OpenEhrExporterException("Invalid argument for " + param + ": " + value + " (expected numeric)!");
+        }
+    }
+}
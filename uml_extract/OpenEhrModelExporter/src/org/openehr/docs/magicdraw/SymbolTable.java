@@ -0,0 +1,35 @@
+package org.openehr.docs.magicdraw;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Interns the strings that repeat across the types of a model, such as feature statuses ("0..1 +
+ * (redefined)") and the index component, package and sub-package names, so that each distinct value is
+ * held once however many types refer to it.
+ * <p>
+ * One table is used per export, and released with it, rather than String.intern(), so that the values
+ * do not outlive the export in a long running MagicDraw session. Thread-safe.
+ */
+public class SymbolTable {
+    private final ConcurrentMap<String, String> symbols = new ConcurrentHashMap<>();
+
+    /**
+     * @param value string value, may be null.
+     * @return the table's instance equal to value, which is added if not yet present; null if value is null.
+     */
+    public String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String symbol = symbols.putIfAbsent(value, value);
+        return symbol == null ? value : symbol;
+    }
+
+    /**
+     * @return number of distinct values interned.
+     */
+    public int size() {
+        return symbols.size();
+    }
+}
@@ -0,0 +1,138 @@
+package org.openehr.docs.magicdraw;
+
+import org.openehr.docs.magicdraw.exception.OpenEhrExporterException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes fingerprints of everything the info builders read of a type: its names, documentation,
+ * template parameters, features, literals and constraints, and, through the fingerprints of its
+ * superclasses, the features it inherits. Two types with the same fingerprint build the same ClassInfo.
+ * <p>
+ * The fingerprint of each type is computed once per export, so a hierarchy is hashed once rather than once
+ * for every descendant. Not thread safe.
+ */
+final class TypeFingerprints {
+    // bump when the set of fingerprinted properties changes, to invalidate stored fingerprints
+    private static final String VERSION = "1";
+    // stands in for the fingerprint of a type within a cycle of generalisations
+    private static final String CYCLE = "cycle";
+
+    private final Map<UmlClassifier, String> fingerprints = new HashMap<>();
+
+    /**
+     * @param metaType meta type the type is exported as, such as "Class".
+     * @param type type of the model.
+     * @return fingerprint as a hex string.
+     */
+    String of(String metaType, UmlClassifier type) {
+        Digest digest = new Digest();
+        digest.add(metaType);
+        digest.add(of(type));
+        return digest.toHex();
+    }
+
+    private String of(UmlClassifier type) {
+        String fingerprint = fingerprints.get(type);
+        if (fingerprint == null) {
+            fingerprints.put(type, CYCLE);
+            fingerprint = compute(type);
+            fingerprints.put(type, fingerprint);
+        }
+        return fingerprint;
+    }
+
+    private String compute(UmlClassifier type) {
+        Digest digest = new Digest();
+        digest.add(VERSION);
+        digest.addElement(type);
+        digest.add(type.getQualifiedName());
+        digest.add(String.valueOf(type.isAbstract()));
+        digest.addAll(type.getTemplateParameters());
+        digest.add("[");
+        for (UmlClassifier superClass : type.getSuperClasses()) {
+            digest.add(superClass.getName());
+            digest.add(of(superClass));
+        }
+        digest.add("][");
+        for (UmlProperty attribute : type.getAttributes()) {
+            digest.addTypedElement(attribute);
+            digest.add(String.valueOf(attribute.isReadOnly()));
+            if (attribute.getQualifier() != null) {
+                digest.addTypedElement(attribute.getQualifier());
+            }
+            digest.add(attribute.getDefaultValue());
+        }
+        digest.add("][");
+        for (UmlOperation operation : type.getOperations()) {
+            digest.addTypedElement(operation);
+            digest.add(String.valueOf(operation.isAbstract()));
+            for (UmlTypedElement parameter : operation.getParameters()) {
+                digest.addTypedElement(parameter);
+            }
+            digest.addConstraints(operation.getConstraints());
+        }
+        digest.add("][");
+        for (UmlElement literal : type.getLiterals()) {
+            digest.addElement(literal);
+        }
+        digest.add("]");
+        digest.addConstraints(type.getConstraints());
+        return digest.toHex();
+    }
+
+    /**
+     * SHA-256 digest of a sequence of values, each terminated so that no two sequences hash alike.
+     */
+    static final class Digest {
+        private final MessageDigest digest;
+
+        Digest() {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new OpenEhrExporterException(e);
+            }
+        }
+
+        void add(String value) {
+            if (value != null) {
+                digest.update(value.getBytes(StandardCharsets.UTF_8));
+            }
+            digest.update((byte)0);
+        }
+
+        String toHex() {
+            return ExportFileWriter.toHex(digest.digest());
+        }
+
+        private void addAll(List<String> values) {
+            add(String.valueOf(values.size()));
+            values.forEach(this::add);
+        }
+
+        private void addElement(UmlElement element) {
+            add(element.getName());
+            addAll(element.getComments());
+        }
+
+        private void addTypedElement(UmlTypedElement element) {
+            addElement(element);
+            add(element.getTypeName());
+            add(element.getLower() + ".." + element.getUpper());
+        }
+
+        private void addConstraints(List<UmlConstraint> constraints) {
+            add(String.valueOf(constraints.size()));
+            for (UmlConstraint constraint : constraints) {
+                add(constraint.getName());
+                addAll(constraint.getBody());
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package org.openehr.docs.magicdraw;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Symbol table of the types of a model, built once per export by its {@link ModelSource}: maps the id of
+ * each type to its qualified name, name and template parameters, and for a classifier bound to a template,
+ * to the template and the actual types substituted for its parameters. The signature of a type, such as
+ * Hash&lt;String,ARCHETYPE_ONTOLOGY&gt; or List&lt;DV_TEXT&gt; for a bound classifier, is then resolved by
+ * lookups in the table rather than by model queries, once per type.
+ * <p>
+ * Not thread safe; filled and read on the thread building the types.
+ */
+public final class TypeTable {
+    private final Map<String, TypeSymbol> symbols = new HashMap<>();
+    private final Map<String, String> signatures = new HashMap<>();
+
+    /**
+     * Add a type, or get it if already added.
+     * @param id id of the type.
+     * @param qualifiedName qualified name of the type.
+     * @param name name of the type.
+     * @return symbol of the type.
+     */
+    public TypeSymbol add(String id, String qualifiedName, String name) {
+        return symbols.computeIfAbsent(id, k -> new TypeSymbol(id, qualifiedName, name));
+    }
+
+    /**
+     * @param id id of a type.
+     * @return symbol of the type, or null if not in the table.
+     */
+    public TypeSymbol get(String id) {
+        return symbols.get(id);
+    }
+
+    /**
+     * Resolve the signature of a type: its name, or for a bound classifier, the name of its template with
+     * the signatures of the actual types in the order of the template parameters. A parameter without an
+     * actual type keeps its name.
+     * @param id id of a type.
+     * @return signature of the type, or null if not in the table.
+     */
+    public String getSignature(String id) {
+        String signature = signatures.get(id);
+        if (signature == null) {
+            TypeSymbol symbol = symbols.get(id);
+            if (symbol == null) {
+                return null;
+            }
+            // guards against a binding substituting the type in itself
+            signatures.put(id, symbol.name);
+            signature = resolve(symbol);
+            signatures.put(id, signature);
+        }
+        return signature;
+    }
+
+    private String resolve(TypeSymbol symbol) {
+        TypeSymbol template = symbol.templateId == null ? null : symbols.get(symbol.templateId);
+        if (template == null || template.parameterIds.isEmpty()) {
+            return symbol.name;
+        }
+        List<String> arguments = new ArrayList<>(template.parameterIds.size());
+        for (int i = 0; i < template.parameterIds.size(); i++) {
+            String actualId = symbol.arguments.get(template.parameterIds.get(i));
+            String actual = actualId == null ? null : getSignature(actualId);
+            arguments.add(actual == null ? template.parameterNames.get(i) : actual);
+        }
+        return template.name + '<' + String.join(",", arguments) + '>';
+    }
+
+    /**
+     * A type of the model.
+     */
+    public static final class TypeSymbol {
+        private final String id;
+        private final String qualifiedName;
+        private final String name;
+        private List<String> parameterIds = Collections.emptyList();
+        private List<String> parameterNames = Collections.emptyList();
+        private String templateId;
+        private Map<String, String> arguments = Collections.emptyMap();
+
+        private TypeSymbol(String id, String qualifiedName, String name) {
+            this.id = id;
+            this.qualifiedName = qualifiedName;
+            this.name = name;
+        }
+
+        /**
+         * Add a parameter of the template signature of the type.
+         * @param parameterId id of the template parameter.
+         * @param parameterName name of the parametered element, such as T.
+         * @return this symbol.
+         */
+        public TypeSymbol addTemplateParameter(String parameterId, String parameterName) {
+            if (parameterIds.isEmpty()) {
+                parameterIds = new ArrayList<>(2);
+                parameterNames = new ArrayList<>(2);
+            }
+            parameterIds.add(parameterId);
+            parameterNames.add(parameterName);
+            return this;
+        }
+
+        /**
+         * Bind the type to a template.
+         * @param templateId id of the template type.
+         * @return this symbol.
+         */
+        public TypeSymbol bind(String templateId) {
+            this.templateId = templateId;
+            return this;
+        }
+
+        /**
+         * Substitute an actual type for a parameter of the template the type is bound to.
+         * @param parameterId id of the template parameter.
+         * @param actualId id of the actual type.
+         * @return this symbol.
+         */
+        public TypeSymbol substitute(String parameterId, String actualId) {
+            if (arguments.isEmpty()) {
+                arguments = new LinkedHashMap<>(4);
+            }
+            arguments.put(parameterId, actualId);
+            return this;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getQualifiedName() {
+            return qualifiedName;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return names of the template parameters, in order.
+         */
+        public List<String> getTemplateParameters() {
+            return parameterNames;
+        }
+    }
+}
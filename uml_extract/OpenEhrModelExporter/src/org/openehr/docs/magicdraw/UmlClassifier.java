@@ -0,0 +1,40 @@
+package org.openehr.docs.magicdraw;
+
+import java.util.List;
+
+/**
+ * A UML class, interface or enumeration, built into a {@link ClassInfo} by the info builder of its kind.
+ * Features a kind of classifier doesn't have are empty.
+ */
+public interface UmlClassifier extends UmlElement {
+    /**
+     * @return qualified name, relative to the model, such as openehr::rm::common::archetyped::LOCATABLE.
+     */
+    String getQualifiedName();
+
+    boolean isAbstract();
+
+    /**
+     * @return names of the template parameters, in order.
+     */
+    List<String> getTemplateParameters();
+
+    /**
+     * @return direct superclasses, in order.
+     */
+    List<UmlClassifier> getSuperClasses();
+
+    List<UmlProperty> getAttributes();
+
+    List<UmlOperation> getOperations();
+
+    /**
+     * @return literals of an enumeration.
+     */
+    List<UmlElement> getLiterals();
+
+    /**
+     * @return constraints constraining the classifier, such as invariants.
+     */
+    List<UmlConstraint> getConstraints();
+}
@@ -0,0 +1,15 @@
+package org.openehr.docs.magicdraw;
+
+import java.util.List;
+
+/**
+ * A UML constraint, such as an invariant of a class or a pre-condition of an operation.
+ */
+public interface UmlConstraint {
+    String getName();
+
+    /**
+     * @return bodies of the specification if it is an opaque expression, otherwise an empty list.
+     */
+    List<String> getBody();
+}
@@ -0,0 +1,18 @@
+package org.openehr.docs.magicdraw;
+
+import java.util.List;
+
+/**
+ * A UML element as the info builders see it, independent of the {@link ModelSource} it was read from.
+ */
+public interface UmlElement {
+    /**
+     * @return name of the element, empty if it has none.
+     */
+    String getName();
+
+    /**
+     * @return bodies of the comments owned by the element, from which its documentation is parsed.
+     */
+    List<String> getComments();
+}
@@ -0,0 +1,20 @@
+package org.openehr.docs.magicdraw;
+
+import java.util.List;
+
+/**
+ * A UML operation of a class or interface.
+ */
+public interface UmlOperation extends UmlTypedElement {
+    boolean isAbstract();
+
+    /**
+     * @return parameters, including the return parameter.
+     */
+    List<UmlTypedElement> getParameters();
+
+    /**
+     * @return constraints constraining the operation, such as pre- and post-conditions.
+     */
+    List<UmlConstraint> getConstraints();
+}
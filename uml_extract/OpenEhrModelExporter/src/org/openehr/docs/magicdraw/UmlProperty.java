@@ -0,0 +1,18 @@
+package org.openehr.docs.magicdraw;
+
+/**
+ * A UML attribute of a class or interface.
+ */
+public interface UmlProperty extends UmlTypedElement {
+    boolean isReadOnly();
+
+    /**
+     * @return the first qualifier of the property if it is an association end, otherwise null.
+     */
+    UmlTypedElement getQualifier();
+
+    /**
+     * @return value of the default value if it is a string literal, otherwise null.
+     */
+    String getDefaultValue();
+}
@@ -0,0 +1,19 @@
+package org.openehr.docs.magicdraw;
+
+/**
+ * A UML element with a type and a multiplicity, such as a parameter; for an operation these are those of
+ * its return parameter.
+ */
+public interface UmlTypedElement extends UmlElement {
+    /**
+     * @return name of the type, or null if the element is untyped.
+     */
+    String getTypeName();
+
+    int getLower();
+
+    /**
+     * @return upper bound of the multiplicity, -1 if unlimited.
+     */
+    int getUpper();
+}
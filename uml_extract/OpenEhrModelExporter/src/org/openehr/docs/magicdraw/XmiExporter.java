@@ -0,0 +1,203 @@
+package org.openehr.docs.magicdraw;
+
+import org.openehr.docs.magicdraw.exception.OpenEhrExporterException;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Plain Java entry point that exports the classes folder and class index of a UML model exported to XMI,
+ * read by {@link XmiModelSource}. Doesn't need MagicDraw on the classpath; diagrams aren't part of the XMI,
+ * so only MagicDraw can export those.
+ */
+@SuppressWarnings("UseOfSystemOutOrSystemErr")
+public class XmiExporter {
+    private int headingLevel;
+    private final Set<String> rootPackageName = new LinkedHashSet<>();
+    private String indexRelease;
+    private OutputFormat outputFormat = OutputFormat.ASCIIDOC;
+    private int threadCount;
+    private boolean incremental;
+    private ExportShard shard;
+    private File xmiFile;
+    private File outFolder;
+    private boolean helpOnly;
+
+    public static void main(String[] args) {
+        try {
+            XmiExporter exporter = new XmiExporter();
+            exporter.parseArgs(args);
+            if (!exporter.helpOnly) {
+                System.out.println(exporter.export().summary());
+            }
+        } catch (OpenEhrExporterException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Export the types within the root packages of the XMI file, and write the report of the export to the
+     * output folder.
+     * @return report of the export.
+     */
+    ExportReport export() {
+        ExportReport report = new ExportReport();
+        PackageSelector packageSelector = PackageSelector.compile(rootPackageName);
+        ModelSource[] source = new ModelSource[1];
+        report.timePhase("xmiLoad", () -> source[0] = XmiModelSource.read(xmiFile.toPath(), packageSelector));
+
+        Formatter formatter = outputFormat.createFormatter();
+        ClassRenderer renderer = outputFormat.createRenderer(formatter, headingLevel, indexRelease);
+        File classesFolder = new File(outFolder, ClassRenderer.CLASSES_FOLDER);
+        if (!classesFolder.exists()) {
+            if (!classesFolder.mkdir()) {
+                throw new OpenEhrExporterException("Unable to create folder: " + classesFolder);
+            }
+        }
+
+        ExportFileWriter fileWriter = new ExportFileWriter(outFolder.toPath(), shardFileName(ExportFileWriter.MANIFEST_FILE_NAME), incremental);
+        Path fingerprintFile = outFolder.toPath().resolve(shardFileName(ModelFingerprints.FILE_NAME));
+        String fingerprintSettings = ModelFingerprints.settings(outputFormat, headingLevel);
+        ClassExport classExport;
+        try (ExportExecutor workers = new ExportExecutor(threadCount)) {
+            classExport = new ClassExport(renderer, classesFolder, fileWriter, workers, report, false);
+            // types are only fingerprinted in incremental mode, in which unchanged ones are skipped
+            if (incremental) {
+                classExport.setFingerprints(ModelFingerprints.read(fingerprintFile, fingerprintSettings), fingerprintSettings);
+            }
+            classExport.export(source[0], formatter, c -> shard == null || shard.contains(c.getQualifiedName()));
+            workers.awaitCompletion();
+            classExport.reportPhase();
+        }
+        if (incremental) {
+            report.timePhase("fingerprints", () -> classExport.writeFingerprints(fingerprintFile));
+        }
+
+        // Generate the index file, or the part of it of this shard
+        if (shard != null) {
+            report.timePhase("index", () -> fileWriter.write(outFolder.toPath().resolve(PartialIndex.fileName(shard)),
+                                                             new PartialIndex(shard, indexRelease, classExport.getIndexEntries()).render()));
+        } else if (indexRelease != null) {
+            report.timePhase("index", () -> renderer.generateIndex(outFolder, classExport.getIndexEntries(), fileWriter));
+        }
+        report.timePhase("finish", fileWriter::finish);
+
+        report.finish(fileWriter);
+        report.write(outFolder, shardFileName(ExportReport.REPORT_FILE_NAME));
+        return report;
+    }
+
+    /**
+     * @return the name of a file of which each shard writes its own.
+     */
+    private String shardFileName(String fileName) {
+        return shard == null ? fileName : shard.fileName(fileName);
+    }
+
+    @SuppressWarnings({"OverlyComplexMethod", "SwitchStatementDensity"})
+    void parseArgs(String[] cmdLineArgs) {
+        for (Iterator<String> iterator = Arrays.asList(cmdLineArgs).iterator(); iterator.hasNext(); ) {
+            String arg = iterator.next();
+            switch (arg) {
+                case "-l":
+                    headingLevel = getIntParameterValue(iterator, "-l");
+                    break;
+                case "-o":
+                    String outputFolder = getParameterValue(iterator, "-o");
+                    Path outputPath = Paths.get(outputFolder);
+                    if (!Files.isDirectory(outputPath)) {
+                        throw new OpenEhrExporterException("Output folder " + outputFolder + " doesn't exist!");
+                    }
+                    outFolder = outputPath.toFile();
+                    break;
+                case "-r":
+                    rootPackageName.addAll(Pattern.compile(",").splitAsStream(getParameterValue(iterator, "-r")).collect(Collectors.toList()));
+                    break;
+                case "-i":
+                    indexRelease = getParameterValue(iterator, "-i");
+                    break;
+                case "-f":
+                    outputFormat = OutputFormat.fromName(getParameterValue(iterator, "-f"));
+                    break;
+                case "-j":
+                    threadCount = getIntParameterValue(iterator, "-j");
+                    if (threadCount <= 0) {
+                        throw new OpenEhrExporterException("Invalid argument for -j: " + threadCount + " (expected at least 1)!");
+                    }
+                    break;
+                case "--incremental":
+                    incremental = true;
+                    break;
+                case "--shard":
+                    shard = ExportShard.parse(getParameterValue(iterator, "--shard"));
+                    break;
+                case "-?":
+                case "-h":
+                    System.out.println("Usage: xmi_generate [-o output_folder] [-l heading_level] [-r root_package_name] [-i index_release] [-f format] [-j threads] [--incremental] [--shard i/n] <XMI file>");
+                    System.out.println("       Exports the class files and class index of a UML 2.x XMI export of the model, without");
+                    System.out.println("       MagicDraw; diagrams aren't exported. The options are those of uml_generate:");
+                    System.out.println("       -o: output folder (default = current folder)");
+                    System.out.println("       -l: class headings level (default = 3)");
+                    System.out.println("       -r: comma separated patterns of the packages to export (default = openehr)");
+                    System.out.println("       -i: generate an index against a specific release, for example Release-1.0.3");
+                    System.out.println("       -f: format of the class tables: asciidoc (default) or html");
+                    System.out.println("       -j: number of threads rendering and writing files (default = number of processors)");
+                    System.out.println("       --incremental: only write files that changed since the last export to the output folder,");
+                    System.out.println("                      remove files of types no longer in the model, and don't build types");
+                    System.out.println("                      unchanged since then");
+                    System.out.println("       --shard: export the i-th of n shards of the types, for example --shard 2/4");
+                    helpOnly = true;
+                    break;
+                default:
+                    Path xmiPath = Paths.get(arg);
+                    if (!Files.isReadable(xmiPath)) {
+                        throw new OpenEhrExporterException("XMI file " + arg + " doesn't exist!");
+                    }
+                    xmiFile = xmiPath.toFile();
+            }
+        }
+        if (!helpOnly) {
+            if (xmiFile == null) {
+                throw new OpenEhrExporterException("No XMI file specified!");
+            }
+            if (headingLevel <= 0) {
+                headingLevel = 3;
+            }
+            if (threadCount <= 0) {
+                threadCount = Runtime.getRuntime().availableProcessors();
+            }
+            if (outFolder == null) {
+                outFolder = new File(".");
+            }
+            if (rootPackageName.isEmpty()) {
+                rootPackageName.add("openehr");
+            }
+        }
+    }
+
+    private static int getIntParameterValue(Iterator<String> iterator, String param) {
+        String value = getParameterValue(iterator, param);
+        try {
+            return Integer.valueOf(value);
+        } catch (NumberFormatException ignored) {
+            throw new OpenEhrExporterException("Invalid argument for " + param + ": " + value + " (expected numeric)!");
+        }
+    }
+
+    private static String getParameterValue(Iterator<String> iterator, String param) {
+        if (iterator.hasNext()) {
+            return iterator.next();
+        } else {
+            throw new OpenEhrExporterException("Missing parameter for " + param + '!');
+        }
+    }
+}
@@ -0,0 +1,972 @@
+package org.openehr.docs.magicdraw;
+
+import org.openehr.docs.magicdraw.exception.OpenEhrExporterException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The types of a UML 2.x model exported to XMI, such as by MagicDraw's File / Export To / UML 2.x XMI or by
+ * Eclipse UML2, read in a single streaming pass without MagicDraw. Package patterns are relative to the
+ * model element, so qualified names are those MagicDraw gives, without the model name.
+ * <p>
+ * Only the types within the selected packages are built in full. Of the classes elsewhere, which may be
+ * superclasses of selected ones, an outline is kept: their names, generalisations and feature names, but no
+ * documentation. References to types, generals, template parameters and constrained elements are recorded
+ * by id while reading, and resolved through an index of the ids of all named elements once the file is
+ * read. References to elements of other files (href) resolve to their fragment, which for the standard
+ * primitive types is the type name; a model split over modules should be exported to a single file.
+ * <p>
+ * Type names are resolved through a {@link TypeTable} of the classifiers, so that a classifier bound to a
+ * template is named by its template and actual types, as in Hash&lt;String,ARCHETYPE_ONTOLOGY&gt;.
+ */
+public class XmiModelSource implements ModelSource {
+    // metaclasses read as UML classes; as with a MagicDraw model query for Class, this includes behaviours
+    private static final Set<String> CLASS_TYPES = new HashSet<>(Arrays.asList(
+            "Class", "AssociationClass", "StateMachine", "ProtocolStateMachine", "Activity", "Interaction",
+            "OpaqueBehavior", "FunctionBehavior", "Component", "Node", "Device", "ExecutionEnvironment", "Stereotype"));
+    private static final Set<String> PACKAGE_TYPES = new HashSet<>(Arrays.asList("Package", "Model", "Profile"));
+
+    private final List<UmlClassifier> classes = new ArrayList<>();
+    private final List<UmlClassifier> interfaces = new ArrayList<>();
+    private final List<UmlClassifier> enumerations = new ArrayList<>();
+
+    private XmiModelSource() {
+    }
+
+    /**
+     * Read the types within the selected packages of an XMI file.
+     * @param file XMI file.
+     * @param packageSelector selector of the packages to read the types of.
+     * @return model source.
+     * @exception OpenEhrExporterException on fail to read the file, or if it isn't a UML XMI file.
+     */
+    public static XmiModelSource read(Path file, PackageSelector packageSelector) {
+        try (InputStream in = Files.newInputStream(file)) {
+            return read(in, packageSelector);
+        } catch (IOException e) {
+            throw new OpenEhrExporterException("Unable to read " + file + '!', e);
+        } catch (OpenEhrExporterException e) {
+            throw new OpenEhrExporterException(file + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Read the types within the selected packages of an XMI document.
+     * @param in XMI document.
+     * @param packageSelector selector of the packages to read the types of.
+     * @return model source.
+     * @exception OpenEhrExporterException on fail to read the document, or if it isn't a UML XMI document.
+     */
+    public static XmiModelSource read(InputStream in, PackageSelector packageSelector) {
+        XmiModelSource source = new XmiModelSource();
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        XMLStreamReader reader = null;
+        try {
+            reader = factory.createXMLStreamReader(in);
+            new Parser(source, reader, packageSelector).parse();
+        } catch (XMLStreamException e) {
+            throw new OpenEhrExporterException("Invalid XMI: " + e.getMessage(), e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ignored) {
+                }
+            }
+        }
+        return source;
+    }
+
+    @Override
+    public List<UmlClassifier> getClasses() {
+        return classes;
+    }
+
+    @Override
+    public List<UmlClassifier> getInterfaces() {
+        return interfaces;
+    }
+
+    @Override
+    public List<UmlClassifier> getEnumerations() {
+        return enumerations;
+    }
+
+    /**
+     * A reference to an element, by id, or by the fragment of an href to an element of another file.
+     */
+    private static final class Ref {
+        final String id;
+        final boolean external;
+
+        Ref(String id, boolean external) {
+            this.id = id;
+            this.external = external;
+        }
+    }
+
+    private static class XmiElement implements UmlElement {
+        String name = "";
+        List<String> comments = Collections.emptyList();
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public List<String> getComments() {
+            return comments;
+        }
+
+        void addComment(String body) {
+            if (comments.isEmpty()) {
+                comments = new ArrayList<>(1);
+            }
+            comments.add(body);
+        }
+    }
+
+    private static class XmiTypedElement extends XmiElement implements UmlTypedElement {
+        Ref type;
+        String typeName;
+        int lower = 1;
+        int upper = 1;
+
+        @Override
+        public String getTypeName() {
+            return typeName;
+        }
+
+        @Override
+        public int getLower() {
+            return lower;
+        }
+
+        @Override
+        public int getUpper() {
+            return upper;
+        }
+    }
+
+    private static class XmiProperty extends XmiTypedElement implements UmlProperty {
+        boolean readOnly;
+        UmlTypedElement qualifier;
+        String defaultValue;
+
+        @Override
+        public boolean isReadOnly() {
+            return readOnly;
+        }
+
+        @Override
+        public UmlTypedElement getQualifier() {
+            return qualifier;
+        }
+
+        @Override
+        public String getDefaultValue() {
+            return defaultValue;
+        }
+    }
+
+    private static class XmiOperation extends XmiElement implements UmlOperation {
+        boolean abstractOperation;
+        final List<UmlTypedElement> parameters = new ArrayList<>();
+        XmiTypedElement returnParameter;
+        final List<UmlConstraint> constraints = new ArrayList<>(0);
+
+        @Override
+        public String getTypeName() {
+            return returnParameter == null ? null : returnParameter.getTypeName();
+        }
+
+        @Override
+        public int getLower() {
+            return returnParameter == null ? 1 : returnParameter.getLower();
+        }
+
+        @Override
+        public int getUpper() {
+            return returnParameter == null ? 1 : returnParameter.getUpper();
+        }
+
+        @Override
+        public boolean isAbstract() {
+            return abstractOperation;
+        }
+
+        @Override
+        public List<UmlTypedElement> getParameters() {
+            return parameters;
+        }
+
+        @Override
+        public List<UmlConstraint> getConstraints() {
+            return constraints;
+        }
+    }
+
+    private static class XmiConstraint implements UmlConstraint {
+        String name = "";
+        List<String> body = Collections.emptyList();
+        final List<String> constrainedElements = new ArrayList<>(1);
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public List<String> getBody() {
+            return body;
+        }
+    }
+
+    private static class XmiClassifier extends XmiElement implements UmlClassifier {
+        String id;
+        String qualifiedName;
+        boolean abstractClassifier;
+        final List<Ref> generals = new ArrayList<>(1);
+        final List<String> templateParameterIds = new ArrayList<>(0);
+        final List<Ref> templateParameterRefs = new ArrayList<>(0);
+        Ref boundSignature;
+        // formal and actual of each parameter substitution of the binding
+        final List<Ref[]> substitutions = new ArrayList<>(0);
+        List<String> templateParameters = Collections.emptyList();
+        List<UmlClassifier> superClasses = Collections.emptyList();
+        final List<UmlProperty> attributes = new ArrayList<>();
+        final List<UmlOperation> operations = new ArrayList<>();
+        final List<UmlElement> literals = new ArrayList<>(0);
+        final List<UmlConstraint> constraints = new ArrayList<>(0);
+
+        @Override
+        public String getQualifiedName() {
+            return qualifiedName;
+        }
+
+        @Override
+        public boolean isAbstract() {
+            return abstractClassifier;
+        }
+
+        @Override
+        public List<String> getTemplateParameters() {
+            return templateParameters;
+        }
+
+        @Override
+        public List<UmlClassifier> getSuperClasses() {
+            return superClasses;
+        }
+
+        @Override
+        public List<UmlProperty> getAttributes() {
+            return attributes;
+        }
+
+        @Override
+        public List<UmlOperation> getOperations() {
+            return operations;
+        }
+
+        @Override
+        public List<UmlElement> getLiterals() {
+            return literals;
+        }
+
+        @Override
+        public List<UmlConstraint> getConstraints() {
+            return constraints;
+        }
+    }
+
+    /**
+     * Recursive descent over the element events of the document. Each parse method is called with the
+     * reader on the start of its element, and returns with the reader on the end of it.
+     */
+    private static class Parser {
+        private final XmiModelSource source;
+        private final XMLStreamReader reader;
+        private final PackageSelector packageSelector;
+
+        // names of all named elements by id, including those of which nothing else is kept
+        private final Map<String, String> names = new HashMap<>();
+        private final Map<String, XmiClassifier> classifiers = new HashMap<>();
+        // owning classifiers of template signatures by id of the signature
+        private final Map<String, XmiClassifier> signatureOwners = new HashMap<>();
+        private final TypeTable types = new TypeTable();
+        private final List<XmiClassifier> allClassifiers = new ArrayList<>();
+        private final Map<String, XmiOperation> operations = new HashMap<>();
+        private final List<XmiConstraint> constraints = new ArrayList<>();
+        private final List<XmiTypedElement> typedElements = new ArrayList<>();
+
+        Parser(XmiModelSource source, XMLStreamReader reader, PackageSelector packageSelector) {
+            this.source = source;
+            this.reader = reader;
+            this.packageSelector = packageSelector;
+        }
+
+        void parse() throws XMLStreamException {
+            while (reader.hasNext() && reader.next() != XMLStreamConstants.START_ELEMENT) {
+                // skip the prolog
+            }
+            if (!reader.isStartElement()) {
+                throw new OpenEhrExporterException("Empty XMI document!");
+            }
+            boolean found = false;
+            if (isXmi(reader.getNamespaceURI()) && "XMI".equals(reader.getLocalName())) {
+                // the model, and possibly profiles, next to stereotype applications and extensions
+                while (nextChild()) {
+                    if (PACKAGE_TYPES.contains(umlType())) {
+                        parsePackage(packageSelector.getRootState(), "");
+                        found = true;
+                    } else {
+                        skip();
+                    }
+                }
+            } else if (PACKAGE_TYPES.contains(umlType())) {
+                parsePackage(packageSelector.getRootState(), "");
+                found = true;
+            }
+            if (!found) {
+                throw new OpenEhrExporterException("No UML model found in the XMI document!");
+            }
+            resolve();
+        }
+
+        /**
+         * @param state state of the package selector, or null if no package can be selected in this package or below.
+         */
+        private void parsePackage(PackageSelector.State state, String qualifiedName) throws XMLStreamException {
+            boolean selected = state != null && state.isSelected();
+            while (nextChild()) {
+                String type = umlType();
+                if (type == null) {
+                    skip();
+                } else if (PACKAGE_TYPES.contains(type)) {
+                    String name = nameAttribute();
+                    PackageSelector.State nestedState = state == null ? null : state.child(name);
+                    parsePackage(nestedState != null && nestedState.canSelectBelow() ? nestedState : null, qualify(qualifiedName, name));
+                } else if ("Constraint".equals(type)) {
+                    parseConstraint();
+                } else {
+                    parseClassifier(type, qualifiedName, selected);
+                }
+            }
+        }
+
+        /**
+         * Parse a classifier, or skip the element if it isn't a class, interface or enumeration.
+         * @param selected true if the classifier is exported, rather than only outlined.
+         */
+        private void parseClassifier(String type, String namespace, boolean selected) throws XMLStreamException {
+            List<UmlClassifier> bucket;
+            if (CLASS_TYPES.contains(type)) {
+                bucket = source.classes;
+            } else if ("Interface".equals(type)) {
+                bucket = source.interfaces;
+            } else if ("Enumeration".equals(type)) {
+                bucket = source.enumerations;
+            } else {
+                skip();
+                return;
+            }
+            XmiClassifier classifier = new XmiClassifier();
+            classifier.name = nameAttribute();
+            classifier.qualifiedName = qualify(namespace, classifier.name);
+            classifier.abstractClassifier = booleanAttribute("isAbstract");
+            allClassifiers.add(classifier);
+            String id = idAttribute();
+            classifier.id = id;
+            if (id != null) {
+                names.put(id, classifier.name);
+                classifiers.put(id, classifier);
+            }
+            // before any nested classifiers, as the collector of a MagicDraw model does
+            if (selected) {
+                bucket.add(classifier);
+            }
+            boolean enumeration = bucket == source.enumerations;
+            while (nextChild()) {
+                switch (reader.getLocalName()) {
+                    case "ownedComment":
+                        parseComment(classifier, selected);
+                        break;
+                    case "generalization":
+                        Ref general = parseReference("general");
+                        if (general != null) {
+                            classifier.generals.add(general);
+                        }
+                        break;
+                    case "ownedAttribute":
+                        if (enumeration) {
+                            skip();
+                        } else {
+                            classifier.attributes.add(parseProperty(selected));
+                        }
+                        break;
+                    case "ownedOperation":
+                        classifier.operations.add(parseOperation(selected));
+                        break;
+                    case "ownedLiteral":
+                        classifier.literals.add(parseLiteral(selected));
+                        break;
+                    case "ownedTemplateSignature":
+                        parseTemplateSignature(classifier);
+                        break;
+                    case "templateBinding":
+                        parseTemplateBinding(classifier);
+                        break;
+                    case "ownedRule":
+                        if ("Constraint".equals(umlType())) {
+                            parseConstraint();
+                        } else {
+                            skip();
+                        }
+                        break;
+                    case "nestedClassifier":
+                        String nestedType = umlType();
+                        if (enumeration || nestedType == null) {
+                            skip();
+                        } else {
+                            parseClassifier(nestedType, classifier.qualifiedName, selected);
+                        }
+                        break;
+                    default:
+                        skip();
+                }
+            }
+        }
+
+        private XmiProperty parseProperty(boolean selected) throws XMLStreamException {
+            XmiProperty property = new XmiProperty();
+            property.name = nameAttribute();
+            property.readOnly = booleanAttribute("isReadOnly");
+            property.type = idReference(attribute("type"));
+            boolean associationEnd = attribute("association") != null;
+            UmlTypedElement qualifier = null;
+            while (nextChild()) {
+                if (parseTypedElementChild(property, selected)) {
+                    continue;
+                }
+                switch (reader.getLocalName()) {
+                    case "defaultValue":
+                        property.defaultValue = "LiteralString".equals(umlType()) ? stringAttribute("value", "") : null;
+                        skip();
+                        break;
+                    case "qualifier":
+                        XmiTypedElement element = parseTypedElement(false);
+                        if (qualifier == null) {
+                            qualifier = element;
+                        }
+                        break;
+                    case "association":
+                        associationEnd = true;
+                        skip();
+                        break;
+                    default:
+                        skip();
+                }
+            }
+            property.qualifier = associationEnd ? qualifier : null;
+            register(property);
+            return property;
+        }
+
+        private XmiOperation parseOperation(boolean selected) throws XMLStreamException {
+            XmiOperation operation = new XmiOperation();
+            operation.name = nameAttribute();
+            operation.abstractOperation = booleanAttribute("isAbstract");
+            String id = idAttribute();
+            if (id != null) {
+                operations.put(id, operation);
+            }
+            while (nextChild()) {
+                switch (reader.getLocalName()) {
+                    case "ownedComment":
+                        parseComment(operation, selected);
+                        break;
+                    case "ownedParameter":
+                        boolean returnParameter = "return".equals(attribute("direction"));
+                        XmiTypedElement parameter = parseTypedElement(selected);
+                        operation.parameters.add(parameter);
+                        if (returnParameter) {
+                            operation.returnParameter = parameter;
+                        }
+                        break;
+                    case "ownedRule":
+                        if ("Constraint".equals(umlType())) {
+                            parseConstraint();
+                        } else {
+                            skip();
+                        }
+                        break;
+                    default:
+                        skip();
+                }
+            }
+            return operation;
+        }
+
+        private XmiTypedElement parseTypedElement(boolean selected) throws XMLStreamException {
+            XmiTypedElement element = new XmiTypedElement();
+            element.name = nameAttribute();
+            element.type = idReference(attribute("type"));
+            while (nextChild()) {
+                if (!parseTypedElementChild(element, selected)) {
+                    skip();
+                }
+            }
+            register(element);
+            return element;
+        }
+
+        /**
+         * Parse a child element common to all typed elements.
+         * @return false if the child element isn't one of these, and has not been read.
+         */
+        private boolean parseTypedElementChild(XmiTypedElement element, boolean selected) throws XMLStreamException {
+            switch (reader.getLocalName()) {
+                case "type":
+                    element.type = parseReference();
+                    return true;
+                case "lowerValue":
+                    element.lower = parseMultiplicityBound();
+                    return true;
+                case "upperValue":
+                    element.upper = parseMultiplicityBound();
+                    return true;
+                case "ownedComment":
+                    parseComment(element, selected);
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        /**
+         * @return bound, -1 if unlimited; a bound without a value is 0, as in UML.
+         */
+        private int parseMultiplicityBound() throws XMLStreamException {
+            String value = stringAttribute("value", "0");
+            int line = reader.getLocation().getLineNumber();
+            skip();
+            if ("*".equals(value)) {
+                return -1;
+            }
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException ignored) {
+                throw new OpenEhrExporterException("Invalid multiplicity bound on line " + line + ": " + value + '!');
+            }
+        }
+
+        private XmiElement parseLiteral(boolean selected) throws XMLStreamException {
+            XmiElement literal = new XmiElement();
+            literal.name = nameAttribute();
+            while (nextChild()) {
+                if ("ownedComment".equals(reader.getLocalName())) {
+                    parseComment(literal, selected);
+                } else {
+                    skip();
+                }
+            }
+            return literal;
+        }
+
+        private void parseComment(XmiElement element, boolean selected) throws XMLStreamException {
+            if (!selected) {
+                // documentation of outlined elements isn't kept
+                skip();
+                return;
+            }
+            String body = attribute("body");
+            while (nextChild()) {
+                if ("body".equals(reader.getLocalName())) {
+                    body = reader.getElementText();
+                } else {
+                    skip();
+                }
+            }
+            element.addComment(body == null ? "" : body);
+        }
+
+        private void parseTemplateSignature(XmiClassifier classifier) throws XMLStreamException {
+            String signatureId = idAttribute();
+            if (signatureId != null) {
+                signatureOwners.put(signatureId, classifier);
+            }
+            while (nextChild()) {
+                if (!"ownedParameter".equals(reader.getLocalName())) {
+                    skip();
+                    continue;
+                }
+                String parameterId = idAttribute();
+                Ref parameteredElement = idReference(attribute("parameteredElement"));
+                while (nextChild()) {
+                    switch (reader.getLocalName()) {
+                        case "ownedParameteredElement":
+                            String id = idAttribute();
+                            if (id != null) {
+                                parameteredElement = new Ref(id, false);
+                            }
+                            skip();
+                            break;
+                        case "parameteredElement":
+                            parameteredElement = parseReference();
+                            break;
+                        default:
+                            skip();
+                    }
+                }
+                if (parameteredElement != null) {
+                    classifier.templateParameterIds.add(parameterId);
+                    classifier.templateParameterRefs.add(parameteredElement);
+                }
+            }
+        }
+
+        private void parseTemplateBinding(XmiClassifier classifier) throws XMLStreamException {
+            Ref signature = idReference(attribute("signature"));
+            while (nextChild()) {
+                switch (reader.getLocalName()) {
+                    case "signature":
+                        signature = parseReference();
+                        break;
+                    case "parameterSubstitution":
+                        Ref formal = idReference(attribute("formal"));
+                        Ref actual = idReference(attribute("actual"));
+                        while (nextChild()) {
+                            switch (reader.getLocalName()) {
+                                case "formal":
+                                    formal = parseReference();
+                                    break;
+                                case "actual":
+                                    actual = parseReference();
+                                    break;
+                                default:
+                                    skip();
+                            }
+                        }
+                        if (formal != null && actual != null) {
+                            classifier.substitutions.add(new Ref[] {formal, actual});
+                        }
+                        break;
+                    default:
+                        skip();
+                }
+            }
+            // a classifier is bound to a single template
+            if (signature != null && classifier.boundSignature == null) {
+                classifier.boundSignature = signature;
+            }
+        }
+
+        private void parseConstraint() throws XMLStreamException {
+            XmiConstraint constraint = new XmiConstraint();
+            constraint.name = nameAttribute();
+            String constrained = attribute("constrainedElement");
+            if (constrained != null) {
+                constraint.constrainedElements.addAll(Arrays.asList(constrained.trim().split("\\s+")));
+            }
+            while (nextChild()) {
+                switch (reader.getLocalName()) {
+                    case "constrainedElement":
+                        Ref ref = parseReference();
+                        if (ref != null) {
+                            constraint.constrainedElements.add(ref.id);
+                        }
+                        break;
+                    case "specification":
+                        if ("OpaqueExpression".equals(umlType())) {
+                            constraint.body = parseOpaqueExpressionBody();
+                        } else {
+                            skip();
+                        }
+                        break;
+                    default:
+                        skip();
+                }
+            }
+            constraints.add(constraint);
+        }
+
+        private List<String> parseOpaqueExpressionBody() throws XMLStreamException {
+            List<String> body = new ArrayList<>(1);
+            String attribute = attribute("body");
+            if (attribute != null) {
+                body.add(attribute);
+            }
+            while (nextChild()) {
+                if ("body".equals(reader.getLocalName())) {
+                    body.add(reader.getElementText());
+                } else {
+                    skip();
+                }
+            }
+            return body;
+        }
+
+        /**
+         * Parse a reference given either as an attribute of the current element or as a child element of the same name.
+         */
+        private Ref parseReference(String feature) throws XMLStreamException {
+            Ref ref = idReference(attribute(feature));
+            while (nextChild()) {
+                if (feature.equals(reader.getLocalName())) {
+                    ref = parseReference();
+                } else {
+                    skip();
+                }
+            }
+            return ref;
+        }
+
+        /**
+         * Parse the reference of the current element, by xmi:idref or by href.
+         */
+        private Ref parseReference() throws XMLStreamException {
+            String idref = xmiAttribute("idref");
+            String href = attribute("href");
+            skip();
+            if (idref != null) {
+                return new Ref(idref, false);
+            }
+            if (href != null) {
+                int hash = href.indexOf('#');
+                return new Ref(hash < 0 ? href : href.substring(hash + 1), true);
+            }
+            return null;
+        }
+
+        private static Ref idReference(String id) {
+            return id == null || id.isEmpty() ? null : new Ref(id.trim(), false);
+        }
+
+        private void register(XmiTypedElement element) {
+            if (element.type != null) {
+                typedElements.add(element);
+            }
+        }
+
+        /**
+         * Skip the current element, indexing the names of the elements within it.
+         */
+        private void skip() throws XMLStreamException {
+            String id = idAttribute();
+            if (id != null) {
+                String name = attribute("name");
+                if (name != null) {
+                    names.put(id, name);
+                }
+            }
+            while (nextChild()) {
+                skip();
+            }
+        }
+
+        /**
+         * Advance to the next child element of the current element.
+         * @return true if on the start of a child element, false if on the end of the current element.
+         */
+        private boolean nextChild() throws XMLStreamException {
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    return true;
+                }
+                if (event == XMLStreamConstants.END_ELEMENT) {
+                    return false;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return metaclass of the current element, from xmi:type, or from the element name if in the UML
+         * namespace, as the root model may be; null if neither.
+         */
+        private String umlType() {
+            String type = xmiAttribute("type");
+            if (type != null) {
+                return type.substring(type.indexOf(':') + 1);
+            }
+            String namespace = reader.getNamespaceURI();
+            return namespace == null || namespace.isEmpty() || isXmi(namespace) ? null : reader.getLocalName();
+        }
+
+        private String idAttribute() {
+            return xmiAttribute("id");
+        }
+
+        private String xmiAttribute(String localName) {
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                if (localName.equals(reader.getAttributeLocalName(i)) && isXmi(reader.getAttributeNamespace(i))) {
+                    return reader.getAttributeValue(i);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return value of an attribute without namespace; unlike getAttributeValue(null, name), which also
+         * matches xmi:type for "type".
+         */
+        private String attribute(String localName) {
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                String namespace = reader.getAttributeNamespace(i);
+                if (localName.equals(reader.getAttributeLocalName(i)) && (namespace == null || namespace.isEmpty())) {
+                    return reader.getAttributeValue(i);
+                }
+            }
+            return null;
+        }
+
+        private String nameAttribute() {
+            return stringAttribute("name", "");
+        }
+
+        private String stringAttribute(String name, String defaultValue) {
+            String value = attribute(name);
+            return value == null ? defaultValue : value;
+        }
+
+        private boolean booleanAttribute(String name) {
+            return "true".equals(attribute(name));
+        }
+
+        // the namespaces of all XMI versions, such as http://www.omg.org/spec/XMI/20131001, contain XMI
+        private static boolean isXmi(String namespace) {
+            return namespace != null && namespace.contains("XMI");
+        }
+
+        private static String qualify(String namespace, String name) {
+            return namespace.isEmpty() ? name : namespace + "::" + name;
+        }
+
+        /**
+         * Resolve the references recorded while reading, once all ids are known.
+         */
+        private void resolve() {
+            resolveTypes();
+            for (XmiTypedElement element : typedElements) {
+                element.typeName = types.getSignature(typeId(element.type));
+                element.type = null;
+            }
+            for (XmiClassifier classifier : allClassifiers) {
+                if (!classifier.generals.isEmpty()) {
+                    classifier.superClasses = new ArrayList<>(classifier.generals.size());
+                    for (Ref general : classifier.generals) {
+                        classifier.superClasses.add(resolveClassifier(general));
+                    }
+                }
+                if (!classifier.templateParameterRefs.isEmpty()) {
+                    classifier.templateParameters = new ArrayList<>(classifier.templateParameterRefs.size());
+                    for (Ref parameter : classifier.templateParameterRefs) {
+                        String name = resolveName(parameter);
+                        classifier.templateParameters.add(name == null ? parameter.id : name);
+                    }
+                }
+            }
+            for (XmiConstraint constraint : constraints) {
+                for (String id : constraint.constrainedElements) {
+                    XmiClassifier classifier = classifiers.get(id);
+                    if (classifier != null) {
+                        classifier.constraints.add(constraint);
+                    } else {
+                        XmiOperation operation = operations.get(id);
+                        if (operation != null) {
+                            operation.constraints.add(constraint);
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Fill the type table with the classifiers, their template parameters and bindings.
+         */
+        private void resolveTypes() {
+            for (XmiClassifier classifier : allClassifiers) {
+                if (classifier.id != null) {
+                    TypeTable.TypeSymbol symbol = types.add(classifier.id, classifier.qualifiedName, classifier.name);
+                    for (int i = 0; i < classifier.templateParameterRefs.size(); i++) {
+                        Ref parameter = classifier.templateParameterRefs.get(i);
+                        String name = resolveName(parameter);
+                        String parameterId = classifier.templateParameterIds.get(i);
+                        symbol.addTemplateParameter(parameterId == null ? parameter.id : parameterId, name == null ? parameter.id : name);
+                    }
+                }
+            }
+            for (XmiClassifier classifier : allClassifiers) {
+                XmiClassifier template = classifier.boundSignature == null ? null : signatureOwners.get(classifier.boundSignature.id);
+                if (classifier.id != null && template != null && template.id != null) {
+                    TypeTable.TypeSymbol symbol = types.get(classifier.id).bind(template.id);
+                    for (Ref[] substitution : classifier.substitutions) {
+                        String actualId = typeId(substitution[1]);
+                        if (actualId != null) {
+                            symbol.substitute(substitution[0].id, actualId);
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return id of the referenced type in the type table, adding a type that isn't a classifier, such as
+         * a primitive type, by its name; or null if it can't be resolved.
+         */
+        private String typeId(Ref ref) {
+            if (types.get(ref.id) == null) {
+                String name = resolveName(ref);
+                if (name == null) {
+                    return null;
+                }
+                types.add(ref.id, name, name);
+            }
+            return ref.id;
+        }
+
+        /**
+         * @return name of the referenced element, the fragment of an external reference if not in this file,
+         * or null if it can't be resolved.
+         */
+        private String resolveName(Ref ref) {
+            String name = names.get(ref.id);
+            return name == null && ref.external ? ref.id : name;
+        }
+
+        /**
+         * @return the referenced classifier; if not in this file, a classifier of that name without features.
+         */
+        private UmlClassifier resolveClassifier(Ref ref) {
+            XmiClassifier classifier = classifiers.get(ref.id);
+            if (classifier == null) {
+                classifier = new XmiClassifier();
+                String name = resolveName(ref);
+                classifier.name = name == null ? ref.id : name;
+                classifier.qualifiedName = classifier.name;
+            }
+            return classifier;
+        }
+    }
+}
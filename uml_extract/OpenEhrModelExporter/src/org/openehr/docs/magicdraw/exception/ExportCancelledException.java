@@ -0,0 +1,12 @@
+package org.openehr.docs.magicdraw.exception;
+
+/**
+ * Thrown when an export is cancelled by the user; the export stops between files.
+ */
+public class ExportCancelledException extends OpenEhrExporterException {
+    private static final long serialVersionUID = 1L;
+
+    public ExportCancelledException() {
+        super("Export cancelled!");
+    }
+}
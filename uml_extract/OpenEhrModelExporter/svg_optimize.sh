@@ -0,0 +1,8 @@
+#!/bin/bash
+
+# Optimise the SVG diagrams of one or more diagrams folders in place, as 'uml_generate.sh --optimize-svg' does.
+# Only needs a Java runtime; MagicDraw is not used.
+
+SCRIPT_DIR=$(cd "$(dirname "$0")" && pwd)
+
+java -cp "$SCRIPT_DIR/OpenEhrModelExporter.jar" org.openehr.docs.magicdraw.SvgOptimizer "$@"
@@ -24,7 +24,8 @@ echo md_cp_url = $md_cp_url
 
 CP="$MAGICDRAW_HOME/lib/com.nomagic.osgi.launcher-17.0.5-SNAPSHOT.jar$cp_delim$MAGICDRAW_HOME/lib/bundles/org.eclipse.osgi_3.10.1.v20140909-1633.jar$cp_delim$MAGICDRAW_HOME/lib/bundles/com.nomagic.magicdraw.osgi.fragment_1.0.0.201512211944.jar$cp_delim$MAGICDRAW_HOME/lib/md_api.jar$cp_delim$MAGICDRAW_HOME/lib/md_common_api.jar$cp_delim$MAGICDRAW_HOME/lib/md.jar$cp_delim$MAGICDRAW_HOME/lib/md_common.jar$cp_delim$MAGICDRAW_HOME/lib/jna.jar"
 
-java -Xmx1200M -Xss1024K \
+# Maximum heap of the export; override with UML_GENERATE_XMX, e.g. UML_GENERATE_XMX=2G for very large models
+java -Xmx${UML_GENERATE_XMX:-1200M} -Xss1024K \
        -Dmd.class.path=$md_cp_url \
        -Dcom.nomagic.osgi.config.dir="$MAGICDRAW_HOME/configuration" \
        -Desi.system.config="$MAGICDRAW_HOME/data/application.conf" \
@@ -0,0 +1,8 @@
+#!/bin/bash
+
+# Export the class files and class index of a UML 2.x XMI export of the model, without MagicDraw.
+# Only needs a Java runtime; diagrams aren't part of the XMI and are not exported.
+
+SCRIPT_DIR=$(cd "$(dirname "$0")" && pwd)
+
+java -cp "$SCRIPT_DIR/OpenEhrModelExporter.jar" org.openehr.docs.magicdraw.XmiExporter "$@"